@@ -0,0 +1,140 @@
+package com.usbcamera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.usbcamera.core.EndpointPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GeminiClient's endpoint pool against a LocalGeminiCluster of two stand-ins, one of them
+ * overloaded: requests drain to the healthy one, the overloaded one is ejected, and the probe
+ * after its ejection time only brings it back once generation works again. Each test waits out
+ * one ejection period (15 s).
+ */
+@RunWith(AndroidJUnit4.class)
+public class EndpointPoolClusterTest {
+    private static final String TAG = "EndpointPoolClusterTest";
+    private static final long WAIT_S = 20;
+    private static final long EJECTION_MS = 15000;
+    private static final int FAULTY = 1;
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    private LocalGeminiCluster cluster;
+    private GeminiClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        cluster = new LocalGeminiCluster(context, 2);
+        for (int i = 0; i < cluster.size(); i++) {
+            cluster.get(i).setConnectionSetupDelayMs(0);
+            cluster.get(i).setResponseDelayMs(50);
+        }
+        client = new GeminiClient(context, cluster.start());
+        cluster.get(FAULTY).setFault(LocalGeminiServer.Fault.OVERLOADED, 1f);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Log.d(TAG, client.poolStats() + "; " + cluster.stats());
+        client.close();
+        cluster.shutdown();
+    }
+
+    @Test
+    public void overloadedEndpointIsEjectedWhileQuestionsStillGetAnswers() throws Exception {
+        ejectFaulty();
+
+        int requests = cluster.get(FAULTY).getRequestCount();
+        for (int i = 0; i < 3; i++) {
+            ask();
+        }
+        assertEquals(requests, cluster.get(FAULTY).getRequestCount());
+    }
+
+    @Test
+    public void probeKeepsEndpointOutWhileGenerationStillFails() throws Exception {
+        ejectFaulty();
+        int requests = cluster.get(FAULTY).getRequestCount();
+
+        SystemClock.sleep(EJECTION_MS + 500);
+        ask(); // routing sends the due probe
+
+        awaitRequests(requests + 1);
+        awaitState(EndpointPool.State.EJECTED);
+    }
+
+    @Test
+    public void probeBringsEndpointBackOnceGenerationWorks() throws Exception {
+        ejectFaulty();
+        cluster.get(FAULTY).setFault(LocalGeminiServer.Fault.NONE, 0);
+
+        SystemClock.sleep(EJECTION_MS + 500);
+        ask();
+
+        awaitState(EndpointPool.State.IN_SERVICE);
+    }
+
+    /**
+     * Unknown latency costs nothing, so the faulty endpoint keeps being picked until it is ejected;
+     * every question is answered by a retry on the healthy one meanwhile
+     */
+    private void ejectFaulty() throws InterruptedException {
+        for (int i = 0; i < 10 && client.getEndpointState(FAULTY) == EndpointPool.State.IN_SERVICE; i++) {
+            ask();
+        }
+        assertEquals(EndpointPool.State.EJECTED, client.getEndpointState(FAULTY));
+    }
+
+    private void ask() throws InterruptedException {
+        client.analyzeImage(Bitmap.createBitmap(64, 48, Bitmap.Config.ARGB_8888), "What is ahead?",
+                new GeminiClient.GeminiCallback() {
+                    @Override
+                    public void onSuccess(String response) {
+                        events.add("answer");
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        events.add("error:" + error);
+                    }
+                });
+        String event = events.poll(WAIT_S, TimeUnit.SECONDS);
+        assertNotNull("timed out waiting for the client", event);
+        assertEquals("answer", event);
+    }
+
+    private void awaitRequests(int count) {
+        long deadline = SystemClock.uptimeMillis() + WAIT_S * 1000;
+        while (cluster.get(FAULTY).getRequestCount() < count && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(50);
+        }
+        assertTrue(cluster.get(FAULTY).getRequestCount() >= count);
+    }
+
+    private void awaitState(EndpointPool.State state) {
+        long deadline = SystemClock.uptimeMillis() + WAIT_S * 1000;
+        while (client.getEndpointState(FAULTY) != state && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(50);
+        }
+        assertEquals(state, client.getEndpointState(FAULTY));
+    }
+}
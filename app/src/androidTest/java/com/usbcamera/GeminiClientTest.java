@@ -0,0 +1,157 @@
+package com.usbcamera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.usbcamera.core.Obstacle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GeminiClient against LocalGeminiServer over HTTPS: plain, streamed and structured answers,
+ * connection reuse and retries on overload. Also checks that the debug build trusts the
+ * generated localhost certificate. Runs on a device without network access.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeminiClientTest {
+    private static final String TAG = "GeminiClientTest";
+    private static final long WAIT_S = 20;
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    private LocalGeminiServer server;
+    private GeminiClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        server = new LocalGeminiServer(context);
+        server.setConnectionSetupDelayMs(0);
+        server.setResponseDelayMs(50);
+        client = new GeminiClient(context, "local-key", server.start());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Log.d(TAG, client.connectionStats() + "; " + client.resilienceStats());
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void answersQuery() throws Exception {
+        client.analyzeImage(frame(), "What is ahead?", new QueryEvents());
+
+        String event = next();
+        assertTrue(event, event.startsWith("answer:") && event.contains("local stand-in"));
+    }
+
+    @Test
+    public void streamsSentences() throws Exception {
+        client.analyzeImageStreaming(frame(), "What is ahead?", new GeminiClient.StreamCallback() {
+            @Override
+            public void onSentence(String sentence) {
+                events.add("sentence:" + sentence.trim());
+            }
+
+            @Override
+            public void onComplete(String fullText) {
+                events.add("complete");
+            }
+
+            @Override
+            public void onError(String error) {
+                events.add("error:" + error);
+            }
+        });
+
+        assertEquals("sentence:The path ahead looks clear.", next());
+        assertEquals("sentence:This is the local stand-in.", next());
+        assertEquals("complete", next());
+    }
+
+    @Test
+    public void parsesObstacles() throws Exception {
+        client.analyzeForObstacles(frame(), null, new GeminiClient.ObstacleCallback() {
+            @Override
+            public void onObstacles(List<Obstacle> obstacles) {
+                events.add("obstacles:" + (obstacles.isEmpty() ? "" : obstacles.get(0).label));
+            }
+
+            @Override
+            public void onSceneUnchanged() {
+                events.add("unchanged");
+            }
+
+            @Override
+            public void onError(String error) {
+                events.add("error:" + error);
+            }
+        });
+
+        assertEquals("obstacles:chair", next());
+    }
+
+    @Test
+    public void reusesConnectionUntilItDrops() throws Exception {
+        client.analyzeImage(frame(), "What is ahead?", new QueryEvents());
+        assertTrue(next().startsWith("answer:"));
+        client.analyzeImage(frame(), "And now?", new QueryEvents());
+        assertTrue(next().startsWith("answer:"));
+        assertEquals(1, server.getConnectionCount());
+
+        server.dropConnectionAfterNextResponse();
+        client.analyzeImage(frame(), "And now?", new QueryEvents());
+        assertTrue(next().startsWith("answer:"));
+        client.analyzeImage(frame(), "And now?", new QueryEvents());
+        assertTrue(next().startsWith("answer:"));
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    @Test
+    public void retriesWhenOverloaded() throws Exception {
+        server.setFault(LocalGeminiServer.Fault.OVERLOADED, 1f);
+        client.analyzeImage(frame(), "What is ahead?", new QueryEvents());
+
+        assertTrue(next().startsWith("error:"));
+        assertTrue(client.getRetryCount() > 0);
+        assertTrue(server.getFaultCount() > 1);
+    }
+
+    private String next() throws InterruptedException {
+        String event = events.poll(WAIT_S, TimeUnit.SECONDS);
+        assertNotNull("timed out waiting for the client", event);
+        return event;
+    }
+
+    private static Bitmap frame() {
+        return Bitmap.createBitmap(64, 48, Bitmap.Config.ARGB_8888);
+    }
+
+    private class QueryEvents implements GeminiClient.GeminiCallback {
+        @Override
+        public void onSuccess(String response) {
+            events.add("answer:" + response);
+        }
+
+        @Override
+        public void onError(String error) {
+            events.add("error:" + error);
+        }
+    }
+}
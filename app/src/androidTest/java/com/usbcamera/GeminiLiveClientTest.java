@@ -0,0 +1,168 @@
+package com.usbcamera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GeminiLiveClient against LocalLiveServer: session setup, answer latency, frame streaming and
+ * reconnects after session limits and failed handshakes, and turns cut off by a rotation. Runs on
+ * a device without network access.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeminiLiveClientTest {
+    private static final String TAG = "GeminiLiveClientTest";
+    private static final long WAIT_S = 10;
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    private LocalLiveServer server;
+    private GeminiLiveClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalLiveServer();
+        server.setResponseDelayMs(200);
+        String endpoint = server.start();
+        client = new GeminiLiveClient("local-key", () -> Bitmap.createBitmap(64, 48, Bitmap.Config.ARGB_8888),
+                new GeminiLiveClient.LiveCallback() {
+                    @Override
+                    public void onSessionReady() {
+                        events.add("ready");
+                    }
+
+                    @Override
+                    public void onPartialText(String text) {
+                    }
+
+                    @Override
+                    public void onTurnComplete(String fullText) {
+                        events.add("turn:" + fullText);
+                    }
+
+                    @Override
+                    public void onSessionClosed(String reason) {
+                        events.add("closed");
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        events.add("error:" + error);
+                    }
+                });
+        client.setEndpoint(endpoint);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Log.d(TAG, client.stats());
+        client.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void answersTextTurnAfterSetup() throws Exception {
+        client.setFrameRate(0.1f); // keep frame replies out of the way
+        client.start();
+        awaitEvent("ready");
+        assertTrue(client.getLastSetupLatencyMs() >= 0);
+
+        client.sendText("What is ahead?");
+        String turn = awaitEvent("turn:");
+        assertTrue(turn, turn.contains("You asked: What is ahead?"));
+        // Time to first text includes the stand-in's fixed response delay
+        assertTrue(client.getLastResponseLatencyMs() >= 200);
+        assertTrue(client.getLastResponseLatencyMs() < 2000);
+    }
+
+    @Test
+    public void streamsFramesAtConfiguredRate() throws Exception {
+        server.setReplyEveryFrames(3);
+        client.setFrameRate(10);
+        client.start();
+        awaitEvent("ready");
+
+        String turn = awaitEvent("turn:");
+        assertTrue(turn, turn.contains("Frame 3 received"));
+        assertTrue(client.getFramesSent() >= 3);
+    }
+
+    @Test
+    public void rotatesSessionBeforeLimit() throws Exception {
+        client.setFrameRate(0.1f);
+        client.setSessionLimitMs(1000); // rotation is scheduled at the 1 s floor
+        client.start();
+        awaitEvent("ready");
+        awaitEvent("ready");
+
+        assertTrue(server.getSessionCount() >= 2);
+        assertTrue(client.getReconnects() >= 1);
+    }
+
+    @Test
+    public void rotatesOnServerGoAway() throws Exception {
+        server.setSessionLimitMs(500);
+        client.setFrameRate(0.1f);
+        client.start();
+        awaitEvent("ready");
+        awaitEvent("ready");
+
+        assertTrue(server.getSessionCount() >= 2);
+    }
+
+    @Test
+    public void reportsTurnCutOffByRotation() throws Exception {
+        server.setResponseDelayMs(5000);
+        client.setFrameRate(0.1f);
+        client.setSessionLimitMs(1000);
+        client.start();
+        awaitEvent("ready");
+
+        client.sendText("What is ahead?");
+        awaitEvent("error:");
+        awaitEvent("ready");
+    }
+
+    @Test
+    public void reconnectsAfterFailedHandshakes() throws Exception {
+        server.failNextHandshakes(2);
+        client.setFrameRate(0.1f);
+        client.start();
+        awaitEvent("closed");
+        awaitEvent("closed");
+        awaitEvent("ready");
+
+        assertEquals(2, client.getReconnects());
+        assertEquals(1, server.getSessionCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveFrameRate() {
+        client.setFrameRate(0);
+    }
+
+    /**
+     * Waits for the next event starting with prefix, skipping others
+     */
+    private String awaitEvent(String prefix) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(WAIT_S);
+        while (true) {
+            String event = events.poll(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            assertNotNull("Timed out waiting for " + prefix, event);
+            if (event.startsWith(prefix)) return event;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.usbcamera;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Debug-only set of LocalGeminiServer stand-ins, one per pool endpoint, for exercising
+ * GeminiClient's endpoint pool on a device:
+ *
+ *   LocalGeminiCluster cluster = new LocalGeminiCluster(context, 3);
+ *   GeminiClient client = new GeminiClient(context, cluster.start());
+ *   cluster.get(1).setFault(LocalGeminiServer.Fault.OVERLOADED, 1f);
+ *
+ * Requests then drain away from the faulty server, it is ejected after repeated failures, and
+ * once its fault is cleared a probe brings it back; GeminiClient.poolStats() shows each step.
+ * Start and stop it off the main thread.
+ */
+public class LocalGeminiCluster {
+    private static final String TAG = "LocalGeminiCluster";
+    private static final String MODEL_NAME = "gemini-2.5-flash-lite";
+
+    private final List<LocalGeminiServer> servers = new ArrayList<>();
+
+    public LocalGeminiCluster(Context context, int size) throws IOException, GeneralSecurityException {
+        for (int i = 0; i < size; i++) {
+            servers.add(new LocalGeminiServer(context));
+        }
+    }
+
+    /**
+     * Starts every server and returns one endpoint per server, each with its own fake key
+     */
+    public List<GeminiClient.EndpointConfig> start() throws IOException {
+        List<GeminiClient.EndpointConfig> endpoints = new ArrayList<>();
+        for (int i = 0; i < servers.size(); i++) {
+            String baseUrl = servers.get(i).start();
+            endpoints.add(new GeminiClient.EndpointConfig(MODEL_NAME, "local-key-" + (i + 1), baseUrl));
+        }
+        Log.d(TAG, "Started " + servers.size() + " stand-in servers");
+        return endpoints;
+    }
+
+    public LocalGeminiServer get(int index) {
+        return servers.get(index);
+    }
+
+    public int size() {
+        return servers.size();
+    }
+
+    /**
+     * Requests each server received and how many of those got an injected fault
+     */
+    public String stats() {
+        StringBuilder stats = new StringBuilder("stand-ins:");
+        for (int i = 0; i < servers.size(); i++) {
+            LocalGeminiServer server = servers.get(i);
+            stats.append(" #").append(i + 1).append(' ').append(server.getRequestCount()).append(" requests, ")
+                    .append(server.getFaultCount()).append(" faults;");
+        }
+        return stats.toString();
+    }
+
+    public void shutdown() throws IOException {
+        for (LocalGeminiServer server : servers) {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.usbcamera;
+
+import android.content.Context;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * Debug-only HTTPS stand-in for the Gemini REST endpoint, so connection warm-up and keep-alive
+ * can be measured on a device without touching the real API.
+ *
+ * Serves countTokens, generateContent and streamGenerateContent for any model. The first request
+ * on each new connection is held back by a configurable setup delay, standing in for the DNS,
+ * TLS and HTTP/2 round trips of a real cold connection, so cold versus warm latency shows up in
+ * GeminiClient.connectionStats(). The certificate is a leaf for localhost generated at build time
+ * (generateStandInCert in app/build.gradle); the debug network security config trusts it for
+ * localhost only.
+ *
+ * Faults can be injected into a share of requests (overload, rate limit, slow answers, dropped
+ * connections), so several servers started by LocalGeminiCluster can exercise the endpoint pool's
+ * routing, ejection and probing.
+ */
+public class LocalGeminiServer {
+    private static final String TAG = "LocalGeminiServer";
+    private static final char[] KEY_PASSWORD = "local".toCharArray();
+
+    public enum Fault {
+        NONE,
+        /** 503 UNAVAILABLE, as when the model is overloaded */
+        OVERLOADED,
+        /** 429 RESOURCE_EXHAUSTED, as when the key is over its rate limit */
+        RATE_LIMITED,
+        /** Answers, but only after the slow delay */
+        SLOW,
+        /** Closes the connection without answering */
+        DISCONNECT
+    }
+
+    private final MockWebServer server = new MockWebServer();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicBoolean dropAfterNext = new AtomicBoolean();
+    private final AtomicInteger faults = new AtomicInteger();
+    private final Random random = new Random();
+
+    private volatile long connectionSetupDelayMs = 300;
+    private volatile long responseDelayMs = 400;
+    private volatile Fault fault = Fault.NONE;
+    private volatile float faultRate = 0;
+    private volatile long slowDelayMs = 12000;
+
+    public LocalGeminiServer(Context context) throws IOException, GeneralSecurityException {
+        server.useHttps(sslContext(context).getSocketFactory(), false);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                requests.incrementAndGet();
+                String path = request.getPath() != null ? request.getPath() : "";
+                MockResponse response = injectFault(path);
+                if (response == null) {
+                    response = respond(path, request.getBody().readUtf8().contains("application/json"));
+                }
+                if (request.getSequenceNumber() == 0) {
+                    connections.incrementAndGet();
+                    response.setHeadersDelay(response.getHeadersDelay(TimeUnit.MILLISECONDS) + connectionSetupDelayMs,
+                            TimeUnit.MILLISECONDS);
+                }
+                if (response.getSocketPolicy() == SocketPolicy.KEEP_OPEN && dropAfterNext.getAndSet(false)) {
+                    response.setSocketPolicy(SocketPolicy.DISCONNECT_AT_END);
+                }
+                return response;
+            }
+        });
+    }
+
+    /**
+     * Starts listening on localhost and returns the base URL for new GeminiClient(context, key, endpoint)
+     */
+    public String start() throws IOException {
+        server.start();
+        String endpoint = "https://" + server.getHostName() + ":" + server.getPort();
+        Log.d(TAG, "Listening on " + endpoint);
+        return endpoint;
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Extra delay before the first response on each new connection
+     */
+    public void setConnectionSetupDelayMs(long connectionSetupDelayMs) {
+        this.connectionSetupDelayMs = connectionSetupDelayMs;
+    }
+
+    /**
+     * Time to first byte of generateContent answers
+     */
+    public void setResponseDelayMs(long responseDelayMs) {
+        this.responseDelayMs = responseDelayMs;
+    }
+
+    /**
+     * Makes the given share of requests (0 to 1) fail with fault; NONE or 0 turns faults off
+     */
+    public void setFault(Fault fault, float rate) {
+        this.fault = fault;
+        this.faultRate = rate;
+    }
+
+    /**
+     * How long a SLOW fault holds the answer back
+     */
+    public void setSlowDelayMs(long slowDelayMs) {
+        this.slowDelayMs = slowDelayMs;
+    }
+
+    /**
+     * Requests that got an injected fault so far
+     */
+    public int getFaultCount() {
+        return faults.get();
+    }
+
+    /**
+     * Closes the connection after the next response, as a network change or idle timeout would
+     */
+    public void dropConnectionAfterNextResponse() {
+        dropAfterNext.set(true);
+    }
+
+    /**
+     * Connections opened so far; stays at one per model client while keep-alive works
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * The response for an injected fault, or null to answer normally
+     */
+    private MockResponse injectFault(String path) {
+        Fault current = fault;
+        // As with the real API, token counts do not use generation capacity
+        if ((current == Fault.OVERLOADED || current == Fault.RATE_LIMITED) && path.contains(":countTokens")) {
+            return null;
+        }
+        synchronized (random) {
+            if (current == Fault.NONE || random.nextFloat() >= faultRate) return null;
+        }
+        faults.incrementAndGet();
+        try {
+            switch (current) {
+                case OVERLOADED:
+                    return error(503, "UNAVAILABLE", "The model is overloaded. Please try again later.");
+                case RATE_LIMITED:
+                    return error(429, "RESOURCE_EXHAUSTED", "Resource has been exhausted (e.g. check quota).");
+                case SLOW:
+                    // Normal answer, but the headers wait longer than any deadline the client uses
+                    return json(candidate("Path clear. This is a slow answer from the local stand-in."))
+                            .setHeadersDelay(slowDelayMs, TimeUnit.MILLISECONDS);
+                case DISCONNECT:
+                default:
+                    return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MockResponse error(int code, String status, String message) throws JSONException {
+        JSONObject error = new JSONObject()
+                .put("code", code)
+                .put("message", message)
+                .put("status", status);
+        return json(new JSONObject().put("error", error).toString()).setResponseCode(code);
+    }
+
+    /**
+     * @param structured the request asked for a JSON answer (Active Mode's obstacle schema)
+     */
+    private MockResponse respond(String path, boolean structured) {
+        try {
+            if (path.contains(":countTokens")) {
+                return json(new JSONObject().put("totalTokens", 1).toString());
+            } else if (path.contains(":streamGenerateContent")) {
+                String body = "data: " + candidate("The path ahead looks clear. ") + "\r\n\r\n"
+                        + "data: " + candidate("This is the local stand-in.") + "\r\n\r\n";
+                return new MockResponse()
+                        .setHeader("Content-Type", "text/event-stream")
+                        .setBody(body)
+                        .setBodyDelay(responseDelayMs, TimeUnit.MILLISECONDS);
+            } else if (path.contains(":generateContent")) {
+                return json(candidate(structured ? obstacleAnswer() : "Path clear. This is the local stand-in."))
+                        .setBodyDelay(responseDelayMs, TimeUnit.MILLISECONDS);
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        return new MockResponse().setResponseCode(404);
+    }
+
+    private static String obstacleAnswer() throws JSONException {
+        JSONObject chair = new JSONObject()
+                .put("label", "chair")
+                .put("direction", "left")
+                .put("distance", "medium")
+                .put("urgency", "caution");
+        return new JSONObject().put("obstacles", new JSONArray().put(chair)).toString();
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+
+    private static String candidate(String text) throws JSONException {
+        JSONObject content = new JSONObject()
+                .put("role", "model")
+                .put("parts", new JSONArray().put(new JSONObject().put("text", text)));
+        return new JSONObject().put("candidates", new JSONArray().put(new JSONObject()
+                .put("content", content)
+                .put("finishReason", "STOP")
+                .put("index", 0))).toString();
+    }
+
+    private static SSLContext sslContext(Context context) throws IOException, GeneralSecurityException {
+        Certificate certificate;
+        try (InputStream in = context.getResources().openRawResource(R.raw.local_stand_in_cert)) {
+            certificate = CertificateFactory.getInstance("X.509").generateCertificate(in);
+        }
+        String keyPem = new String(readRaw(context, R.raw.local_stand_in_key), StandardCharsets.US_ASCII);
+        byte[] der = Base64.decode(keyPem.replaceAll("-----[A-Z ]+-----", ""), Base64.DEFAULT);
+        PrivateKey key = KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(der));
+
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("local", key, KEY_PASSWORD, new Certificate[]{certificate});
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, KEY_PASSWORD);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    private static byte[] readRaw(Context context, int id) throws IOException {
+        try (InputStream in = context.getResources().openRawResource(id)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
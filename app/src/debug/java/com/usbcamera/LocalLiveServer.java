@@ -0,0 +1,156 @@
+package com.usbcamera;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Debug-only stand-in for the Gemini Live WebSocket endpoint, so GeminiLiveClient latency and
+ * reconnect behaviour can be exercised on a device without network access.
+ *
+ * It answers setup, replies to every Nth video frame and to text turns after a fixed delay,
+ * and ends each session with goAway once the (shortened) session limit expires.
+ * Handshake failures can be injected to exercise the reconnect backoff.
+ */
+public class LocalLiveServer {
+    private static final String TAG = "LocalLiveServer";
+
+    private final MockWebServer server = new MockWebServer();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicInteger failNextHandshakes = new AtomicInteger();
+
+    private volatile long responseDelayMs = 300;
+    private volatile long sessionLimitMs = 120000;
+    private volatile int replyEveryFrames = 3;
+
+    public LocalLiveServer() {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (failNextHandshakes.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    return new MockResponse().setResponseCode(503);
+                }
+                return new MockResponse().withWebSocketUpgrade(new SessionListener(sessions.incrementAndGet()));
+            }
+        });
+    }
+
+    /**
+     * Starts listening on localhost and returns the ws:// endpoint for GeminiLiveClient.setEndpoint()
+     */
+    public String start() throws IOException {
+        server.start();
+        String endpoint = "ws://" + server.getHostName() + ":" + server.getPort() + "/live";
+        Log.d(TAG, "Listening on " + endpoint);
+        return endpoint;
+    }
+
+    public void shutdown() throws IOException {
+        scheduler.shutdownNow();
+        server.shutdown();
+    }
+
+    public void setResponseDelayMs(long responseDelayMs) {
+        this.responseDelayMs = responseDelayMs;
+    }
+
+    public void setSessionLimitMs(long sessionLimitMs) {
+        this.sessionLimitMs = sessionLimitMs;
+    }
+
+    public void setReplyEveryFrames(int replyEveryFrames) {
+        this.replyEveryFrames = Math.max(1, replyEveryFrames);
+    }
+
+    /**
+     * Rejects the next n handshakes with HTTP 503
+     */
+    public void failNextHandshakes(int n) {
+        failNextHandshakes.set(n);
+    }
+
+    public int getSessionCount() {
+        return sessions.get();
+    }
+
+    private class SessionListener extends WebSocketListener {
+        private final int session;
+        private int frames = 0;
+
+        SessionListener(int session) {
+            this.session = session;
+        }
+
+        @Override
+        public void onOpen(WebSocket socket, Response response) {
+            scheduler.schedule(() -> {
+                send(socket, "{\"goAway\":{\"timeLeft\":\"1s\"}}");
+                scheduler.schedule(() -> socket.close(1000, "Session limit reached"), 1, TimeUnit.SECONDS);
+            }, sessionLimitMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onMessage(WebSocket socket, String text) {
+            try {
+                JSONObject message = new JSONObject(text);
+                if (message.has("setup")) {
+                    send(socket, "{\"setupComplete\":{}}");
+                    send(socket, new JSONObject().put("sessionResumptionUpdate", new JSONObject()
+                            .put("newHandle", "local-" + session)
+                            .put("resumable", true)).toString());
+                } else if (message.has("realtimeInput")) {
+                    frames++;
+                    if (frames % replyEveryFrames == 0) {
+                        reply(socket, "Frame " + frames + " received. ", "Path looks clear.");
+                    }
+                } else if (message.has("clientContent")) {
+                    String question = message.getJSONObject("clientContent").getJSONArray("turns")
+                            .getJSONObject(0).getJSONArray("parts").getJSONObject(0).optString("text");
+                    reply(socket, "You asked: " + question + ". ", "This is the local stand-in.");
+                }
+            } catch (JSONException e) {
+                Log.w(TAG, "Bad client message", e);
+            }
+        }
+
+        private void reply(WebSocket socket, String first, String second) {
+            scheduler.schedule(() -> {
+                send(socket, content(first, false));
+                send(socket, content(second, true));
+            }, responseDelayMs, TimeUnit.MILLISECONDS);
+        }
+
+        private String content(String text, boolean turnComplete) {
+            try {
+                JSONObject part = new JSONObject().put("text", text);
+                JSONObject serverContent = new JSONObject()
+                        .put("modelTurn", new JSONObject().put("parts", new JSONArray().put(part)))
+                        .put("turnComplete", turnComplete);
+                return new JSONObject().put("serverContent", serverContent).toString();
+            } catch (JSONException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void send(WebSocket socket, String text) {
+            socket.send(text);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.usbcamera;
+
+import android.graphics.Bitmap;
+
+import com.usbcamera.core.FrameEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * FrameEncoder backed by Bitmap.compress
+ */
+public class BitmapJpegEncoder implements FrameEncoder<Bitmap> {
+
+    @Override
+    public void encode(Bitmap image, int quality, OutputStream out) throws IOException {
+        if (!image.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+            throw new IOException("Bitmap.compress failed");
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.usbcamera;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Size-keyed pool of mutable ARGB_8888 bitmaps shared by the capture and resize stages.
+ *
+ * Ownership rules:
+ * - {@link #acquire(int, int)} hands the caller exclusive ownership of the bitmap.
+ * - The owner either passes it on (ownership moves with it) or calls {@link #release(Bitmap)}
+ *   exactly once; after release the bitmap must not be touched again.
+ * - Bitmaps that did not come from the pool may be released too; they are adopted if they fit.
+ */
+public class BitmapPool {
+    private static final String TAG = "BitmapPool";
+    private static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+    private static final int MAX_PER_SIZE = 3;
+
+    private static BitmapPool instance;
+
+    private final long maxBytes;
+    private final Map<Long, ArrayDeque<Bitmap>> buckets = new HashMap<>();
+    private long pooledBytes = 0;
+    private int pooledCount = 0;
+
+    private long acquires = 0;
+    private long reuses = 0;
+    private long bytesAllocated = 0;
+
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            instance = new BitmapPool(DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a mutable width x height bitmap, reusing a pooled one when available.
+     * Pixel contents are undefined; callers are expected to overwrite every pixel.
+     */
+    public Bitmap acquire(int width, int height) {
+        synchronized (this) {
+            acquires++;
+            ArrayDeque<Bitmap> bucket = buckets.get(key(width, height));
+            while (bucket != null && !bucket.isEmpty()) {
+                Bitmap bitmap = bucket.pollFirst();
+                pooledBytes -= bitmap.getAllocationByteCount();
+                pooledCount--;
+                if (!bitmap.isRecycled()) {
+                    reuses++;
+                    return bitmap;
+                }
+            }
+            bytesAllocated += (long) width * height * 4;
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Gives a bitmap back to the pool. Bitmaps that cannot be pooled are recycled.
+     */
+    public void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap.recycle();
+            return;
+        }
+
+        int size = bitmap.getAllocationByteCount();
+        synchronized (this) {
+            long k = key(bitmap.getWidth(), bitmap.getHeight());
+            ArrayDeque<Bitmap> bucket = buckets.get(k);
+            if (bucket == null) {
+                bucket = new ArrayDeque<>();
+                buckets.put(k, bucket);
+            }
+            if (bucket.size() < MAX_PER_SIZE && pooledBytes + size <= maxBytes) {
+                bucket.addLast(bitmap);
+                pooledBytes += size;
+                pooledCount++;
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    public synchronized void clear() {
+        for (ArrayDeque<Bitmap> bucket : buckets.values()) {
+            for (Bitmap bitmap : bucket) {
+                bitmap.recycle();
+            }
+        }
+        buckets.clear();
+        pooledBytes = 0;
+        pooledCount = 0;
+        Log.d(TAG, "Pool cleared");
+    }
+
+    public synchronized int getPooledCount() {
+        return pooledCount;
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    public synchronized long getBytesAllocated() {
+        return bytesAllocated;
+    }
+
+    public synchronized float getReuseRate() {
+        return acquires == 0 ? 0f : (float) reuses / acquires;
+    }
+
+    public synchronized String stats() {
+        return "pooled=" + pooledCount + " (" + pooledBytes / 1024 + " KB), reuse="
+                + Math.round(getReuseRate() * 100) + "%, allocated=" + bytesAllocated / 1024 + " KB";
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+}
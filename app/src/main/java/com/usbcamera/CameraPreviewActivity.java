@@ -4,12 +4,20 @@ import android.Manifest;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
 import android.os.Bundle;
 import android.os.Handler;
 import android.text.InputType;
 import android.util.Log;
+import android.widget.CheckBox;
 import android.widget.CompoundButton;
 import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.RadioButton;
+import android.widget.RadioGroup;
+import android.widget.ScrollView;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -21,17 +29,76 @@ import androidx.core.content.ContextCompat;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.switchmaterial.SwitchMaterial;
+import com.usbcamera.core.CadenceController;
+import com.usbcamera.core.CircuitBreaker;
+import com.usbcamera.core.Detection;
+import com.usbcamera.core.EscalationGate;
+import com.usbcamera.core.LatencyTracker;
+import com.usbcamera.core.LatestFrameScheduler;
+import com.usbcamera.core.Obstacle;
+import com.usbcamera.core.PriorityExecutor;
+import com.usbcamera.core.PromptBuilder;
+import com.usbcamera.core.QuotaManager;
+import com.usbcamera.core.RoiLayout;
+import com.usbcamera.core.SpeechScheduler;
+import com.usbcamera.core.WorldState;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
 
 public class CameraPreviewActivity extends AppCompatActivity {
     private static final String TAG = "CameraPreviewActivity";
     private static final int PERMISSION_REQUEST_CODE = 100;
-    private static final long ACTIVE_MODE_INTERVAL = 3000; // 3 seconds
+    private static final long DEFAULT_MIN_INTERVAL_MS = 1000;
+    private static final long DEFAULT_MAX_INTERVAL_MS = 8000;
+    private static final int REQUESTS_PER_MINUTE = 15; // free tier limit
+    private static final int REQUESTS_PER_DAY = 20; // free tier daily cap; raise for a paid key
+    // Kept for spoken questions; Active Mode only uses what is left above these
+    private static final int QUERY_RESERVE_PER_MINUTE = 3;
+    private static final int QUERY_RESERVE_PER_DAY = 5;
+    // Gemini API daily limits reset at midnight Pacific time
+    private static final TimeZone QUOTA_RESET_ZONE = TimeZone.getTimeZone("America/Los_Angeles");
+    private static final float SPECULATION_MIN_QUOTA = 0.5f;
+    private static final long ACTIVE_MODE_STALE_AFTER_MS = 4000; // answers about older frames are dropped
     private static final String PREFS_NAME = "AssistEyesPrefs";
     private static final String KEY_CUSTOM_INSTRUCTION = "custom_instruction";
+    private static final String KEY_MIN_INTERVAL_MS = "active_min_interval_ms";
+    private static final String KEY_MAX_INTERVAL_MS = "active_max_interval_ms";
+    private static final String KEY_ROI_MODE = "active_roi_mode";
+    private static final String KEY_ROI_PATH_WIDTH = "active_roi_path_width";
+    private static final String KEY_ROI_PATH_HEIGHT = "active_roi_path_height";
+    private static final String KEY_ROI_HEAD_TOP = "active_roi_head_top";
+    private static final String KEY_ROI_HEAD_HEIGHT = "active_roi_head_height";
+    private static final String KEY_BURST_FRAMES = "active_burst_frames";
+    private static final String KEY_HANDS_FREE = "hands_free";
+    private static final String KEY_QUOTA_DAY_USED = "quota_day_used";
+    private static final String KEY_QUOTA_DAY_RESET_AT = "quota_day_reset_at";
+    private static final String KEY_LIVE_SESSION = "active_live_session";
+    // Bottom-centre path plus a head-level band: ~147k px at full detail vs ~197k px for the downscaled frame
+    private static final RoiLayout DEFAULT_ROI = new RoiLayout(RoiLayout.Mode.MOSAIC, 0.6f, 0.55f, 0.1f, 0.25f);
+    private static final int DEFAULT_BURST_FRAMES = 1; // single frame; more sends a short clip per request
+    private static final long BURST_MAX_AGE_MS = 2000;
+    private static final String PROCESS_ERROR_MESSAGE = "Sorry, I couldn't process that.";
+    private static final String CAPTURE_ERROR_MESSAGE = "Sorry, I couldn't capture the camera view. Please try again.";
+    // Pre-rendered at startup; other frequent phrases are learned as they are spoken
+    private static final List<String> KNOWN_PHRASES = knownPhrases();
+    private static final String TRACE_FILE_NAME = "pipeline_trace.csv";
+    private static final float DETECTION_MIN_SCORE = 0.5f;
+    private static final long DETECTION_FORGET_AFTER_MS = 5000;
+    private static final long MAX_QUIET_MS = 15000; // still ask the cloud now and then; the detector misses steps and poles
+    private static final long WORLD_STATE_FORGET_AFTER_MS = 20000; // re-announce an obstacle not seen for this long
+    private static final long LIVE_CHECK_INTERVAL_MS = 3000; // frames stream at 1 FPS; ask about them this often
 
     private CameraPreviewFragment cameraFragment;
     private VoiceManager voiceManager;
     private GeminiClient geminiClient;
+    private QuotaManager quotaManager;
     private FloatingActionButton micButton;
     private SwitchMaterial activeModeSwitch;
     private MaterialButton settingsButton;
@@ -41,6 +108,21 @@ public class CameraPreviewActivity extends AppCompatActivity {
     private boolean isVoiceManagerSpeaking = false;
     private final Handler activeModeHandler = new Handler();
     private Runnable activeModeRunnable;
+    private final Runnable liveCheckRunnable = this::sendLiveCheck;
+    private GeminiLiveClient liveClient;
+    private volatile boolean liveTurnPending = false;
+    private LatestFrameScheduler<List<CameraPreviewFragment.CapturedFrame>> activeModeScheduler;
+    // Query pipelining, only touched on the UI thread
+    private GeminiClient.PreparedImage earlyImage;
+    private SpeculativeAnswer speculation;
+    private int speculationHits = 0;
+    private int speculationMisses = 0;
+    private CadenceController cadenceController;
+    private ObstacleDetector obstacleDetector;
+    private EscalationGate escalationGate;
+    private final WorldState worldState = new WorldState(WORLD_STATE_FORGET_AFTER_MS);
+    private HapticAlerter hapticAlerter;
+    private final PipelineTracer tracer = PipelineTracer.getInstance();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -72,12 +154,29 @@ public class CameraPreviewActivity extends AppCompatActivity {
             @Override
             public void onSpeechResult(String text) {
                 Log.d(TAG, "User said: " + text);
-                processQuery(text);
+                // Hands-free questions arrive without a mic tap
+                isProcessing = true;
+                updateMicButton(true);
+                processQuery(text, voiceManager.getRecognitionTraceId());
+            }
+
+            @Override
+            public void onSpeechBegan() {
+                // Capture and encode while the user is still talking
+                Bitmap frame = captureCurrentFrame();
+                earlyImage = frame != null ? geminiClient.prepareQueryImage(frame, System.currentTimeMillis()) : null;
+            }
+
+            @Override
+            public void onSpeculativeTranscript(String text) {
+                startSpeculation(text);
             }
 
             @Override
             public void onSpeechError(String error) {
                 Log.e(TAG, "Speech error: " + error);
+                cancelSpeculation();
+                earlyImage = null;
                 runOnUiThread(() -> {
                     updateStatus("Listening failed");
                     isProcessing = false;
@@ -88,6 +187,8 @@ public class CameraPreviewActivity extends AppCompatActivity {
             @Override
             public void onListeningStarted() {
                 runOnUiThread(() -> {
+                    isProcessing = true;
+                    updateMicButton(true);
                     updateStatus("Listening...");
                     updateInstructions("Speak your question now");
                 });
@@ -111,8 +212,28 @@ public class CameraPreviewActivity extends AppCompatActivity {
                 });
             }
         });
+        voiceManager.preparePhrases(KNOWN_PHRASES);
 
-        geminiClient = new GeminiClient(this, BuildConfig.GEMINI_API_KEY);
+        geminiClient = new GeminiClient(this,
+                GeminiClient.parseEndpoints(BuildConfig.GEMINI_ENDPOINTS, BuildConfig.GEMINI_API_KEY));
+        // Each endpoint in the pool brings its own limits
+        int endpoints = geminiClient.getEndpointCount();
+        quotaManager = new QuotaManager(REQUESTS_PER_MINUTE * endpoints, REQUESTS_PER_DAY * endpoints,
+                QUERY_RESERVE_PER_MINUTE, QUERY_RESERVE_PER_DAY, QUOTA_RESET_ZONE, quotaStore(),
+                System.currentTimeMillis());
+        geminiClient.setQuotaManager(quotaManager);
+        // DNS, TLS and HTTP/2 setup happen now rather than on the first question
+        geminiClient.warmUpConnection();
+        geminiClient.setActiveModeRoi(loadRoiLayout());
+        geminiClient.setCircuitListener((from, to) -> runOnUiThread(() -> {
+            if (activeModeSwitch == null || !activeModeSwitch.isChecked()) return;
+            if (to == CircuitBreaker.State.OPEN) {
+                updateStatus("Active Mode paused");
+                updateInstructions("The AI is overloaded, scanning will resume shortly");
+            } else if (to == CircuitBreaker.State.CLOSED) {
+                updateStatus("Active Mode ON");
+            }
+        }));
 
         new Handler().postDelayed(() -> {
             micButton = findViewById(R.id.mic_button);
@@ -124,6 +245,41 @@ public class CameraPreviewActivity extends AppCompatActivity {
         }, 500);
     }
 
+    /**
+     * Error messages and the alerts for the most common obstacle, in every wording describe() uses
+     */
+    private static List<String> knownPhrases() {
+        List<String> phrases = new ArrayList<>(Arrays.asList(PROCESS_ERROR_MESSAGE, CAPTURE_ERROR_MESSAGE,
+                GeminiClient.OVERLOADED_MESSAGE));
+        phrases.addAll(Obstacle.phrasesFor("person"));
+        return phrases;
+    }
+
+    /**
+     * Keeps the day's request count across restarts
+     */
+    private QuotaManager.Store quotaStore() {
+        return new QuotaManager.Store() {
+            @Override
+            public int loadDayUsed() {
+                return prefs.getInt(KEY_QUOTA_DAY_USED, 0);
+            }
+
+            @Override
+            public long loadDayResetAtMs() {
+                return prefs.getLong(KEY_QUOTA_DAY_RESET_AT, 0);
+            }
+
+            @Override
+            public void save(int dayUsed, long dayResetAtMs) {
+                prefs.edit()
+                        .putInt(KEY_QUOTA_DAY_USED, dayUsed)
+                        .putLong(KEY_QUOTA_DAY_RESET_AT, dayResetAtMs)
+                        .apply();
+            }
+        };
+    }
+
     private void setupMicButton() {
         micButton.setOnClickListener(v -> {
             if (isProcessing) {
@@ -138,6 +294,21 @@ public class CameraPreviewActivity extends AppCompatActivity {
             updateMicButton(true);
             voiceManager.startListening();
         });
+        micButton.setOnLongClickListener(v -> {
+            if (!checkPermissions()) {
+                requestPermissions();
+                return true;
+            }
+            boolean enabled = !voiceManager.isHandsFree();
+            prefs.edit().putBoolean(KEY_HANDS_FREE, enabled).apply();
+            voiceManager.setHandsFree(enabled);
+            voiceManager.speak(enabled ? "Hands-free on. Say hey assist, then your question." : "Hands-free off.",
+                    SpeechScheduler.Priority.URGENT, PipelineTracer.NO_TRACE);
+            return true;
+        });
+        if (prefs.getBoolean(KEY_HANDS_FREE, false) && checkPermissions()) {
+            voiceManager.setHandsFree(true);
+        }
     }
 
     private void setupActiveModeSwitch() {
@@ -149,19 +320,32 @@ public class CameraPreviewActivity extends AppCompatActivity {
             }
         });
 
+        obstacleDetector = new ObstacleDetector(this);
+        escalationGate = new EscalationGate(DETECTION_MIN_SCORE, DETECTION_FORGET_AFTER_MS, MAX_QUIET_MS);
+        hapticAlerter = new HapticAlerter(this);
+
+        activeModeScheduler = new LatestFrameScheduler<>(ACTIVE_MODE_STALE_AFTER_MS,
+                this::sendObstacleRequest,
+                this::releaseFrames);
+
+        cadenceController = new CadenceController(
+                prefs.getLong(KEY_MIN_INTERVAL_MS, DEFAULT_MIN_INTERVAL_MS),
+                prefs.getLong(KEY_MAX_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS),
+                REQUESTS_PER_MINUTE * geminiClient.getEndpointCount() - QUERY_RESERVE_PER_MINUTE);
+
         activeModeRunnable = () -> {
             if (activeModeSwitch.isChecked()) {
                 performSilentAnalysis();
-                activeModeHandler.postDelayed(activeModeRunnable, ACTIVE_MODE_INTERVAL);
+                activeModeHandler.postDelayed(activeModeRunnable, nextActiveModeInterval());
             }
         };
     }
 
     private void setupSettingsButton() {
-        settingsButton.setOnClickListener(v -> showCustomInstructionDialog());
+        settingsButton.setOnClickListener(v -> showActiveModeSettingsDialog());
     }
 
-    private void showCustomInstructionDialog() {
+    private void showActiveModeSettingsDialog() {
         String currentInstruction = prefs.getString(KEY_CUSTOM_INSTRUCTION, "");
 
         EditText input = new EditText(this);
@@ -172,28 +356,248 @@ public class CameraPreviewActivity extends AppCompatActivity {
         input.setMaxLines(5);
         input.setPadding(50, 40, 50, 40);
 
+        EditText minIntervalInput = createSecondsInput("Fastest scan interval (seconds)",
+                prefs.getLong(KEY_MIN_INTERVAL_MS, DEFAULT_MIN_INTERVAL_MS));
+        EditText maxIntervalInput = createSecondsInput("Slowest scan interval (seconds)",
+                prefs.getLong(KEY_MAX_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS));
+
+        RoiLayout roi = loadRoiLayout();
+        RadioGroup roiModeGroup = new RadioGroup(this);
+        roiModeGroup.setPadding(50, 20, 50, 0);
+        String[] roiModeLabels = {"Whole frame", "Walking path only", "Path + head level"};
+        for (RoiLayout.Mode mode : RoiLayout.Mode.values()) {
+            RadioButton button = new RadioButton(this);
+            button.setId(mode.ordinal() + 1);
+            button.setText(roiModeLabels[mode.ordinal()]);
+            roiModeGroup.addView(button);
+        }
+        roiModeGroup.check(roi.mode.ordinal() + 1);
+
+        TextView roiCaption = new TextView(this);
+        roiCaption.setText("Region sent to the AI (% of frame): path width, path height, head band top, head band height");
+        roiCaption.setPadding(50, 20, 50, 0);
+        EditText pathWidthInput = createPercentInput("Path width (%)", roi.pathWidth);
+        EditText pathHeightInput = createPercentInput("Path height from bottom (%)", roi.pathHeight);
+        EditText headTopInput = createPercentInput("Head band top (%)", roi.headTop);
+        EditText headHeightInput = createPercentInput("Head band height (%)", roi.headHeight);
+        EditText burstInput = new EditText(this);
+        burstInput.setInputType(InputType.TYPE_CLASS_NUMBER);
+        burstInput.setHint("Frames per request (1-" + CameraPreviewFragment.MAX_BURST_FRAMES + ", 1 = single frame)");
+        burstInput.setText(String.valueOf(getBurstFrames()));
+        burstInput.setPadding(50, 40, 50, 40);
+        CheckBox liveSessionBox = new CheckBox(this);
+        liveSessionBox.setText("Stream to a Live session instead (experimental)");
+        liveSessionBox.setChecked(prefs.getBoolean(KEY_LIVE_SESSION, false));
+        liveSessionBox.setPadding(50, 20, 50, 20);
+
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.addView(input);
+        layout.addView(minIntervalInput);
+        layout.addView(maxIntervalInput);
+        layout.addView(roiModeGroup);
+        layout.addView(roiCaption);
+        layout.addView(pathWidthInput);
+        layout.addView(pathHeightInput);
+        layout.addView(headTopInput);
+        layout.addView(headHeightInput);
+        layout.addView(burstInput);
+        layout.addView(liveSessionBox);
+        ScrollView scrollView = new ScrollView(this);
+        scrollView.addView(layout);
+
         new AlertDialog.Builder(this)
-                .setTitle("Active Mode Instruction")
+                .setTitle("Active Mode Settings")
                 .setMessage("Customize what the AI should focus on in Active Mode:")
-                .setView(input)
+                .setView(scrollView)
                 .setPositiveButton("Save", (dialog, which) -> {
                     String instruction = input.getText().toString().trim();
-                    prefs.edit().putString(KEY_CUSTOM_INSTRUCTION, instruction).apply();
-                    Toast.makeText(this, "Instruction saved!", Toast.LENGTH_SHORT).show();
+                    long[] bounds = CadenceController.clampBounds(parseSeconds(minIntervalInput, DEFAULT_MIN_INTERVAL_MS),
+                            parseSeconds(maxIntervalInput, DEFAULT_MAX_INTERVAL_MS));
+                    long minMs = bounds[0];
+                    long maxMs = bounds[1];
+                    RoiLayout.Mode roiMode = RoiLayout.Mode.values()[Math.max(0, roiModeGroup.getCheckedRadioButtonId() - 1)];
+                    RoiLayout newRoi = new RoiLayout(roiMode,
+                            parsePercent(pathWidthInput, roi.pathWidth),
+                            parsePercent(pathHeightInput, roi.pathHeight),
+                            parsePercent(headTopInput, roi.headTop),
+                            parsePercent(headHeightInput, roi.headHeight));
+                    int burstFrames;
+                    try {
+                        burstFrames = Integer.parseInt(burstInput.getText().toString().trim());
+                    } catch (NumberFormatException e) {
+                        burstFrames = DEFAULT_BURST_FRAMES;
+                    }
+                    prefs.edit()
+                            .putString(KEY_CUSTOM_INSTRUCTION, instruction)
+                            .putLong(KEY_MIN_INTERVAL_MS, minMs)
+                            .putLong(KEY_MAX_INTERVAL_MS, maxMs)
+                            .putString(KEY_ROI_MODE, newRoi.mode.name())
+                            .putFloat(KEY_ROI_PATH_WIDTH, newRoi.pathWidth)
+                            .putFloat(KEY_ROI_PATH_HEIGHT, newRoi.pathHeight)
+                            .putFloat(KEY_ROI_HEAD_TOP, newRoi.headTop)
+                            .putFloat(KEY_ROI_HEAD_HEIGHT, newRoi.headHeight)
+                            .putInt(KEY_BURST_FRAMES, burstFrames)
+                            .putBoolean(KEY_LIVE_SESSION, liveSessionBox.isChecked())
+                            .apply();
+                    if (cadenceController != null) cadenceController.setBounds(minMs, maxMs);
+                    if (cameraFragment != null && activeModeSwitch.isChecked()
+                            && !prefs.getBoolean(KEY_LIVE_SESSION, false)) {
+                        cameraFragment.setBurstFrames(getBurstFrames());
+                    }
+                    geminiClient.setActiveModeRoi(newRoi);
+                    Toast.makeText(this, "Settings saved!", Toast.LENGTH_SHORT).show();
                 })
                 .setNegativeButton("Cancel", null)
                 .setNeutralButton("Reset", (dialog, which) -> {
-                    prefs.edit().remove(KEY_CUSTOM_INSTRUCTION).apply();
-                    Toast.makeText(this, "Instruction reset to default", Toast.LENGTH_SHORT).show();
+                    prefs.edit()
+                            .remove(KEY_CUSTOM_INSTRUCTION)
+                            .remove(KEY_MIN_INTERVAL_MS)
+                            .remove(KEY_MAX_INTERVAL_MS)
+                            .remove(KEY_ROI_MODE)
+                            .remove(KEY_ROI_PATH_WIDTH)
+                            .remove(KEY_ROI_PATH_HEIGHT)
+                            .remove(KEY_ROI_HEAD_TOP)
+                            .remove(KEY_ROI_HEAD_HEIGHT)
+                            .remove(KEY_BURST_FRAMES)
+                            .remove(KEY_LIVE_SESSION)
+                            .apply();
+                    geminiClient.setActiveModeRoi(DEFAULT_ROI);
+                    if (cameraFragment != null) cameraFragment.setBurstFrames(DEFAULT_BURST_FRAMES);
+                    if (cadenceController != null) {
+                        cadenceController.setBounds(DEFAULT_MIN_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS);
+                    }
+                    Toast.makeText(this, "Settings reset to default", Toast.LENGTH_SHORT).show();
                 })
                 .show();
     }
 
+    private EditText createSecondsInput(String hint, long valueMs) {
+        EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_DECIMAL);
+        input.setHint(hint);
+        input.setText(String.format(Locale.US, "%.1f", valueMs / 1000f));
+        input.setPadding(50, 40, 50, 40);
+        return input;
+    }
+
+    private EditText createPercentInput(String hint, float fraction) {
+        EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_NUMBER);
+        input.setHint(hint);
+        input.setText(String.valueOf(Math.round(fraction * 100)));
+        input.setPadding(50, 40, 50, 40);
+        return input;
+    }
+
+    private float parsePercent(EditText input, float fallback) {
+        try {
+            return Integer.parseInt(input.getText().toString().trim()) / 100f;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private RoiLayout loadRoiLayout() {
+        RoiLayout.Mode mode;
+        try {
+            mode = RoiLayout.Mode.valueOf(prefs.getString(KEY_ROI_MODE, DEFAULT_ROI.mode.name()));
+        } catch (IllegalArgumentException e) {
+            mode = DEFAULT_ROI.mode;
+        }
+        return new RoiLayout(mode,
+                prefs.getFloat(KEY_ROI_PATH_WIDTH, DEFAULT_ROI.pathWidth),
+                prefs.getFloat(KEY_ROI_PATH_HEIGHT, DEFAULT_ROI.pathHeight),
+                prefs.getFloat(KEY_ROI_HEAD_TOP, DEFAULT_ROI.headTop),
+                prefs.getFloat(KEY_ROI_HEAD_HEIGHT, DEFAULT_ROI.headHeight));
+    }
+
+    private int getBurstFrames() {
+        int frames = prefs.getInt(KEY_BURST_FRAMES, DEFAULT_BURST_FRAMES);
+        return Math.max(1, Math.min(CameraPreviewFragment.MAX_BURST_FRAMES, frames));
+    }
+
+    private long parseSeconds(EditText input, long fallbackMs) {
+        try {
+            return Math.round(Float.parseFloat(input.getText().toString().trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return fallbackMs;
+        }
+    }
+
     private void startActiveMode() {
         updateStatus("Active Mode ON");
         micButton.setEnabled(false);
         micButton.setAlpha(0.5f);
-        activeModeHandler.post(activeModeRunnable);
+        if (prefs.getBoolean(KEY_LIVE_SESSION, false)) {
+            startLiveSession();
+        } else {
+            if (cameraFragment != null) cameraFragment.setBurstFrames(getBurstFrames());
+            activeModeHandler.post(activeModeRunnable);
+        }
+    }
+
+    /**
+     * Streams preview frames over one Gemini Live session instead of sending a request per
+     * sample, and asks it for an obstacle check every few seconds. Takes effect the next time
+     * Active Mode is switched on.
+     */
+    private void startLiveSession() {
+        if (liveClient == null) {
+            liveClient = new GeminiLiveClient(BuildConfig.GEMINI_API_KEY, cameraFragment, new LiveAnswerSpeaker());
+            liveClient.setSystemInstruction(PromptBuilder.SYSTEM_INSTRUCTION);
+        }
+        liveTurnPending = false;
+        liveClient.start();
+        activeModeHandler.postDelayed(liveCheckRunnable, LIVE_CHECK_INTERVAL_MS);
+    }
+
+    private void sendLiveCheck() {
+        if (!activeModeSwitch.isChecked() || liveClient == null) return;
+        if (liveClient.isSessionReady() && !liveTurnPending && !isVoiceManagerSpeaking) {
+            liveTurnPending = true;
+            liveClient.sendText(PromptBuilder.liveCheckPrompt(prefs.getString(KEY_CUSTOM_INSTRUCTION, null)));
+        }
+        activeModeHandler.postDelayed(liveCheckRunnable, LIVE_CHECK_INTERVAL_MS);
+    }
+
+    /**
+     * Speaks each complete Live answer unless it reports a clear path; called on the Live client's thread
+     */
+    private class LiveAnswerSpeaker implements GeminiLiveClient.LiveCallback {
+        @Override
+        public void onSessionReady() {
+            Log.d(TAG, liveClient.stats());
+        }
+
+        @Override
+        public void onPartialText(String text) {
+            // Answers are one sentence; speaking the whole turn avoids choppy TTS
+        }
+
+        @Override
+        public void onTurnComplete(String fullText) {
+            liveTurnPending = false;
+            String answer = fullText.trim();
+            if (answer.isEmpty() || answer.replaceAll("[^A-Za-z]", "").equalsIgnoreCase("clear")) return;
+            runOnUiThread(() -> {
+                if (!activeModeSwitch.isChecked()) return;
+                voiceManager.speak(answer, SpeechScheduler.Priority.AMBIENT, PipelineTracer.NO_TRACE);
+                updateInstructions("Live: " + answer);
+            });
+        }
+
+        @Override
+        public void onSessionClosed(String reason) {
+            liveTurnPending = false;
+            Log.d(TAG, "Live session closed: " + reason);
+        }
+
+        @Override
+        public void onError(String error) {
+            liveTurnPending = false;
+            Log.e(TAG, "Live session error: " + error);
+        }
     }
 
     private void stopActiveMode() {
@@ -201,66 +605,376 @@ public class CameraPreviewActivity extends AppCompatActivity {
         micButton.setEnabled(true);
         micButton.setAlpha(1.0f);
         activeModeHandler.removeCallbacks(activeModeRunnable);
+        activeModeHandler.removeCallbacks(liveCheckRunnable);
+        if (cameraFragment != null) cameraFragment.setBurstFrames(1);
+        if (liveClient != null) {
+            liveClient.stop();
+            Log.d(TAG, liveClient.stats());
+        }
+        if (escalationGate != null) {
+            Log.d(TAG, "Local detector: p50 " + obstacleDetector.getLatencyTracker().p50() + " ms, p95 "
+                    + obstacleDetector.getLatencyTracker().p95() + " ms, " + escalationGate.stats());
+            escalationGate.reset();
+        }
+        if (activeModeScheduler != null) {
+            activeModeScheduler.clearPending();
+            Log.d(TAG, "Active Mode stats: " + activeModeScheduler.stats() + ", " + geminiClient.resilienceStats()
+                    + ", " + geminiClient.hedgeStats() + ", " + voiceManager.getSpeechStats());
+            Log.d(TAG, "Single frame vs burst: " + geminiClient.burstComparisonStats());
+            Log.d(TAG, geminiClient.connectionStats());
+            Log.d(TAG, "Request executor: " + geminiClient.executorStats());
+            Log.d(TAG, quotaManager.stats());
+            Log.d(TAG, geminiClient.poolStats());
+            Log.d(TAG, worldState.stats() + ", " + hapticAlerter.getAlertCount() + " haptic alerts");
+            worldState.reset();
+        }
     }
 
+    /**
+     * Picks the delay before the next Active Mode sample from latency, motion and the quota left
+     * to Active Mode
+     */
+    private long nextActiveModeInterval() {
+        LatencyTracker latency = geminiClient.getLatencyTracker();
+        long p50 = latency.p50();
+        long p95 = latency.p95();
+        float motion = cameraFragment != null ? cameraFragment.getMotionScore() : -1f;
+        long now = System.currentTimeMillis();
+        float budget = quotaManager.remainingFraction(PriorityExecutor.Priority.BACKGROUND, now);
+        long interval = cadenceController.nextIntervalMs(p50, p95, motion, budget);
+
+        if (cameraFragment != null) {
+            long quotaWaitMs = quotaManager.delayUntilAllowedMs(PriorityExecutor.Priority.BACKGROUND, now);
+            String overlay = String.format(Locale.US,
+                    "next %.1fs  p50 %dms  p95 %dms\nmotion %.2f  budget %d%%  quota wait %ds  speech q %d",
+                    interval / 1000f, p50, p95, motion, Math.round(budget * 100), quotaWaitMs / 1000,
+                    voiceManager.getQueueDepth());
+            if (obstacleDetector != null && obstacleDetector.isAvailable()) {
+                overlay += String.format(Locale.US, "\nlocal p50 %dms  escalated %d%%",
+                        obstacleDetector.getLatencyTracker().p50(), Math.round(escalationGate.getEscalationRate() * 100));
+            }
+            cameraFragment.updateDebugOverlay(overlay);
+        }
+        return interval;
+    }
+
+    /**
+     * Samples a frame and hands it to the scheduler, which sends it now or keeps it as the
+     * newest waiting frame if a request is already in flight
+     */
     private void performSilentAnalysis() {
         if (isVoiceManagerSpeaking || isProcessing) return;
-        Bitmap frame = captureCurrentFrame();
-        if (frame == null) return;
+        boolean detectorReady = obstacleDetector != null && obstacleDetector.isAvailable();
+        if (geminiClient.isActiveModePaused() && !detectorReady) {
+            Log.d(TAG, "Active Mode paused by circuit breaker: " + geminiClient.resilienceStats());
+            return;
+        }
+        if (!hasActiveModeQuota() && !detectorReady) {
+            Log.d(TAG, "Active Mode waiting for quota: " + quotaManager.stats());
+            return;
+        }
+        List<CameraPreviewFragment.CapturedFrame> frames = captureActiveModeFrames();
+        if (frames.isEmpty()) return;
+        CameraPreviewFragment.CapturedFrame newest = frames.get(frames.size() - 1);
+        if (!detectorReady) {
+            activeModeScheduler.submit(frames, newest.captureTimeMs);
+            return;
+        }
+        // Screening the newest frame is enough; the older ones only add motion context
+        obstacleDetector.detect(newest.bitmap, (detections, inferenceMs) -> onLocalDetections(frames, detections, inferenceMs));
+    }
+
+    /**
+     * Runs on the detector thread. Escalates to Gemini only when the gate sees something new or
+     * newly in the path; with no usable cloud, speaks the gate's short local alert instead.
+     */
+    private void onLocalDetections(List<CameraPreviewFragment.CapturedFrame> frames, List<Detection> detections,
+                                   long inferenceMs) {
+        EscalationGate.Decision decision = escalationGate.evaluate(detections, System.currentTimeMillis());
+        boolean cloudUsable = isNetworkAvailable() && !geminiClient.isActiveModePaused() && hasActiveModeQuota();
+        Log.d(TAG, "Local detection " + inferenceMs + " ms, " + detections.size() + " objects, "
+                + decision.reason + (cloudUsable ? "" : " (offline)") + "; " + escalationGate.stats());
+
+        if (decision.escalate && cloudUsable) {
+            activeModeScheduler.submit(frames, frames.get(frames.size() - 1).captureTimeMs);
+            return;
+        }
+        releaseFrames(frames);
+        if (!cloudUsable && decision.localAlert != null) {
+            String alert = decision.localAlert;
+            runOnUiThread(() -> {
+                if (!activeModeSwitch.isChecked()) return;
+                voiceManager.speakObstacles(alert, SpeechScheduler.Priority.URGENT, PipelineTracer.NO_TRACE);
+                updateInstructions("Local: " + alert);
+            });
+        }
+    }
 
+    /**
+     * True if an Active Mode request could be sent now without eating into the query reserve
+     */
+    private boolean hasActiveModeQuota() {
+        return quotaManager.delayUntilAllowedMs(PriorityExecutor.Priority.BACKGROUND, System.currentTimeMillis()) == 0;
+    }
+
+    private boolean isNetworkAvailable() {
+        ConnectivityManager connectivity = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
+        if (connectivity == null) return false;
+        NetworkCapabilities capabilities = connectivity.getNetworkCapabilities(connectivity.getActiveNetwork());
+        return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+    }
+
+    private void releaseFrames(List<CameraPreviewFragment.CapturedFrame> frames) {
+        for (CameraPreviewFragment.CapturedFrame frame : frames) {
+            BitmapPool.getInstance().release(frame.bitmap);
+        }
+    }
+
+    /**
+     * Sends one frame, or a burst of frames (oldest first) as a single request; captureTimeMs is the newest frame's
+     */
+    private void sendObstacleRequest(List<CameraPreviewFragment.CapturedFrame> frames, long captureTimeMs) {
         String customInstruction = prefs.getString(KEY_CUSTOM_INSTRUCTION, null);
-        geminiClient.analyzeForObstacles(frame, customInstruction, new GeminiClient.GeminiCallback() {
+        int traceId = tracer.startTrace(frames.size() > 1 ? "active_mode_burst" : "active_mode");
+        List<Bitmap> bitmaps = new ArrayList<>(frames.size());
+        long[] captureTimesMs = new long[frames.size()];
+        for (int i = 0; i < frames.size(); i++) {
+            bitmaps.add(frames.get(i).bitmap);
+            captureTimesMs[i] = frames.get(i).captureTimeMs;
+        }
+        geminiClient.analyzeBurstForObstacles(bitmaps, captureTimesMs, traceId, customInstruction, new GeminiClient.ObstacleCallback() {
             @Override
-            public void onSuccess(String response) {
-                if (response != null && !response.trim().isEmpty()) {
-                    voiceManager.speak(response);
-                    updateInstructions("AI: " + response);
+            public void onObstacles(List<Obstacle> obstacles) {
+                long now = System.currentTimeMillis();
+                boolean fresh = activeModeScheduler.complete(captureTimeMs, now);
+                if (!fresh) {
+                    Log.d(TAG, "Discarding stale Active Mode answer, " + activeModeScheduler.stats());
+                    tracer.finish(traceId);
+                    return;
                 }
+                List<Obstacle> changes = worldState.update(obstacles, now);
+                Log.d(TAG, "Active Mode: " + obstacles + ", announcing " + changes.size() + "; " + worldState.stats());
+                if (changes.isEmpty()) {
+                    tracer.finish(traceId);
+                    return;
+                }
+                // Most urgent first, so the first entry decides; buzz here rather than after the UI hop
+                boolean urgent = changes.get(0).isUrgent();
+                if (urgent) hapticAlerter.urgent();
+                StringBuilder phrase = new StringBuilder();
+                for (Obstacle obstacle : changes) {
+                    if (phrase.length() > 0) phrase.append(". ");
+                    phrase.append(obstacle.describe());
+                }
+                String response = phrase.toString();
+                runOnUiThread(() -> {
+                    if (!activeModeSwitch.isChecked()) return;
+                    voiceManager.speakObstacles(response,
+                            urgent ? SpeechScheduler.Priority.URGENT : SpeechScheduler.Priority.AMBIENT, traceId);
+                    updateInstructions("AI: " + response);
+                });
+            }
+
+            @Override
+            public void onSceneUnchanged() {
+                activeModeScheduler.complete(captureTimeMs, System.currentTimeMillis());
+                tracer.finish(traceId);
             }
 
             @Override
             public void onError(String error) {
+                activeModeScheduler.complete(captureTimeMs, System.currentTimeMillis());
                 Log.e(TAG, "Active Mode Error: " + error);
+                tracer.finish(traceId);
             }
         });
     }
 
-    private void processQuery(String userQuery) {
+    private void processQuery(String userQuery, int traceId) {
         runOnUiThread(() -> {
             updateStatus("Processing...");
             updateInstructions("Analyzing what the camera sees...");
         });
 
+        AnswerSpeaker speaker = new AnswerSpeaker(userQuery, traceId);
+        SpeculativeAnswer speculative = speculation;
+        speculation = null;
+        GeminiClient.PreparedImage image = earlyImage;
+        earlyImage = null;
+        if (speculative != null) {
+            if (voiceManager.transcriptMatches(speculative.transcript, userQuery)) {
+                speculationHits++;
+                Log.d(TAG, "Keeping speculative answer to '" + speculative.transcript + "', started "
+                        + (System.currentTimeMillis() - speculative.startedMs) + " ms ago; "
+                        + speculationHits + " kept / " + speculationMisses + " restarted");
+                tracer.mark(traceId, "speculation_kept");
+                speculative.promote(speaker);
+                return;
+            }
+            speculationMisses++;
+            Log.d(TAG, "Final transcript differs from '" + speculative.transcript + "', restarting");
+            tracer.mark(traceId, "speculation_restarted");
+            speculative.cancel();
+        }
+        if (image != null) {
+            geminiClient.analyzeImageStreaming(image, userQuery, traceId, speaker);
+            return;
+        }
+
+        long captureNs = tracer.begin(traceId, "capture_frame");
         Bitmap frame = captureCurrentFrame();
+        tracer.end(traceId, "capture_frame", captureNs);
         if (frame == null) {
             runOnUiThread(() -> {
-                voiceManager.speak("Sorry, I couldn't capture the camera view. Please try again.");
+                voiceManager.speak(CAPTURE_ERROR_MESSAGE, traceId);
                 isProcessing = false;
                 updateMicButton(false);
             });
             return;
         }
 
-        geminiClient.analyzeImage(frame, userQuery, new GeminiClient.GeminiCallback() {
-            @Override
-            public void onSuccess(String response) {
-                runOnUiThread(() -> {
+        geminiClient.analyzeImageStreaming(frame, userQuery, traceId, speaker);
+    }
+
+    /**
+     * Starts answering a partial transcript with the frame encoded at the start of speech,
+     * replacing any earlier speculative request
+     */
+    private void startSpeculation(String transcript) {
+        if (earlyImage == null) return;
+        if (quotaManager.remainingFraction(PriorityExecutor.Priority.INTERACTIVE, System.currentTimeMillis())
+                < SPECULATION_MIN_QUOTA) {
+            return; // a wrong guess costs a second request, which the quota cannot spare now
+        }
+        cancelSpeculation();
+        Log.d(TAG, "Speculative request for '" + transcript + "'");
+        SpeculativeAnswer answer = new SpeculativeAnswer(transcript);
+        answer.handle = geminiClient.analyzeImageStreaming(earlyImage, transcript, PipelineTracer.NO_TRACE, answer);
+        speculation = answer;
+    }
+
+    private void cancelSpeculation() {
+        if (speculation != null) {
+            speculation.cancel();
+            speculation = null;
+        }
+    }
+
+    /**
+     * Speaks a streamed answer sentence by sentence and resets the UI when it is done
+     */
+    private class AnswerSpeaker implements GeminiClient.StreamCallback {
+        private final String userQuery;
+        private final int traceId;
+        // Only touched on the UI thread
+        private boolean speaking = false;
+        private final StringBuilder spokenText = new StringBuilder();
+
+        AnswerSpeaker(String userQuery, int traceId) {
+            this.userQuery = userQuery;
+            this.traceId = traceId;
+        }
+
+        @Override
+        public void onSentence(String sentence) {
+            runOnUiThread(() -> {
+                if (!speaking) {
+                    speaking = true;
                     updateStatus("Speaking response");
-                    updateInstructions("AI: " + response);
-                    voiceManager.speak(response);
-                });
+                    voiceManager.beginSpeechStream(traceId);
+                }
+                if (spokenText.length() > 0) spokenText.append(' ');
+                spokenText.append(sentence);
+                updateInstructions("AI: " + spokenText);
+                voiceManager.speakSentence(sentence);
+            });
+        }
+
+        @Override
+        public void onComplete(String fullText) {
+            runOnUiThread(() -> {
+                if (speaking) {
+                    // Remembered once the user has heard all of it, so a follow-up question may refer to it
+                    voiceManager.endSpeechStream(() -> {
+                        geminiClient.rememberAnswer(userQuery, fullText);
+                        Log.d(TAG, geminiClient.conversationStats());
+                    });
+                } else {
+                    // Nothing to say, so no TTS completion will reset the UI
+                    tracer.finish(traceId);
+                    isProcessing = false;
+                    updateStatus("Ready");
+                    updateInstructions("Tap mic to ask a question");
+                    updateMicButton(false);
+                }
+            });
+        }
+
+        @Override
+        public void onError(String error) {
+            runOnUiThread(() -> {
+                // The overload and quota messages are worth saying: they tell the user when to try again
+                boolean sayAsIs = GeminiClient.OVERLOADED_MESSAGE.equals(error)
+                        || (error != null && error.startsWith(GeminiClient.QUOTA_MESSAGE_PREFIX));
+                String errorMsg = sayAsIs ? error : PROCESS_ERROR_MESSAGE;
+                updateStatus("Error");
+                updateInstructions(errorMsg);
+                voiceManager.speak(errorMsg, traceId);
+            });
+        }
+    }
+
+    /**
+     * Answer to a partial transcript. Its output is held back until the final transcript
+     * confirms it, then replayed into the real AnswerSpeaker.
+     */
+    private class SpeculativeAnswer implements GeminiClient.StreamCallback {
+        final String transcript;
+        final long startedMs = System.currentTimeMillis();
+        GeminiClient.RequestHandle handle;
+        // Only touched on the UI thread
+        private final List<Runnable> held = new ArrayList<>();
+        private GeminiClient.StreamCallback target;
+
+        SpeculativeAnswer(String transcript) {
+            this.transcript = transcript;
+        }
+
+        @Override
+        public void onSentence(String sentence) {
+            runOnUiThread(() -> deliver(() -> target.onSentence(sentence)));
+        }
+
+        @Override
+        public void onComplete(String fullText) {
+            runOnUiThread(() -> deliver(() -> target.onComplete(fullText)));
+        }
+
+        @Override
+        public void onError(String error) {
+            runOnUiThread(() -> deliver(() -> target.onError(error)));
+        }
+
+        private void deliver(Runnable event) {
+            if (target != null) {
+                event.run();
+            } else {
+                held.add(event);
             }
+        }
 
-            @Override
-            public void onError(String error) {
-                runOnUiThread(() -> {
-                    String errorMsg = "Sorry, I couldn't process that.";
-                    updateStatus("Error");
-                    updateInstructions(errorMsg);
-                    voiceManager.speak(errorMsg);
-                });
+        void promote(GeminiClient.StreamCallback callback) {
+            target = callback;
+            for (Runnable event : held) {
+                event.run();
             }
-        });
+            held.clear();
+        }
+
+        void cancel() {
+            if (handle != null) handle.cancel();
+            held.clear();
+        }
     }
 
     private Bitmap captureCurrentFrame() {
@@ -268,6 +982,29 @@ public class CameraPreviewActivity extends AppCompatActivity {
         return cameraFragment.captureFrame();
     }
 
+    /**
+     * One frame, or the last few spaced-out preview frames when burst mode is on. Falls back to a
+     * single frame until the burst history has filled.
+     */
+    private List<CameraPreviewFragment.CapturedFrame> captureActiveModeFrames() {
+        if (cameraFragment == null) return Collections.emptyList();
+        // ROI crops are cut from the full-resolution frame; whole-frame uploads only need upload size
+        boolean fullResolution = geminiClient.getActiveModeRoi().mode != RoiLayout.Mode.WHOLE_FRAME;
+        int burstFrames = getBurstFrames();
+        if (burstFrames > 1) {
+            List<CameraPreviewFragment.CapturedFrame> burst =
+                    cameraFragment.captureBurst(burstFrames, BURST_MAX_AGE_MS, fullResolution);
+            if (burst.size() > 1) return burst;
+            releaseFrames(burst);
+        }
+        CameraPreviewFragment.CapturedFrame frame = fullResolution
+                ? cameraFragment.captureFullResolutionFrame()
+                : cameraFragment.captureTimestampedFrame();
+        return frame == null
+                ? Collections.<CameraPreviewFragment.CapturedFrame>emptyList()
+                : Collections.singletonList(frame);
+    }
+
     private void updateStatus(String status) {
         if (cameraFragment != null) {
             cameraFragment.updateStatus(status);
@@ -313,5 +1050,29 @@ public class CameraPreviewActivity extends AppCompatActivity {
         if (voiceManager != null) {
             voiceManager.destroy();
         }
+        if (geminiClient != null) {
+            geminiClient.close();
+        }
+        if (obstacleDetector != null) {
+            obstacleDetector.close();
+        }
+        if (liveClient != null) {
+            liveClient.shutdown();
+        }
+        BitmapPool.getInstance().clear();
+        dumpTrace();
+    }
+
+    /**
+     * Saves the span ring buffer for offline analysis (adb pull from the app's external files dir)
+     */
+    private void dumpTrace() {
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir();
+        try {
+            tracer.dumpTo(new File(dir, TRACE_FILE_NAME));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write latency trace", e);
+        }
     }
 }
@@ -18,19 +18,94 @@ import androidx.appcompat.view.ContextThemeWrapper;
 import com.jiangdg.ausbc.MultiCameraClient;
 import com.jiangdg.ausbc.base.CameraFragment;
 import com.jiangdg.ausbc.callback.ICameraStateCallBack;
+import com.jiangdg.ausbc.callback.IPreviewDataCallBack;
 import com.jiangdg.ausbc.camera.bean.CameraRequest;
 import com.jiangdg.ausbc.widget.AspectRatioTextureView;
 import com.jiangdg.ausbc.widget.IAspectRatio;
+import com.usbcamera.core.FrameHistory;
+import com.usbcamera.core.FrameRing;
+import com.usbcamera.core.MotionEstimator;
+import com.usbcamera.core.YuvConverter;
 
-public class CameraPreviewFragment extends CameraFragment {
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CameraPreviewFragment extends CameraFragment implements GeminiLiveClient.FrameSource {
     private static final String TAG = "CameraPreviewFragment";
+    private static final int PREVIEW_WIDTH = 640;
+    private static final int PREVIEW_HEIGHT = 480;
+    private static final int FRAME_RING_SLOTS = 3;
+    private static final int CAPTURE_MAX_DIMENSION = 512; // matches GeminiClient upload size
+    public static final int MAX_BURST_FRAMES = 4;
+    private static final long BURST_SPACING_MS = 400;
+
+    /**
+     * How captureFrame() obtains pixels.
+     * TEXTURE_VIEW reads back the GPU surface (original behaviour);
+     * PREVIEW_TAP converts the newest raw NV21 frame from the preview callback.
+     */
+    public enum CaptureMode {
+        TEXTURE_VIEW,
+        PREVIEW_TAP
+    }
 
     private AspectRatioTextureView cameraView;
     private TextView statusText;
     private TextView instructionsText;
+    private TextView debugOverlayText;
     private Button backButton;
     private View rootView;
 
+    /**
+     * A pooled frame bitmap (owned by the receiver) plus the wall-clock time it was produced
+     */
+    public static class CapturedFrame {
+        public final Bitmap bitmap;
+        public final long captureTimeMs;
+
+        CapturedFrame(Bitmap bitmap, long captureTimeMs) {
+            this.bitmap = bitmap;
+            this.captureTimeMs = captureTimeMs;
+        }
+    }
+
+    private volatile CaptureMode captureMode = CaptureMode.PREVIEW_TAP;
+    private final FrameRing frameRing = new FrameRing(FRAME_RING_SLOTS, PREVIEW_WIDTH * PREVIEW_HEIGHT * 3 / 2);
+    private int[] argbBuffer; // guarded by conversionLock
+    private final Object conversionLock = new Object();
+    private final MotionEstimator motionEstimator = new MotionEstimator();
+    private final FrameHistory burstHistory =
+            new FrameHistory(MAX_BURST_FRAMES, PREVIEW_WIDTH * PREVIEW_HEIGHT * 3 / 2, BURST_SPACING_MS);
+    // The history only records while burst mode is on; each offer copies a whole NV21 frame
+    private volatile int burstFrames = 1;
+    // Frames copied out of the history so they can be converted without holding it; guarded by burstCopyLock
+    private final RawFrame[] burstCopies = new RawFrame[MAX_BURST_FRAMES];
+    private final Object burstCopyLock = new Object();
+
+    /**
+     * One NV21 frame copied out of the burst history
+     */
+    private static final class RawFrame {
+        byte[] data = new byte[0];
+        int width;
+        int height;
+        long timestampMs;
+    }
+
+    private final IPreviewDataCallBack previewTap = new IPreviewDataCallBack() {
+        @Override
+        public void onPreviewData(@Nullable byte[] data, int width, int height, @NonNull DataFormat format) {
+            if (data == null || format != DataFormat.NV21) return;
+            motionEstimator.update(data, width, height);
+            int length = Math.min(data.length, width * height * 3 / 2);
+            long now = System.currentTimeMillis();
+            if (burstFrames > 1) burstHistory.offer(data, length, width, height, now);
+            if (captureMode != CaptureMode.PREVIEW_TAP) return;
+            frameRing.write(data, length, width, height, now);
+        }
+    };
+
     @Nullable
     @Override
     public View getRootView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container) {
@@ -46,6 +121,8 @@ public class CameraPreviewFragment extends CameraFragment {
         statusText = rootView.findViewById(R.id.preview_status_text);
         instructionsText = rootView.findViewById(R.id.instructions_text);
         backButton = rootView.findViewById(R.id.back_button);
+        debugOverlayText = rootView.findViewById(R.id.debug_overlay_text);
+        debugOverlayText.setVisibility(BuildConfig.DEBUG ? View.VISIBLE : View.GONE);
 
         backButton.setOnClickListener(v -> {
             if (getActivity() != null) {
@@ -75,8 +152,8 @@ public class CameraPreviewFragment extends CameraFragment {
     @Override
     public CameraRequest getCameraRequest() {
         return new CameraRequest.Builder()
-                .setPreviewWidth(640)
-                .setPreviewHeight(480)
+                .setPreviewWidth(PREVIEW_WIDTH)
+                .setPreviewHeight(PREVIEW_HEIGHT)
                 .create();
     }
 
@@ -94,10 +171,15 @@ public class CameraPreviewFragment extends CameraFragment {
         getActivity().runOnUiThread(() -> {
             switch (code) {
                 case OPENED:
+                    self.addPreviewDataCallBack(previewTap);
                     statusText.setText("Live Preview Active");
                     instructionsText.setText("Camera is streaming\nResolution: 640x480");
                     break;
                 case CLOSED:
+                    self.removePreviewDataCallBack(previewTap);
+                    frameRing.reset();
+                    motionEstimator.reset();
+                    burstHistory.reset();
                     statusText.setText("Camera Closed");
                     instructionsText.setText("Camera has been closed");
                     break;
@@ -109,26 +191,177 @@ public class CameraPreviewFragment extends CameraFragment {
         });
     }
 
+    public void setCaptureMode(CaptureMode mode) {
+        captureMode = mode;
+        if (mode != CaptureMode.PREVIEW_TAP) {
+            frameRing.reset();
+        }
+        Log.d(TAG, "Capture mode: " + mode);
+    }
+
+    public CaptureMode getCaptureMode() {
+        return captureMode;
+    }
+
     /**
-     * Captures the current camera frame as a Bitmap
+     * Captures the current camera frame as a Bitmap, downscaled to upload size.
+     * The bitmap comes from BitmapPool and the caller owns it: pass it to GeminiClient
+     * or give it back with BitmapPool.release().
      * @return Bitmap of current frame, or null if not available
      */
+    @Override
     public Bitmap captureFrame() {
+        CapturedFrame frame = captureTimestampedFrame();
+        return frame != null ? frame.bitmap : null;
+    }
+
+    /**
+     * Same as captureFrame(), but also reports when the pixels were produced so callers
+     * can tell how old a result is by the time it comes back
+     */
+    public CapturedFrame captureTimestampedFrame() {
+        return captureTimestampedFrame(CAPTURE_MAX_DIMENSION);
+    }
+
+    /**
+     * Frame at the camera's preview resolution, for callers that crop regions out of it
+     * rather than downscaling the whole frame
+     */
+    public CapturedFrame captureFullResolutionFrame() {
+        return captureTimestampedFrame(Math.max(PREVIEW_WIDTH, PREVIEW_HEIGHT));
+    }
+
+    private CapturedFrame captureTimestampedFrame(int maxDimension) {
+        if (captureMode == CaptureMode.PREVIEW_TAP && frameRing.hasFrame()) {
+            CapturedFrame frame = captureFromPreviewTap(maxDimension);
+            if (frame != null) return frame;
+        }
+        long captureTimeMs = System.currentTimeMillis();
+        Bitmap bitmap = captureFromTextureView(maxDimension);
+        return bitmap != null ? new CapturedFrame(bitmap, captureTimeMs) : null;
+    }
+
+    /**
+     * Converts the newest NV21 frame straight to a downscaled bitmap, skipping GPU readback
+     */
+    private CapturedFrame captureFromPreviewTap(int maxDimension) {
+        int slot = frameRing.acquireLatest();
+        if (slot < 0) return null;
+        try {
+            int width = frameRing.width(slot);
+            int height = frameRing.height(slot);
+            int outWidth = YuvConverter.scaledWidth(width, height, maxDimension);
+            int outHeight = YuvConverter.scaledHeight(width, height, maxDimension);
+
+            synchronized (conversionLock) {
+                if (argbBuffer == null || argbBuffer.length < outWidth * outHeight) {
+                    argbBuffer = new int[outWidth * outHeight];
+                }
+                YuvConverter.nv21ToArgb(frameRing.buffer(slot), width, height, argbBuffer, outWidth, outHeight);
+                Bitmap bitmap = BitmapPool.getInstance().acquire(outWidth, outHeight);
+                bitmap.setPixels(argbBuffer, 0, outWidth, 0, 0, outWidth, outHeight);
+                Log.d(TAG, "Frame captured from preview tap: " + outWidth + "x" + outHeight);
+                return new CapturedFrame(bitmap, frameRing.timestamp(slot));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error converting preview frame", e);
+            return null;
+        } finally {
+            frameRing.release(slot);
+        }
+    }
+
+    /**
+     * Number of frames Active Mode sends per request; above 1 the preview tap keeps a burst
+     * history for captureBurst(), at 1 it stops copying frames into it
+     */
+    public void setBurstFrames(int frames) {
+        int clamped = Math.max(1, Math.min(MAX_BURST_FRAMES, frames));
+        if (clamped <= 1) burstHistory.reset();
+        burstFrames = clamped;
+    }
+
+    /**
+     * Up to maxFrames recent frames, oldest first, spaced about BURST_SPACING_MS apart and no older
+     * than maxAgeMs. Each bitmap is pooled and owned by the caller. Empty until preview frames arrive
+     * with burst mode on (see setBurstFrames()).
+     */
+    public List<CapturedFrame> captureBurst(int maxFrames, long maxAgeMs, boolean fullResolution) {
+        int maxDimension = fullResolution ? Math.max(PREVIEW_WIDTH, PREVIEW_HEIGHT) : CAPTURE_MAX_DIMENSION;
+        List<CapturedFrame> frames = new ArrayList<>(maxFrames);
+        synchronized (burstCopyLock) {
+            // Only copy while the history is locked: the preview callback waits on it
+            int[] copied = {0};
+            burstHistory.visitLatest(Math.min(maxFrames, MAX_BURST_FRAMES), System.currentTimeMillis(), maxAgeMs,
+                    (nv21, width, height, timestampMs) -> {
+                        RawFrame copy = burstCopies[copied[0]];
+                        if (copy == null) {
+                            copy = new RawFrame();
+                            burstCopies[copied[0]] = copy;
+                        }
+                        if (copy.data.length < nv21.remaining()) copy.data = new byte[nv21.remaining()];
+                        nv21.get(copy.data, 0, nv21.remaining());
+                        copy.width = width;
+                        copy.height = height;
+                        copy.timestampMs = timestampMs;
+                        copied[0]++;
+                    });
+            try {
+                for (int i = 0; i < copied[0]; i++) {
+                    RawFrame copy = burstCopies[i];
+                    int outWidth = YuvConverter.scaledWidth(copy.width, copy.height, maxDimension);
+                    int outHeight = YuvConverter.scaledHeight(copy.width, copy.height, maxDimension);
+                    synchronized (conversionLock) {
+                        if (argbBuffer == null || argbBuffer.length < outWidth * outHeight) {
+                            argbBuffer = new int[outWidth * outHeight];
+                        }
+                        YuvConverter.nv21ToArgb(ByteBuffer.wrap(copy.data), copy.width, copy.height, argbBuffer,
+                                outWidth, outHeight);
+                        Bitmap bitmap = BitmapPool.getInstance().acquire(outWidth, outHeight);
+                        bitmap.setPixels(argbBuffer, 0, outWidth, 0, 0, outWidth, outHeight);
+                        frames.add(new CapturedFrame(bitmap, copy.timestampMs));
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error converting burst frames", e);
+                for (CapturedFrame frame : frames) {
+                    BitmapPool.getInstance().release(frame.bitmap);
+                }
+                frames.clear();
+            }
+        }
+        return frames;
+    }
+
+    private Bitmap captureFromTextureView(int maxDimension) {
         if (cameraView == null) {
             Log.e(TAG, "Camera view is null");
             return null;
         }
 
+        int viewWidth = cameraView.getWidth();
+        int viewHeight = cameraView.getHeight();
+        if (viewWidth <= 0 || viewHeight <= 0) {
+            Log.w(TAG, "Camera view not laid out yet");
+            return null;
+        }
+
+        // Read back straight into a pooled bitmap at upload size instead of a fresh full-size one
+        Bitmap target = BitmapPool.getInstance().acquire(
+                YuvConverter.scaledWidth(viewWidth, viewHeight, maxDimension),
+                YuvConverter.scaledHeight(viewWidth, viewHeight, maxDimension));
         try {
-            Bitmap bitmap = cameraView.getBitmap();
+            Bitmap bitmap = cameraView.getBitmap(target);
             if (bitmap != null) {
                 Log.d(TAG, "Frame captured: " + bitmap.getWidth() + "x" + bitmap.getHeight());
             } else {
                 Log.w(TAG, "Captured bitmap is null");
+                BitmapPool.getInstance().release(target);
             }
             return bitmap;
         } catch (Exception e) {
             Log.e(TAG, "Error capturing frame", e);
+            BitmapPool.getInstance().release(target);
             return null;
         }
     }
@@ -150,4 +383,20 @@ public class CameraPreviewFragment extends CameraFragment {
             getActivity().runOnUiThread(() -> instructionsText.setText(instructions));
         }
     }
+
+    /**
+     * Smoothed inter-frame motion in [0, 1] from the preview callback, or -1 if unavailable
+     */
+    public float getMotionScore() {
+        return motionEstimator.getScore();
+    }
+
+    /**
+     * Updates the debug overlay text (debug builds only)
+     */
+    public void updateDebugOverlay(String text) {
+        if (debugOverlayText != null && BuildConfig.DEBUG && getActivity() != null) {
+            getActivity().runOnUiThread(() -> debugOverlayText.setText(text));
+        }
+    }
 }
@@ -0,0 +1,169 @@
+package com.usbcamera;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.Log;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.usbcamera.core.KeepAlivePolicy;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the connection to the Gemini endpoint warm so the first query does not pay for DNS,
+ * the TLS handshake and HTTP/2 setup.
+ *
+ * The SDK owns its HTTP client, so warming goes through the SDK itself: a probe is a tiny
+ * request on the same model client that real requests use (see GeminiClient.probe()). One goes
+ * out at start(), after every change of the default network, and whenever the connection has
+ * been idle long enough that the server or a NAT might drop it.
+ */
+public class ConnectionManager {
+    private static final String TAG = "ConnectionManager";
+    private static final long CHECK_INTERVAL_MS = 15000;
+    private static final long PROBE_AFTER_IDLE_MS = 60000;
+    private static final long COLD_AFTER_MS = 4 * 60000; // HTTP/2 idle timeouts and NAT mappings are a few minutes
+    private static final long KEEP_WARM_FOR_MS = 10 * 60000;
+
+    public interface Prober {
+        /** Sends the cheapest request that opens the same connection as real requests */
+        ListenableFuture<?> probe();
+    }
+
+    private final ConnectivityManager connectivityManager;
+    private final Prober prober;
+    private final KeepAlivePolicy policy = new KeepAlivePolicy(PROBE_AFTER_IDLE_MS, COLD_AFTER_MS, KEEP_WARM_FOR_MS);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    // Only touched on the scheduler thread
+    private ScheduledFuture<?> checkTask;
+    private Network currentNetwork;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            scheduler.execute(() -> {
+                if (network.equals(currentNetwork)) return; // start() already warmed this one
+                currentNetwork = network;
+                policy.onNetworkChanged();
+                warmUp("network changed");
+            });
+        }
+
+        @Override
+        public void onLost(Network network) {
+            scheduler.execute(() -> {
+                if (!network.equals(currentNetwork)) return;
+                currentNetwork = null;
+                policy.onNetworkChanged();
+            });
+        }
+    };
+
+    public ConnectionManager(Context context, Prober prober) {
+        this.connectivityManager = (ConnectivityManager) context.getApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.prober = prober;
+    }
+
+    /**
+     * Warms the connection now and keeps it warm until close()
+     */
+    public void start() {
+        policy.onActivity(System.currentTimeMillis());
+        scheduler.execute(() -> {
+            if (checkTask != null) return;
+            currentNetwork = connectivityManager.getActiveNetwork();
+            try {
+                connectivityManager.registerDefaultNetworkCallback(networkCallback);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not watch network changes", e);
+            }
+            warmUp("startup");
+            checkTask = scheduler.scheduleWithFixedDelay(this::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * A real request is going out. Returns whether the connection was warm, to pass to onResponse().
+     */
+    public boolean onRequestSent() {
+        long now = System.currentTimeMillis();
+        policy.onActivity(now);
+        return policy.isWarm(now);
+    }
+
+    /**
+     * A real request got its first byte latencyMs after it was sent
+     */
+    public void onResponse(boolean wasWarm, long latencyMs) {
+        policy.onExchange(System.currentTimeMillis());
+        policy.recordRequest(wasWarm, latencyMs);
+    }
+
+    public boolean isWarm() {
+        return policy.isWarm(System.currentTimeMillis());
+    }
+
+    /**
+     * Probe latency on cold and warm connections, and first-byte latency of real requests on each
+     */
+    public String stats() {
+        return policy.stats();
+    }
+
+    private void check() {
+        if (policy.shouldProbe(System.currentTimeMillis())) warmUp("keep-alive");
+    }
+
+    private void warmUp(String reason) {
+        if (!policy.beginProbe()) return;
+        boolean wasWarm = policy.isWarm(System.currentTimeMillis());
+        long startMs = System.currentTimeMillis();
+        ListenableFuture<?> probe;
+        try {
+            probe = prober.probe();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Probe failed to start", e);
+            policy.onProbeDone(false, wasWarm, 0, startMs);
+            return;
+        }
+        Futures.addCallback(probe, new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+                long now = System.currentTimeMillis();
+                policy.onProbeDone(true, wasWarm, now - startMs, now);
+                Log.d(TAG, "Warm-up (" + reason + ", " + (wasWarm ? "warm" : "cold") + ") took "
+                        + (now - startMs) + " ms");
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                policy.onProbeDone(false, wasWarm, 0, System.currentTimeMillis());
+                Log.w(TAG, "Warm-up (" + reason + ") failed: " + t.getMessage());
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    public void close() {
+        scheduler.execute(() -> {
+            if (checkTask == null) return;
+            checkTask.cancel(false);
+            try {
+                connectivityManager.unregisterNetworkCallback(networkCallback);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Network callback was not registered");
+            }
+            Log.d(TAG, stats());
+        });
+        scheduler.shutdown();
+    }
+}
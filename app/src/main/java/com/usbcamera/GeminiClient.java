@@ -2,157 +2,1977 @@ package com.usbcamera;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.util.Log;
 
 import com.google.ai.client.generativeai.GenerativeModel;
 import com.google.ai.client.generativeai.java.GenerativeModelFutures;
 import com.google.ai.client.generativeai.type.Content;
+import com.google.ai.client.generativeai.type.CountTokensResponse;
 import com.google.ai.client.generativeai.type.GenerateContentResponse;
+import com.google.ai.client.generativeai.type.GenerationConfig;
+import com.google.ai.client.generativeai.type.QuotaExceededException;
+import com.google.ai.client.generativeai.type.RequestOptions;
+import com.google.ai.client.generativeai.type.RequestTimeoutException;
+import com.google.ai.client.generativeai.type.ResponseStoppedException;
+import com.google.ai.client.generativeai.type.Schema;
 import com.google.ai.client.generativeai.type.ServerException;
+import com.google.ai.client.generativeai.type.TextPart;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.usbcamera.core.AdaptiveJpegEncoder;
+import com.usbcamera.core.CircuitBreaker;
+import com.usbcamera.core.ConversationWindow;
+import com.usbcamera.core.EndpointPool;
+import com.usbcamera.core.HedgePolicy;
+import com.usbcamera.core.JpegQualityPolicy;
+import com.usbcamera.core.LatencyTracker;
+import com.usbcamera.core.Obstacle;
+import com.usbcamera.core.PerceptualHash;
+import com.usbcamera.core.PriorityExecutor;
+import com.usbcamera.core.PromptBuilder;
+import com.usbcamera.core.QuotaManager;
+import com.usbcamera.core.ResponseCache;
+import com.usbcamera.core.RequestModeStats;
+import com.usbcamera.core.RetryPolicy;
+import com.usbcamera.core.RoiLayout;
+import com.usbcamera.core.SentenceSplitter;
+import com.usbcamera.core.YuvConverter;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class GeminiClient {
     private static final String TAG = "GeminiClient";
     private static final String MODEL_NAME = "gemini-2.5-flash-lite";
+    private static final String HEDGE_MODEL_NAME = "gemini-2.0-flash-lite"; // separate capacity from the primary
+    private static final String API_VERSION = "v1beta";
+    private static final int SCENE_CACHE_SIZE = 16;
+    private static final int DEFAULT_SCENE_DISTANCE = 6; // bits out of 64
+    private static final long SCENE_CACHE_MAX_AGE_MS = 30000;
+    private static final String JPEG_MIME_TYPE = "image/jpeg";
+    private static final int QUERY_BYTE_BUDGET = 48 * 1024;
+    private static final int ACTIVE_MODE_BYTE_BUDGET = 24 * 1024;
+    private static final int MAX_UPLOAD_DIMENSION = 512; // Reduced from 768 for faster upload
+    private static final int MIN_UPLOAD_DIMENSION = 256;
+    private static final int BURST_FRAME_BYTE_BUDGET = 12 * 1024; // per frame; the burst shares one request
+    private static final int BURST_MAX_DIMENSION = 384;
+    private static final long QUERY_DEADLINE_MS = 10000; // someone is waiting for the answer
+    private static final long ACTIVE_MODE_DEADLINE_MS = 15000;
+    private static final int BREAKER_FAILURE_THRESHOLD = 3;
+    private static final long BREAKER_OPEN_MS = 30000;
+    private static final int ENDPOINT_REQUESTS_PER_MINUTE = 15; // free tier, per key and model
+    private static final int EJECT_AFTER_FAILURES = 3;
+    private static final long BASE_EJECT_MS = 15000;
+    private static final long MAX_EJECT_MS = 5 * 60000;
+    // Follow-up context: a handful of short turns, forgotten once the user has moved on
+    private static final int CONVERSATION_MAX_TOKENS = 800;
+    private static final int CONVERSATION_MAX_TURNS = 6;
+    private static final long CONVERSATION_IDLE_RESET_MS = 2 * 60000;
+    // Three obstacles take ~90 tokens of JSON; the cap keeps a rambling answer from costing latency
+    private static final int OBSTACLE_MAX_OUTPUT_TOKENS = 160;
+    private static final String FIELD_OBSTACLES = "obstacles";
+    private static final String FIELD_LABEL = "label";
+    private static final String FIELD_DIRECTION = "direction";
+    private static final String FIELD_DISTANCE = "distance";
+    private static final String FIELD_URGENCY = "urgency";
+    public static final String OVERLOADED_MESSAGE = "The AI model is currently overloaded.";
+    private static final String UNREADABLE_OBSTACLES_MESSAGE = "Unreadable obstacle answer";
+    public static final String PREEMPTED_MESSAGE = "Cancelled for a user question";
+    public static final String QUOTA_MESSAGE_PREFIX = "Request limit reached";
+
+    private final List<EndpointConfig> endpointConfigs;
+    private final EndpointPool pool = new EndpointPool(EJECT_AFTER_FAILURES, BASE_EJECT_MS, MAX_EJECT_MS);
+    private final List<Target> targets = new ArrayList<>(); // index-aligned with pool
+    private final ConnectionManager connection;
+    private volatile Target hedgeTarget;
+    private volatile QuotaManager quota; // null: no local limit
+    private volatile boolean closed = false;
+    private final Set<Request> activeRequests = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicLong preempted = new AtomicLong();
+    // CPU-bound prep (resize, encode) in priority order; one thread, since it reuses the buffers below
+    private final PriorityExecutor prepExecutor = new PriorityExecutor("gemini-prep", 1);
+    // Network callbacks, retries and hedges, so they never wait behind image prep
+    private final ExecutorService dispatchService = Executors.newSingleThreadExecutor();
+    private final Executor dispatcher = command -> {
+        if (!closed) dispatchService.execute(command);
+    };
+    private final ResponseCache sceneCache;
+    private final ConversationWindow conversation = new ConversationWindow(CONVERSATION_MAX_TOKENS,
+            CONVERSATION_MAX_TURNS, CONVERSATION_IDLE_RESET_MS);
+    private final BitmapPool bitmapPool;
+    private int[] pixelBuffer; // only touched on the prep thread
+    private final Canvas resizeCanvas = new Canvas();
+    private final Matrix resizeMatrix = new Matrix();
+    private final Paint resizePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect roiSource = new Rect();
+    private final Rect roiTarget = new Rect();
+    private volatile RoiLayout activeModeRoi = RoiLayout.WHOLE;
+    private long requestCount = 0;
+    private final LatencyTracker latencyTracker = new LatencyTracker(32);
+    private final ArrayDeque<Long> recentRequestTimes = new ArrayDeque<>();
+    private final AdaptiveJpegEncoder<Bitmap> jpegEncoder =
+            new AdaptiveJpegEncoder<>(new BitmapJpegEncoder(), QUERY_BYTE_BUDGET * 2);
+    private final JpegQualityPolicy queryPolicy =
+            new JpegQualityPolicy(QUERY_BYTE_BUDGET, 50, 90, MIN_UPLOAD_DIMENSION, MAX_UPLOAD_DIMENSION);
+    private final JpegQualityPolicy activeModePolicy =
+            new JpegQualityPolicy(ACTIVE_MODE_BYTE_BUDGET, 40, 80, MIN_UPLOAD_DIMENSION, MAX_UPLOAD_DIMENSION);
+    private final JpegQualityPolicy burstPolicy =
+            new JpegQualityPolicy(BURST_FRAME_BYTE_BUDGET, 35, 75, MIN_UPLOAD_DIMENSION, BURST_MAX_DIMENSION);
+    private final RequestModeStats singleFrameStats = new RequestModeStats("single");
+    private final RequestModeStats burstStats = new RequestModeStats("burst");
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final RetryPolicy queryRetryPolicy = new RetryPolicy(3, 400, 2000, QUERY_DEADLINE_MS);
+    private final RetryPolicy activeModeRetryPolicy = new RetryPolicy(3, 1000, 4000, ACTIVE_MODE_DEADLINE_MS);
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MS);
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong retriesExhausted = new AtomicLong();
+    private final AtomicLong deadlinesExpired = new AtomicLong();
 
-    private final GenerativeModelFutures model;
-    private final Executor executor;
+    // Someone is waiting on a query, so hedge earlier and allow more duplicates than for Active Mode
+    private final HedgePolicy queryHedgePolicy = new HedgePolicy("query", 90, 400, 4000, 0.2f, 0.1f);
+    private final HedgePolicy activeModeHedgePolicy = new HedgePolicy("active", 95, 1500, 8000, 0.05f, 0.1f);
+
+    private final PipelineTracer tracer = PipelineTracer.getInstance();
 
     public interface GeminiCallback {
         void onSuccess(String response);
         void onError(String error);
     }
 
+    public interface ObstacleCallback {
+        /** Obstacles in the frame, most urgent first; empty if the path is clear */
+        void onObstacles(List<Obstacle> obstacles);
+        /** The scene matches one answered moments ago, so nothing was sent */
+        void onSceneUnchanged();
+        void onError(String error);
+    }
+
+    public interface StreamCallback {
+        /** Called as soon as each complete sentence has arrived */
+        void onSentence(String sentence);
+        void onComplete(String fullText);
+        void onError(String error);
+    }
+
+    /**
+     * One model endpoint of the pool: a model name and API key, and optionally another server
+     */
+    public static final class EndpointConfig {
+        public final String modelName;
+        public final String apiKey;
+        /** Base URL of the API, e.g. LocalGeminiServer in debug builds; null for Google's */
+        public final String baseUrl;
+        public final int requestsPerMinute;
+
+        public EndpointConfig(String modelName, String apiKey, String baseUrl, int requestsPerMinute) {
+            this.modelName = modelName;
+            this.apiKey = apiKey;
+            this.baseUrl = baseUrl;
+            this.requestsPerMinute = requestsPerMinute;
+        }
+
+        public EndpointConfig(String modelName, String apiKey, String baseUrl) {
+            this(modelName, apiKey, baseUrl, ENDPOINT_REQUESTS_PER_MINUTE);
+        }
+
+        /**
+         * Name for logs; shows only the end of the key
+         */
+        String describe() {
+            String key = apiKey == null || apiKey.length() <= 4 ? "?" : apiKey.substring(apiKey.length() - 4);
+            return modelName + " key ..." + key + (baseUrl != null ? " @" + baseUrl : "");
+        }
+    }
+
+    /**
+     * Reads the endpoint pool from a spec such as "gemini-2.5-flash-lite:KEY1, gemini-2.0-flash-lite:KEY2".
+     * An entry may be just a key, for the default model, and may end in "@https://host:port" to
+     * use another server. An empty spec gives one endpoint: the default model with defaultKey.
+     */
+    public static List<EndpointConfig> parseEndpoints(String spec, String defaultKey) {
+        List<EndpointConfig> configs = new ArrayList<>();
+        if (spec != null) {
+            for (String entry : spec.split(",")) {
+                entry = entry.trim();
+                if (entry.isEmpty()) continue;
+                String baseUrl = null;
+                int at = entry.indexOf('@');
+                if (at >= 0) {
+                    baseUrl = entry.substring(at + 1).trim();
+                    entry = entry.substring(0, at).trim();
+                }
+                int colon = entry.indexOf(':');
+                String modelName = colon >= 0 ? entry.substring(0, colon).trim() : MODEL_NAME;
+                String key = colon >= 0 ? entry.substring(colon + 1).trim() : entry;
+                configs.add(new EndpointConfig(modelName, key, baseUrl));
+            }
+        }
+        if (configs.isEmpty()) {
+            configs.add(new EndpointConfig(MODEL_NAME, defaultKey, null));
+        }
+        return configs;
+    }
+
+    /**
+     * The model clients of one endpoint and where their outcomes go: its pool index, or -1 for
+     * the hedge model. Active Mode has its own client because the SDK sets the JSON response
+     * schema per client, not per request.
+     */
+    private static final class Target {
+        final GenerativeModelFutures model;
+        final GenerativeModelFutures obstacleModel;
+        final int poolIndex;
+        final String name;
+        private final String modelName;
+        private final EndpointConfig config;
+        private GenerativeModelFutures probeModel;
+
+        Target(String modelName, EndpointConfig config, int poolIndex, String name) {
+            this.model = createModel(modelName, config, null);
+            this.obstacleModel = createModel(modelName, config, obstacleConfig());
+            this.poolIndex = poolIndex;
+            this.name = name;
+            this.modelName = modelName;
+            this.config = config;
+        }
+
+        GenerativeModelFutures modelFor(boolean obstacles) {
+            return obstacles ? obstacleModel : model;
+        }
+
+        /**
+         * Client for one-token probes, made on first use since most endpoints are never ejected
+         */
+        synchronized GenerativeModelFutures probeModel() {
+            if (probeModel == null) probeModel = createModel(modelName, config, probeConfig());
+            return probeModel;
+        }
+    }
+
     public GeminiClient(Context context, String apiKey) {
-        this.executor = Executors.newSingleThreadExecutor();
-        GenerativeModel gm = new GenerativeModel(MODEL_NAME, apiKey);
-        this.model = GenerativeModelFutures.from(gm);
-        Log.d(TAG, "Gemini client initialized");
+        this(context, apiKey, null);
+    }
+
+    /**
+     * @param endpoint base URL of the API, e.g. LocalGeminiServer in debug builds; null for Google's
+     */
+    public GeminiClient(Context context, String apiKey, String endpoint) {
+        this(context, Collections.singletonList(new EndpointConfig(MODEL_NAME, apiKey, endpoint)));
+    }
+
+    /**
+     * Routes requests across the given endpoints by health and spare capacity; see EndpointPool.
+     * Hedges go to a second endpoint when there is one, otherwise to the hedge model on the first
+     * endpoint's key.
+     */
+    public GeminiClient(Context context, List<EndpointConfig> endpoints) {
+        if (endpoints.isEmpty()) throw new IllegalArgumentException("No model endpoints");
+        this.endpointConfigs = new ArrayList<>(endpoints);
+        for (EndpointConfig config : endpointConfigs) {
+            String name = config.describe();
+            targets.add(new Target(config.modelName, config, pool.add(name, config.requestsPerMinute), name));
+        }
+        this.hedgeTarget = new Target(HEDGE_MODEL_NAME, endpointConfigs.get(0), -1, HEDGE_MODEL_NAME);
+        this.connection = new ConnectionManager(context, this::probe);
+        this.sceneCache = new ResponseCache(SCENE_CACHE_SIZE, DEFAULT_SCENE_DISTANCE, SCENE_CACHE_MAX_AGE_MS);
+        this.bitmapPool = BitmapPool.getInstance();
+        this.circuitBreaker.setListener((from, to) -> Log.w(TAG, "Circuit breaker " + from + " -> " + to));
+        Log.d(TAG, "Gemini client initialized with " + targets.size() + " endpoint(s)");
+    }
+
+    /**
+     * Model client with the fixed prompt set once as its system instruction
+     *
+     * @param generationConfig null for free-text answers
+     */
+    private static GenerativeModelFutures createModel(String modelName, EndpointConfig config,
+                                                      GenerationConfig generationConfig) {
+        RequestOptions options = config.baseUrl == null
+                ? new RequestOptions()
+                : new RequestOptions(null, API_VERSION, config.baseUrl);
+        Content instruction = new Content.Builder().addText(PromptBuilder.SYSTEM_INSTRUCTION).build();
+        return GenerativeModelFutures.from(new GenerativeModel(modelName, config.apiKey, generationConfig, null,
+                options, null, null, instruction));
+    }
+
+    /**
+     * Active Mode answers: a short JSON list of obstacles instead of prose. Direction, distance
+     * and urgency are strings with their allowed values in the description, since the SDK's
+     * enum schema cannot be called from Java; Obstacle.fromFields() tolerates near misses.
+     */
+    private static GenerationConfig obstacleConfig() {
+        Schema<JSONObject> item = Schema.obj("obstacle", "One obstacle or important object",
+                Schema.str(FIELD_LABEL, "What it is, one or two words"),
+                Schema.str(FIELD_DIRECTION, "left, ahead or right"),
+                Schema.str(FIELD_DISTANCE, "near, medium or far"),
+                Schema.str(FIELD_URGENCY, "urgent, caution or info"));
+        GenerationConfig.Builder builder = new GenerationConfig.Builder();
+        builder.responseMimeType = "application/json";
+        builder.responseSchema = Schema.obj("report", "Obstacles in view",
+                Schema.arr(FIELD_OBSTACLES, "Most urgent first; empty if the path is clear", item));
+        builder.maxOutputTokens = OBSTACLE_MAX_OUTPUT_TOKENS;
+        builder.temperature = 0f;
+        return builder.build();
+    }
+
+    /**
+     * Probes of ejected endpoints: a real generation, so they hit the same capacity limits as
+     * requests, but only one token of it
+     */
+    private static GenerationConfig probeConfig() {
+        GenerationConfig.Builder builder = new GenerationConfig.Builder();
+        builder.maxOutputTokens = 1;
+        builder.temperature = 0f;
+        return builder.build();
+    }
+
+    /**
+     * Reads a structured Active Mode answer, most urgent obstacle first
+     */
+    private static List<Obstacle> parseObstacles(String json) throws JSONException {
+        List<Obstacle> obstacles = new ArrayList<>();
+        if (json == null || json.trim().isEmpty()) return obstacles;
+        JSONArray items = new JSONObject(json).optJSONArray(FIELD_OBSTACLES);
+        if (items == null) return obstacles;
+        for (int i = 0; i < items.length(); i++) {
+            JSONObject item = items.optJSONObject(i);
+            if (item == null) continue;
+            Obstacle obstacle = Obstacle.fromFields(item.optString(FIELD_LABEL, null),
+                    item.optString(FIELD_DIRECTION, null), item.optString(FIELD_DISTANCE, null),
+                    item.optString(FIELD_URGENCY, null));
+            if (obstacle != null) obstacles.add(obstacle);
+        }
+        Collections.sort(obstacles, Obstacle.MOST_URGENT_FIRST);
+        return obstacles;
+    }
+
+    /**
+     * Number of endpoints in the pool; each is assumed to have its own rate limit
+     */
+    public int getEndpointCount() {
+        return targets.size();
+    }
+
+    /**
+     * Picks the healthiest endpoint with spare capacity, avoiding the given pool index unless it
+     * is the only choice, and first probes any ejected endpoint that is due back
+     */
+    private Target route(int avoid) {
+        long now = System.currentTimeMillis();
+        for (int index : pool.takeDueProbes(now)) {
+            probeEndpoint(index);
+        }
+        return targets.get(pool.choose(now, avoid));
+    }
+
+    /**
+     * Where a retry goes: another endpoint, if one is in service
+     */
+    private Target reroute(Target failed) {
+        return failed.poolIndex < 0 ? failed : route(failed.poolIndex);
+    }
+
+    /**
+     * A hedge runs on a second endpoint if the pool has one, otherwise on the hedge model
+     */
+    private Target hedgeTargetFor(Target primary) {
+        if (targets.size() > 1) {
+            Target target = route(primary.poolIndex);
+            if (target != primary) return target;
+        }
+        return hedgeTarget;
+    }
+
+    /**
+     * Asks an ejected endpoint for a one-token answer; success puts it back in service. A token
+     * count would not do: it succeeds while generation is still overloaded or rate limited.
+     */
+    private void probeEndpoint(int index) {
+        Target target = targets.get(index);
+        long startMs = System.currentTimeMillis();
+        Log.d(TAG, "Probing ejected endpoint " + target.name);
+        spendExtraAttempt();
+        recordSent(target, startMs);
+        Futures.addCallback(target.probeModel().generateContent(new Content.Builder().addText("ping").build()),
+                new FutureCallback<GenerateContentResponse>() {
+                    @Override
+                    public void onSuccess(GenerateContentResponse result) {
+                        backInService();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        // Cut off at the one-token limit, which is still a generated answer
+                        if (t instanceof ResponseStoppedException) {
+                            backInService();
+                            return;
+                        }
+                        pool.onProbeResult(index, false, 0, System.currentTimeMillis());
+                        Log.w(TAG, "Endpoint " + target.name + " still failing: " + t.getMessage());
+                    }
+
+                    private void backInService() {
+                        long now = System.currentTimeMillis();
+                        pool.onProbeResult(index, true, now - startMs, now);
+                        Log.d(TAG, "Endpoint " + target.name + " back in service");
+                    }
+                }, dispatcher);
+    }
+
+    private void recordSent(Target target, long sentMs) {
+        if (target.poolIndex >= 0) pool.onSent(target.poolIndex, sentMs);
+    }
+
+    private void recordSuccess(Target target, long latencyMs) {
+        if (target.poolIndex >= 0) pool.onSuccess(target.poolIndex, latencyMs);
+    }
+
+    /**
+     * Only failures that say something about the endpoint count against it, not e.g. a blocked prompt
+     */
+    private void recordFailure(Target target, Throwable t) {
+        if (target.poolIndex < 0 || !isRetryable(t)) return;
+        pool.onFailure(target.poolIndex, System.currentTimeMillis());
+        if (pool.getState(target.poolIndex) == EndpointPool.State.EJECTED) {
+            Log.w(TAG, "Ejected endpoint " + target.name + "; " + pool.stats());
+        }
+    }
+
+    /**
+     * Whether the endpoint at this position in the pool is in service, ejected or being probed
+     */
+    public EndpointPool.State getEndpointState(int index) {
+        return pool.getState(index);
+    }
+
+    /**
+     * Latency, error rate, load and ejections per endpoint
+     */
+    public String poolStats() {
+        return pool.stats();
+    }
+
+    /**
+     * Adds a question and the answer the user actually heard to the conversation, so the next
+     * question can follow up on it. Answers that were cancelled or never spoken should not be added.
+     */
+    public void rememberAnswer(String userQuery, String answer) {
+        conversation.add(userQuery, answer, System.currentTimeMillis());
+    }
+
+    public void clearConversation() {
+        conversation.clear();
+    }
+
+    /**
+     * History size and the input tokens per question, which should stay flat however long the conversation
+     */
+    public String conversationStats() {
+        return conversation.stats();
+    }
+
+    /**
+     * The conversation so far, oldest first, followed by the new question. Earlier turns are
+     * text only: a frame is represented by what was said about it.
+     */
+    private static Content[] withHistory(List<ConversationWindow.Turn> history, Content question) {
+        Content[] contents = new Content[history.size() * 2 + 1];
+        int i = 0;
+        for (ConversationWindow.Turn turn : history) {
+            contents[i++] = new Content.Builder().addText(PromptBuilder.earlierQuestion(turn.question)).build();
+            contents[i++] = new Content("model", Collections.singletonList(new TextPart(turn.answer)));
+        }
+        contents[i] = question;
+        return contents;
+    }
+
+    /**
+     * Scene cache key for a question: the same words can mean something else after a different answer
+     */
+    private static String cacheKey(String prompt, List<ConversationWindow.Turn> history) {
+        return history.isEmpty() ? prompt : prompt + "\n" + history.get(history.size() - 1).answer;
+    }
+
+    private void recordPromptTokens(GenerateContentResponse response) {
+        if (response.getUsageMetadata() != null) {
+            conversation.recordPromptTokens(response.getUsageMetadata().getPromptTokenCount());
+        }
+    }
+
+    /**
+     * Opens the connection to the endpoint now, so the first question does not pay for the
+     * handshake, and keeps it open while the app is in use. Stopped by close().
+     */
+    public void warmUpConnection() {
+        connection.start();
+    }
+
+    /**
+     * Cheapest call that sets up the same connections real requests use: a token count on each
+     * model client (each has its own connection pool). Reports on the first endpoint's.
+     */
+    private ListenableFuture<CountTokensResponse> probe() {
+        Content ping = new Content.Builder().addText("ping").build();
+        hedgeTarget.model.countTokens(ping);
+        hedgeTarget.obstacleModel.countTokens(ping);
+        for (int i = 0; i < targets.size(); i++) {
+            targets.get(i).obstacleModel.countTokens(ping);
+            if (i > 0) targets.get(i).model.countTokens(ping);
+        }
+        return targets.get(0).model.countTokens(ping);
+    }
+
+    /**
+     * Cold versus warm connection latency, for probes and for real requests
+     */
+    public String connectionStats() {
+        return connection.stats();
+    }
+
+    /**
+     * Queue wait per priority, and how many Active Mode requests user questions cancelled
+     */
+    public String executorStats() {
+        return prepExecutor.stats() + ", preempted " + preempted.get();
+    }
+
+    /**
+     * Limits requests to the account's quota. Each request takes a slot just before it is
+     * sent, and retries and hedges use one each; a request refused for quota fails with
+     * quotaMessage(). Set before requests are made; null removes the limit.
+     */
+    public void setQuotaManager(QuotaManager quota) {
+        this.quota = quota;
+    }
+
+    /**
+     * Takes a quota slot for the request's first network attempt. Returns 0 if it may be sent,
+     * otherwise how long until it could be.
+     */
+    private long admit(Request request) {
+        QuotaManager quota = this.quota;
+        return quota == null ? 0 : quota.tryAcquire(request.priority, System.currentTimeMillis());
     }
 
-    public void analyzeImage(Bitmap bitmap, String userQuery, GeminiCallback callback) {
+    /**
+     * Lets an Active Mode request through the circuit breaker and then the quota. Returns null if
+     * it may be sent, otherwise the error to report. A request the quota refuses gives back the
+     * half-open probe slot it took, so the next tick can probe instead of being held back until a
+     * user question happens to succeed.
+     */
+    private String admitActiveMode(Request request) {
+        if (!circuitBreaker.allowRequest(System.currentTimeMillis())) {
+            Log.d(TAG, "Circuit open, Active Mode request held back");
+            return OVERLOADED_MESSAGE;
+        }
+        long waitMs = admit(request);
+        if (waitMs > 0) {
+            circuitBreaker.onNeutralOutcome();
+            Log.d(TAG, "Out of quota, Active Mode request held back for " + waitMs + " ms");
+            return quotaMessage(waitMs);
+        }
+        return null;
+    }
+
+    private void spendExtraAttempt() {
+        QuotaManager quota = this.quota;
+        if (quota != null) quota.consumeExtra(System.currentTimeMillis());
+    }
+
+    /**
+     * Error reported for a request the quota did not admit; starts with QUOTA_MESSAGE_PREFIX
+     */
+    public static String quotaMessage(long waitMs) {
+        if (waitMs > 60 * 60000) return QUOTA_MESSAGE_PREFIX + " for today.";
+        if (waitMs > 90000) return QUOTA_MESSAGE_PREFIX + ", try again in " + Math.round(waitMs / 60000f) + " minutes.";
+        return QUOTA_MESSAGE_PREFIX + ", try again in " + Math.max(1, Math.round(waitMs / 1000f)) + " seconds.";
+    }
+
+    /**
+     * Cancels everything queued or in flight without calling back, and stops the client's threads.
+     * Requests made afterwards are dropped.
+     */
+    public void close() {
+        closed = true;
+        for (Request request : activeRequests) {
+            request.cancel();
+        }
+        prepExecutor.shutdown();
+        dispatchService.shutdown();
+        retryScheduler.shutdownNow();
+        connection.close();
+        Log.d(TAG, "Closed; " + executorStats());
+    }
+
+    /**
+     * Answers a user question about the frame. Takes ownership of bitmap; it is returned
+     * to the BitmapPool once the request no longer needs it.
+     */
+    public RequestHandle analyzeImage(Bitmap bitmap, String userQuery, GeminiCallback callback) {
+        Request request = startRequest(PriorityExecutor.Priority.INTERACTIVE, () -> callback.onError(PREEMPTED_MESSAGE));
+        GeminiCallback guarded = guard(request, callback);
         if (bitmap == null) {
-            callback.onError("No image provided");
-            return;
+            guarded.onError("No image provided");
+            return request;
         }
 
-        executor.execute(() -> {
+        submitPrep(request, () -> {
             try {
-                Bitmap optimizedBitmap = optimizeImage(bitmap);
                 String prompt = buildPrompt(userQuery);
+                List<ConversationWindow.Turn> history = conversation.history(System.currentTimeMillis());
+                String key = cacheKey(prompt, history);
+                long fingerprint = fingerprint(bitmap);
+                String cached = sceneCache.get(fingerprint, key, System.currentTimeMillis());
+                if (cached != null) {
+                    Log.d(TAG, "Scene cache hit for user query " + cacheStats());
+                    bitmapPool.release(bitmap);
+                    guarded.onSuccess(cached);
+                    return;
+                }
+
+                long waitMs = admit(request);
+                if (waitMs > 0) {
+                    bitmapPool.release(bitmap);
+                    guarded.onError(quotaMessage(waitMs));
+                    return;
+                }
+
+                byte[] jpeg = prepareImage(bitmap, queryPolicy, RoiLayout.WHOLE, PipelineTracer.NO_TRACE);
+                if (request.isCancelled()) return;
 
                 Content content = new Content.Builder()
                         .addText(prompt)
-                        .addImage(optimizedBitmap)
+                        .addBlob(JPEG_MIME_TYPE, jpeg)
                         .build();
 
-                ListenableFuture<GenerateContentResponse> response = model.generateContent(content);
+                final long sentAtMs = System.currentTimeMillis();
+                ListenableFuture<GenerateContentResponse> response = generateHedged(withHistory(history, content),
+                        queryRetryPolicy, queryHedgePolicy, false);
+                request.attach(response);
                 Futures.addCallback(response, new FutureCallback<GenerateContentResponse>() {
                     @Override
                     public void onSuccess(GenerateContentResponse result) {
-                        callback.onSuccess(result.getText());
+                        latencyTracker.record(System.currentTimeMillis() - sentAtMs);
+                        recordPromptTokens(result);
+                        String text = result.getText();
+                        sceneCache.put(fingerprint, key, text, System.currentTimeMillis());
+                        guarded.onSuccess(text);
                     }
 
                     @Override
                     public void onFailure(Throwable t) {
-                        handleFailure(t, callback);
+                        if (request.isCancelled()) return;
+                        handleFailure(t, guarded);
                     }
-                }, executor);
+                }, dispatcher);
             } catch (Exception e) {
-                callback.onError("Failed to process image: " + e.getMessage());
+                guarded.onError("Failed to process image: " + e.getMessage());
             }
-        });
+        }, () -> bitmapPool.release(bitmap));
+        return request;
     }
 
-    public void analyzeForObstacles(Bitmap bitmap, String customInstruction, GeminiCallback callback) {
-        if (bitmap == null) {
-            callback.onError("No image provided");
+    /**
+     * Handle for a request that may be abandoned, e.g. a speculative answer to a transcript that
+     * turned out different. After cancel() the callback receives nothing more.
+     */
+    public interface RequestHandle {
+        void cancel();
+    }
+
+    /**
+     * A query frame resized and JPEG-encoded ahead of the request, e.g. while the user is still
+     * speaking. Can be sent with more than one query.
+     */
+    public static final class PreparedImage {
+        public final long captureTimeMs;
+        // Written on the prep thread before any request using this image runs there
+        private byte[] jpeg;
+        private long fingerprint;
+
+        PreparedImage(long captureTimeMs) {
+            this.captureTimeMs = captureTimeMs;
+        }
+    }
+
+    /**
+     * A request from submission to its single callback. Cancelling it drops the queued prep task
+     * or the network call in flight. A background request preempted by a user question is
+     * reported to its caller as failed with PREEMPTED_MESSAGE.
+     */
+    private final class Request implements RequestHandle {
+        final PriorityExecutor.Priority priority;
+        private final Runnable onPreempted;
+        private volatile boolean cancelled = false;
+        private boolean done = false;
+        private PriorityExecutor.Task prep;
+        private HedgedRace race;
+        private Future<?> call;
+
+        Request(PriorityExecutor.Priority priority, Runnable onPreempted) {
+            this.priority = priority;
+            this.onPreempted = onPreempted;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void attach(PriorityExecutor.Task task) {
+            synchronized (this) {
+                if (!cancelled) {
+                    prep = task;
+                    return;
+                }
+            }
+            prepExecutor.cancel(task);
+        }
+
+        void attach(HedgedRace race) {
+            synchronized (this) {
+                if (!cancelled) {
+                    this.race = race;
+                    return;
+                }
+            }
+            race.cancel();
+        }
+
+        void attach(Future<?> call) {
+            synchronized (this) {
+                if (!cancelled) {
+                    this.call = call;
+                    return;
+                }
+            }
+            call.cancel(true);
+        }
+
+        /**
+         * Called before delivering the result. Returns false if the request was cancelled or has
+         * already been answered.
+         */
+        boolean finish() {
+            synchronized (this) {
+                if (cancelled || done) return false;
+                done = true;
+            }
+            activeRequests.remove(this);
+            return true;
+        }
+
+        @Override
+        public void cancel() {
+            stop();
+        }
+
+        void preempt() {
+            if (stop()) {
+                preempted.incrementAndGet();
+                onPreempted.run();
+            }
+        }
+
+        private boolean stop() {
+            PriorityExecutor.Task task;
+            HedgedRace currentRace;
+            Future<?> currentCall;
+            synchronized (this) {
+                if (cancelled || done) return false;
+                cancelled = true;
+                task = prep;
+                currentRace = race;
+                currentCall = call;
+            }
+            activeRequests.remove(this);
+            prepExecutor.cancel(task);
+            if (currentRace != null) currentRace.cancel();
+            if (currentCall != null) currentCall.cancel(true);
+            return true;
+        }
+    }
+
+    /**
+     * Registers a new request. A user question preempts Active Mode work that is queued or in
+     * flight, and Active Mode requests are turned away while a question is being answered.
+     */
+    private Request startRequest(PriorityExecutor.Priority priority, Runnable onPreempted) {
+        Request request = new Request(priority, onPreempted);
+        if (closed) {
+            request.cancelled = true;
+            return request;
+        }
+        activeRequests.add(request);
+        if (priority == PriorityExecutor.Priority.INTERACTIVE) {
+            preemptBackground();
+        } else if (hasInteractiveRequest()) {
+            request.preempt();
+        }
+        return request;
+    }
+
+    private void preemptBackground() {
+        for (Request request : activeRequests) {
+            if (request.priority == PriorityExecutor.Priority.BACKGROUND) {
+                Log.d(TAG, "Preempting Active Mode request for a user question");
+                request.preempt();
+            }
+        }
+    }
+
+    private boolean hasInteractiveRequest() {
+        for (Request request : activeRequests) {
+            if (request.priority == PriorityExecutor.Priority.INTERACTIVE) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Queues the CPU part of a request on the prep thread. onDiscard frees what body would have
+     * consumed if the request is cancelled before body starts.
+     */
+    private void submitPrep(Request request, Runnable body, Runnable onDiscard) {
+        if (request.isCancelled()) {
+            onDiscard.run();
             return;
         }
+        request.attach(prepExecutor.submit(request.priority, body, onDiscard));
+    }
+
+    private static GeminiCallback guard(Request request, GeminiCallback callback) {
+        return new GeminiCallback() {
+            @Override
+            public void onSuccess(String response) {
+                if (request.finish()) callback.onSuccess(response);
+            }
+
+            @Override
+            public void onError(String error) {
+                if (request.finish()) callback.onError(error);
+            }
+        };
+    }
+
+    private static ObstacleCallback guard(Request request, ObstacleCallback callback) {
+        return new ObstacleCallback() {
+            @Override
+            public void onObstacles(List<Obstacle> obstacles) {
+                if (request.finish()) callback.onObstacles(obstacles);
+            }
+
+            @Override
+            public void onSceneUnchanged() {
+                if (request.finish()) callback.onSceneUnchanged();
+            }
+
+            @Override
+            public void onError(String error) {
+                if (request.finish()) callback.onError(error);
+            }
+        };
+    }
+
+    private static StreamCallback guard(Request request, StreamCallback callback) {
+        return new StreamCallback() {
+            @Override
+            public void onSentence(String sentence) {
+                if (!request.isCancelled()) callback.onSentence(sentence);
+            }
+
+            @Override
+            public void onComplete(String fullText) {
+                if (request.finish()) callback.onComplete(fullText);
+            }
+
+            @Override
+            public void onError(String error) {
+                if (request.finish()) callback.onError(error);
+            }
+        };
+    }
+
+    /**
+     * Streaming variant of analyzeImage(): sentences are delivered as the model produces them
+     * so speech can start before the full answer exists. Takes ownership of bitmap.
+     */
+    public RequestHandle analyzeImageStreaming(Bitmap bitmap, String userQuery, StreamCallback callback) {
+        return analyzeImageStreaming(bitmap, userQuery, PipelineTracer.NO_TRACE, callback);
+    }
+
+    /**
+     * As above, recording prep and network spans under the given PipelineTracer trace
+     */
+    public RequestHandle analyzeImageStreaming(Bitmap bitmap, String userQuery, int traceId, StreamCallback callback) {
+        Request request = startRequest(PriorityExecutor.Priority.INTERACTIVE, () -> callback.onError(PREEMPTED_MESSAGE));
+        StreamCallback guarded = guard(request, callback);
+        if (bitmap == null) {
+            guarded.onError("No image provided");
+            return request;
+        }
+
+        final long startMs = System.currentTimeMillis();
+        final long queuedNs = tracer.begin(traceId, "executor_wait");
+        submitPrep(request, () -> {
+            try {
+                tracer.end(traceId, "executor_wait", queuedNs);
+                String prompt = buildPrompt(userQuery, traceId);
+                List<ConversationWindow.Turn> history = conversation.history(System.currentTimeMillis());
+                long fingerprint = fingerprint(bitmap);
+                if (answerFromCache(fingerprint, cacheKey(prompt, history), guarded)) {
+                    bitmapPool.release(bitmap);
+                    return;
+                }
+                long waitMs = admit(request);
+                if (waitMs > 0) {
+                    bitmapPool.release(bitmap);
+                    guarded.onError(quotaMessage(waitMs));
+                    return;
+                }
+                byte[] jpeg = prepareImage(bitmap, queryPolicy, RoiLayout.WHOLE, traceId);
+                streamQuery(jpeg, fingerprint, prompt, history, traceId, startMs, request, guarded);
+            } catch (Exception e) {
+                guarded.onError("Failed to process image: " + e.getMessage());
+            }
+        }, () -> bitmapPool.release(bitmap));
+        return request;
+    }
+
+    /**
+     * Resizes and encodes a query frame now, so a later analyzeImageStreaming(PreparedImage, ...)
+     * only has to send it. Takes ownership of bitmap. Someone is asking a question, so this
+     * preempts Active Mode work.
+     */
+    public PreparedImage prepareQueryImage(Bitmap bitmap, long captureTimeMs) {
+        PreparedImage image = new PreparedImage(captureTimeMs);
+        if (closed) {
+            bitmapPool.release(bitmap);
+            return image;
+        }
+        preemptBackground();
+        prepExecutor.submit(PriorityExecutor.Priority.INTERACTIVE, () -> {
+            try {
+                image.fingerprint = fingerprint(bitmap);
+                image.jpeg = prepareImage(bitmap, queryPolicy, RoiLayout.WHOLE, PipelineTracer.NO_TRACE);
+            } catch (Exception e) {
+                Log.e(TAG, "Could not prepare query image", e);
+            }
+        }, () -> bitmapPool.release(bitmap));
+        return image;
+    }
+
+    /**
+     * Streams an answer about an image from prepareQueryImage(); the image is not consumed
+     */
+    public RequestHandle analyzeImageStreaming(PreparedImage image, String userQuery, int traceId,
+                                               StreamCallback callback) {
+        Request request = startRequest(PriorityExecutor.Priority.INTERACTIVE, () -> callback.onError(PREEMPTED_MESSAGE));
+        StreamCallback guarded = guard(request, callback);
+        final long startMs = System.currentTimeMillis();
+        final long queuedNs = tracer.begin(traceId, "executor_wait");
+        submitPrep(request, () -> {
+            tracer.end(traceId, "executor_wait", queuedNs);
+            if (image.jpeg == null) {
+                guarded.onError("Failed to process image: not prepared");
+                return;
+            }
+            tracer.mark(traceId, "image_prepared_early");
+            String prompt = buildPrompt(userQuery, traceId);
+            List<ConversationWindow.Turn> history = conversation.history(System.currentTimeMillis());
+            if (answerFromCache(image.fingerprint, cacheKey(prompt, history), guarded)) return;
+            long waitMs = admit(request);
+            if (waitMs > 0) {
+                guarded.onError(quotaMessage(waitMs));
+                return;
+            }
+            streamQuery(image.jpeg, image.fingerprint, prompt, history, traceId, startMs, request, guarded);
+        }, () -> { });
+        return request;
+    }
+
+    private String buildPrompt(String userQuery, int traceId) {
+        long promptNs = tracer.begin(traceId, "build_prompt");
+        String prompt = buildPrompt(userQuery);
+        tracer.end(traceId, "build_prompt", promptNs);
+        return prompt;
+    }
+
+    /**
+     * Delivers a recent answer for the same scene and question, if there is one
+     */
+    private boolean answerFromCache(long fingerprint, String key, StreamCallback callback) {
+        String cached = sceneCache.get(fingerprint, key, System.currentTimeMillis());
+        if (cached == null) return false;
+        Log.d(TAG, "Scene cache hit for user query " + cacheStats());
+        callback.onSentence(cached);
+        callback.onComplete(cached);
+        return true;
+    }
+
+    /**
+     * Sends an encoded query frame after the conversation so far and splits the streamed answer
+     * into sentences. Runs on the prep thread.
+     */
+    private void streamQuery(byte[] jpeg, long fingerprint, String prompt, List<ConversationWindow.Turn> history,
+                             int traceId, long startMs, Request request, StreamCallback callback) {
+        if (request.isCancelled()) return;
+        Content content = new Content.Builder()
+                .addText(prompt)
+                .addBlob(JPEG_MIME_TYPE, jpeg)
+                .build();
+
+        final long sentAtMs = System.currentTimeMillis();
+        final long firstByteNs = tracer.begin(traceId, "network_first_byte");
+        final long networkNs = tracer.begin(traceId, "network_total");
+        request.attach(streamHedged(withHistory(history, content), queryRetryPolicy, queryHedgePolicy, new StreamHandler() {
+            private final SentenceSplitter splitter = new SentenceSplitter();
+            private final StringBuilder fullText = new StringBuilder();
+            private GenerateContentResponse lastChunk;
+            private boolean firstSentence = true;
+            private boolean firstChunk = true;
+
+            @Override
+            public void onChunk(GenerateContentResponse chunk) {
+                if (request.isCancelled()) return;
+                if (firstChunk) {
+                    firstChunk = false;
+                    tracer.end(traceId, "network_first_byte", firstByteNs);
+                }
+                lastChunk = chunk; // usage metadata comes with the final chunk
+                String text = chunk.getText();
+                if (text == null) return;
+                fullText.append(text);
+                List<String> sentences = splitter.feed(text);
+                for (String sentence : sentences) {
+                    emit(sentence);
+                }
+            }
+
+            @Override
+            public void onFailed(Throwable t) {
+                if (request.isCancelled()) return;
+                callback.onError(describeFailure(t));
+            }
+
+            @Override
+            public void onDone() {
+                if (request.isCancelled()) return;
+                latencyTracker.record(System.currentTimeMillis() - sentAtMs);
+                tracer.end(traceId, "network_total", networkNs);
+                String rest = splitter.flush();
+                if (rest != null) {
+                    emit(rest);
+                }
+                if (lastChunk != null) recordPromptTokens(lastChunk);
+                String text = fullText.toString();
+                sceneCache.put(fingerprint, cacheKey(prompt, history), text, System.currentTimeMillis());
+                Log.d(TAG, "Stream complete in " + (System.currentTimeMillis() - startMs) + " ms; "
+                        + queryHedgePolicy.stats());
+                callback.onComplete(text);
+            }
+
+            private void emit(String sentence) {
+                if (firstSentence) {
+                    firstSentence = false;
+                    Log.d(TAG, "First sentence after " + (System.currentTimeMillis() - startMs) + " ms");
+                }
+                callback.onSentence(sentence);
+            }
+        }));
+    }
+
+    /**
+     * Active Mode check. Takes ownership of bitmap, same as analyzeImage().
+     */
+    public RequestHandle analyzeForObstacles(Bitmap bitmap, String customInstruction, ObstacleCallback callback) {
+        return analyzeForObstacles(bitmap, System.currentTimeMillis(), customInstruction, callback);
+    }
+
+    /**
+     * Active Mode check for a frame captured at captureTimeMs; the frame's age is logged
+     * when it is sent and when the answer arrives.
+     */
+    public RequestHandle analyzeForObstacles(Bitmap bitmap, long captureTimeMs, String customInstruction,
+                                             ObstacleCallback callback) {
+        return analyzeForObstacles(bitmap, captureTimeMs, PipelineTracer.NO_TRACE, customInstruction, callback);
+    }
+
+    /**
+     * As above, recording prep and network spans under the given PipelineTracer trace
+     */
+    public RequestHandle analyzeForObstacles(Bitmap bitmap, long captureTimeMs, int traceId, String customInstruction,
+                                             ObstacleCallback callback) {
+        Request request = startRequest(PriorityExecutor.Priority.BACKGROUND, () -> callback.onError(PREEMPTED_MESSAGE));
+        ObstacleCallback guarded = guard(request, callback);
+        if (bitmap == null) {
+            guarded.onError("No image provided");
+            return request;
+        }
 
-        executor.execute(() -> {
+        final long queuedNs = tracer.begin(traceId, "executor_wait");
+        submitPrep(request, () -> {
             try {
-                Bitmap optimizedBitmap = optimizeImage(bitmap);
-                String prompt = buildObstaclePrompt(customInstruction);
+                tracer.end(traceId, "executor_wait", queuedNs);
+                RoiLayout roi = activeModeRoi;
+                long promptNs = tracer.begin(traceId, "build_prompt");
+                String prompt = buildObstaclePrompt(customInstruction, roi);
+                tracer.end(traceId, "build_prompt", promptNs);
+                long fingerprint = fingerprint(bitmap);
+                if (sceneCache.get(fingerprint, prompt, System.currentTimeMillis()) != null) {
+                    // Same scene as a recent tick: it has already been announced, so stay quiet
+                    Log.d(TAG, "Scene unchanged, skipping request " + cacheStats());
+                    bitmapPool.release(bitmap);
+                    guarded.onSceneUnchanged();
+                    return;
+                }
+
+                String heldBack = admitActiveMode(request);
+                if (heldBack != null) {
+                    bitmapPool.release(bitmap);
+                    guarded.onError(heldBack);
+                    return;
+                }
+
+                byte[] jpeg = prepareImage(bitmap, activeModePolicy, roi, traceId);
+                if (request.isCancelled()) {
+                    // Preempted after taking the breaker's probe slot
+                    circuitBreaker.onNeutralOutcome();
+                    return;
+                }
 
                 Content content = new Content.Builder()
                         .addText(prompt)
-                        .addImage(optimizedBitmap)
+                        .addBlob(JPEG_MIME_TYPE, jpeg)
                         .build();
 
-                ListenableFuture<GenerateContentResponse> response = model.generateContent(content);
+                Log.d(TAG, "Sending obstacle frame, age " + (System.currentTimeMillis() - captureTimeMs) + " ms");
+                final long sentAtMs = System.currentTimeMillis();
+                final long networkNs = tracer.begin(traceId, "network_total");
+                ListenableFuture<GenerateContentResponse> response = generateHedged(new Content[]{content},
+                        activeModeRetryPolicy, activeModeHedgePolicy, true);
+                request.attach(response);
                 Futures.addCallback(response, new FutureCallback<GenerateContentResponse>() {
                     @Override
                     public void onSuccess(GenerateContentResponse result) {
+                        long latencyMs = System.currentTimeMillis() - sentAtMs;
+                        latencyTracker.record(latencyMs);
+                        singleFrameStats.record(1, jpeg.length, latencyMs);
+                        tracer.end(traceId, "network_total", networkNs);
                         String text = result.getText();
-                        if (text != null && text.trim().equalsIgnoreCase("clear")) {
-                            callback.onSuccess(""); // Send empty string if clear
-                        } else {
-                            callback.onSuccess(text);
-                        }
+                        Log.d(TAG, "Obstacle answer for frame aged " + (System.currentTimeMillis() - captureTimeMs) + " ms");
+                        deliverObstacles(fingerprint, prompt, text, guarded);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        if (request.isCancelled()) return;
+                        guarded.onError(describeObstacleFailure(t));
+                    }
+                }, dispatcher);
+            } catch (Exception e) {
+                guarded.onError("Failed to process image: " + e.getMessage());
+            }
+        }, () -> bitmapPool.release(bitmap));
+        return request;
+    }
+
+    /**
+     * Active Mode check on a short burst of frames (oldest first) sent as one request, so the model
+     * can see motion between them. Each frame is labelled with its time relative to the newest.
+     * Takes ownership of every bitmap in frames.
+     */
+    public RequestHandle analyzeBurstForObstacles(List<Bitmap> frames, long[] captureTimesMs, int traceId,
+                                                  String customInstruction, ObstacleCallback callback) {
+        if (frames != null && frames.size() == 1) {
+            return analyzeForObstacles(frames.get(0), captureTimesMs[0], traceId, customInstruction, callback);
+        }
+        Request request = startRequest(PriorityExecutor.Priority.BACKGROUND, () -> callback.onError(PREEMPTED_MESSAGE));
+        ObstacleCallback guarded = guard(request, callback);
+        if (frames == null || frames.isEmpty()) {
+            guarded.onError("No image provided");
+            return request;
+        }
+
+        final long queuedNs = tracer.begin(traceId, "executor_wait");
+        submitPrep(request, () -> {
+            int handedOff = 0; // frames already passed to prepareImage(), which releases them
+            try {
+                tracer.end(traceId, "executor_wait", queuedNs);
+                RoiLayout roi = activeModeRoi;
+                int count = frames.size();
+                long newestMs = captureTimesMs[count - 1];
+                long promptNs = tracer.begin(traceId, "build_prompt");
+                String prompt = PromptBuilder.obstaclePrompt(customInstruction, roi.describe() + PromptBuilder.burstNote(count));
+                tracer.end(traceId, "build_prompt", promptNs);
+                // The answer is about the newest frame, so that is what the scene cache keys on
+                long fingerprint = fingerprint(frames.get(count - 1));
+                if (sceneCache.get(fingerprint, prompt, System.currentTimeMillis()) != null) {
+                    Log.d(TAG, "Scene unchanged, skipping burst " + cacheStats());
+                    releaseAll(frames, 0);
+                    guarded.onSceneUnchanged();
+                    return;
+                }
+
+                String heldBack = admitActiveMode(request);
+                if (heldBack != null) {
+                    releaseAll(frames, 0);
+                    guarded.onError(heldBack);
+                    return;
+                }
+
+                Content.Builder builder = new Content.Builder().addText(prompt);
+                int uploadBytes = 0;
+                for (int i = 0; i < count; i++) {
+                    handedOff = i + 1;
+                    byte[] jpeg = prepareImage(frames.get(i), burstPolicy, roi, traceId);
+                    uploadBytes += jpeg.length;
+                    builder.addText(String.format(Locale.US, "Frame %d, t=%.1f s:",
+                            i + 1, (captureTimesMs[i] - newestMs) / 1000f));
+                    builder.addBlob(JPEG_MIME_TYPE, jpeg);
+                }
+                if (request.isCancelled()) {
+                    circuitBreaker.onNeutralOutcome();
+                    return;
+                }
+                Content content = builder.build();
+                final int totalBytes = uploadBytes;
+
+                Log.d(TAG, "Sending burst of " + count + " frames over " + (newestMs - captureTimesMs[0])
+                        + " ms, " + totalBytes / 1024 + " KB, newest aged " + (System.currentTimeMillis() - newestMs) + " ms");
+                final long sentAtMs = System.currentTimeMillis();
+                final long networkNs = tracer.begin(traceId, "network_total");
+                ListenableFuture<GenerateContentResponse> response = generateHedged(new Content[]{content},
+                        activeModeRetryPolicy, activeModeHedgePolicy, true);
+                request.attach(response);
+                Futures.addCallback(response, new FutureCallback<GenerateContentResponse>() {
+                    @Override
+                    public void onSuccess(GenerateContentResponse result) {
+                        long latencyMs = System.currentTimeMillis() - sentAtMs;
+                        latencyTracker.record(latencyMs);
+                        burstStats.record(count, totalBytes, latencyMs);
+                        tracer.end(traceId, "network_total", networkNs);
+                        String text = result.getText();
+                        Log.d(TAG, "Burst answer for newest frame aged " + (System.currentTimeMillis() - newestMs) + " ms");
+                        deliverObstacles(fingerprint, prompt, text, guarded);
                     }
 
                     @Override
                     public void onFailure(Throwable t) {
-                        handleFailure(t, callback);
+                        if (request.isCancelled()) return;
+                        guarded.onError(describeObstacleFailure(t));
                     }
-                }, executor);
+                }, dispatcher);
             } catch (Exception e) {
-                callback.onError("Failed to process image: " + e.getMessage());
+                releaseAll(frames, handedOff);
+                guarded.onError("Failed to process burst: " + e.getMessage());
+            }
+        }, () -> releaseAll(frames, 0));
+        return request;
+    }
+
+    /**
+     * Parses a structured answer and caches it for the scene; an answer that is not valid JSON
+     * is reported as unreadable and not cached
+     */
+    private void deliverObstacles(long fingerprint, String prompt, String text, ObstacleCallback callback) {
+        List<Obstacle> obstacles;
+        try {
+            obstacles = parseObstacles(text);
+        } catch (JSONException e) {
+            Log.w(TAG, "Unreadable obstacle answer: " + text);
+            callback.onError(UNREADABLE_OBSTACLES_MESSAGE);
+            return;
+        }
+        sceneCache.put(fingerprint, prompt, text, System.currentTimeMillis());
+        callback.onObstacles(obstacles);
+    }
+
+    /**
+     * As describeFailure(), except that an answer the SDK reports as stopped early (e.g. cut off
+     * by the output limit) is unreadable like malformed JSON rather than a processing failure
+     */
+    private String describeObstacleFailure(Throwable t) {
+        if (t instanceof ResponseStoppedException) {
+            Log.w(TAG, "Obstacle answer stopped early: " + t.getMessage());
+            return UNREADABLE_OBSTACLES_MESSAGE;
+        }
+        return describeFailure(t);
+    }
+
+    private void releaseAll(List<Bitmap> frames, int from) {
+        for (int i = from; i < frames.size(); i++) {
+            bitmapPool.release(frames.get(i));
+        }
+    }
+
+    /**
+     * Single-frame vs burst Active Mode requests: requests per frame covered, upload size and latency
+     */
+    public String burstComparisonStats() {
+        return singleFrameStats.summary() + " | " + burstStats.summary();
+    }
+
+    private interface StreamHandler {
+        void onChunk(GenerateContentResponse chunk);
+        void onDone();
+        void onFailed(Throwable t);
+    }
+
+    /**
+     * One copy of a request (primary or hedge). Cancelling it stops the current attempt
+     * and any retry that has not started yet.
+     */
+    private static final class Leg {
+        final boolean hedge;
+        volatile boolean cancelled = false;
+        private Runnable canceller;
+        boolean failed = false; // guarded by the owning HedgedRace
+
+        Leg(boolean hedge) {
+            this.hedge = hedge;
+        }
+
+        /**
+         * Sets how to abort the attempt currently running; runs it right away if already cancelled
+         */
+        void onCancel(Runnable action) {
+            synchronized (this) {
+                canceller = action;
+            }
+            if (cancelled) action.run();
+        }
+
+        void cancel() {
+            Runnable action;
+            synchronized (this) {
+                cancelled = true;
+                action = canceller;
+            }
+            if (action != null) action.run();
+        }
+    }
+
+    /**
+     * Runs a primary request and, if it has not produced a first byte after the policy's delay,
+     * a duplicate on another endpoint (or the hedge model). The first leg to produce data wins and
+     * the other is cancelled; the request only fails once every leg that was started has failed.
+     */
+    private abstract class HedgedRace {
+        private final HedgePolicy hedgePolicy;
+        private final long delayMs;
+        private final long startMs = System.currentTimeMillis();
+        private final Leg primary = new Leg(false);
+        private Target primaryTarget;
+        private Leg hedge;
+        private Leg winner;
+        private ScheduledFuture<?> hedgeTimer;
+        private boolean finished = false;
+
+        HedgedRace(HedgePolicy hedgePolicy) {
+            this.hedgePolicy = hedgePolicy;
+            this.delayMs = hedgePolicy.startRequest();
+        }
+
+        /** Starts leg against target; must report back through claim() and legFailed() */
+        abstract void launch(Leg leg, Target target);
+
+        void start() {
+            primaryTarget = route(-1);
+            launch(primary, primaryTarget);
+            if (delayMs >= 0) {
+                synchronized (this) {
+                    hedgeTimer = retryScheduler.schedule(() -> dispatcher.execute(this::startHedge),
+                            delayMs, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        private void startHedge() {
+            Leg leg;
+            synchronized (this) {
+                if (winner != null || finished || !hedgePolicy.tryStartHedge()) return;
+                leg = new Leg(true);
+                hedge = leg;
+            }
+            Target target = hedgeTargetFor(primaryTarget);
+            Log.d(TAG, "No first byte after " + delayMs + " ms, hedging on " + target.name);
+            spendExtraAttempt();
+            launch(leg, target);
+        }
+
+        /**
+         * Called when leg produces data. Returns false if another leg already won.
+         */
+        boolean claim(Leg leg) {
+            Leg loser;
+            synchronized (this) {
+                if (winner != null) return winner == leg;
+                winner = leg;
+                loser = leg.hedge ? primary : hedge;
+                if (hedgeTimer != null) hedgeTimer.cancel(false);
+            }
+            if (loser != null) loser.cancel();
+            hedgePolicy.onFirstByte(delayMs, System.currentTimeMillis() - startMs, leg.hedge);
+            if (leg.hedge) Log.d(TAG, "Hedge won; " + hedgePolicy.stats());
+            return true;
+        }
+
+        /**
+         * Abandons the request: cancels every leg and the pending hedge; nothing more is reported
+         */
+        void cancel() {
+            Leg first;
+            Leg second;
+            synchronized (this) {
+                if (finished) return;
+                finished = true;
+                if (hedgeTimer != null) hedgeTimer.cancel(false);
+                first = primary;
+                second = hedge;
+            }
+            first.cancel();
+            if (second != null) second.cancel();
+        }
+
+        /**
+         * Called when leg has given up. Returns true if the whole request has now failed.
+         */
+        boolean legFailed(Leg leg) {
+            synchronized (this) {
+                if (winner != null) return winner == leg;
+                leg.failed = true;
+                Leg other = leg.hedge ? primary : hedge;
+                if (other != null && !other.failed) return false;
+                if (hedgeTimer != null) hedgeTimer.cancel(false);
+                if (finished) return false;
+                finished = true;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Hedged generateContent; see HedgedRace. Cancelling the returned future cancels every leg.
+     *
+     * @param obstacles use the Active Mode clients, which answer in structured JSON
+     */
+    private ListenableFuture<GenerateContentResponse> generateHedged(Content[] contents, RetryPolicy retryPolicy,
+                                                                     HedgePolicy hedgePolicy, boolean obstacles) {
+        SettableFuture<GenerateContentResponse> result = SettableFuture.create();
+        HedgedRace race = new HedgedRace(hedgePolicy) {
+            @Override
+            void launch(Leg leg, Target target) {
+                ListenableFuture<GenerateContentResponse> call = generateWithRetry(target, contents, retryPolicy, obstacles);
+                leg.onCancel(() -> call.cancel(true));
+                Futures.addCallback(call, new FutureCallback<GenerateContentResponse>() {
+                    @Override
+                    public void onSuccess(GenerateContentResponse response) {
+                        if (claim(leg)) result.set(response);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        if (leg.cancelled) return;
+                        if (legFailed(leg)) result.setException(t);
+                    }
+                }, dispatcher);
             }
+        };
+        result.addListener(() -> {
+            if (result.isCancelled()) race.cancel();
+        }, MoreExecutors.directExecutor());
+        race.start();
+        return result;
+    }
+
+    /**
+     * Hedged streaming request: the first leg to deliver a chunk owns the answer
+     */
+    private HedgedRace streamHedged(Content[] contents, RetryPolicy retryPolicy, HedgePolicy hedgePolicy,
+                                    StreamHandler handler) {
+        HedgedRace race = new HedgedRace(hedgePolicy) {
+            @Override
+            void launch(Leg leg, Target target) {
+                streamWithRetry(target, contents, retryPolicy, 1, System.currentTimeMillis(), leg, new StreamHandler() {
+                    @Override
+                    public void onChunk(GenerateContentResponse chunk) {
+                        if (claim(leg)) handler.onChunk(chunk);
+                    }
+
+                    @Override
+                    public void onDone() {
+                        if (claim(leg)) handler.onDone();
+                    }
+
+                    @Override
+                    public void onFailed(Throwable t) {
+                        if (legFailed(leg)) handler.onFailed(t);
+                    }
+                });
+            }
+        };
+        race.start();
+        return race;
+    }
+
+    /**
+     * generateContent with a per-request-type deadline, jittered exponential backoff on
+     * overload/timeout errors, and circuit breaker bookkeeping for every attempt.
+     * Cancelling the returned future cancels the attempt in flight and any pending retry.
+     */
+    private ListenableFuture<GenerateContentResponse> generateWithRetry(Target target, Content[] contents,
+                                                                        RetryPolicy policy, boolean obstacles) {
+        SettableFuture<GenerateContentResponse> result = SettableFuture.create();
+        attempt(target, contents, obstacles, policy, 1, System.currentTimeMillis(), result);
+        return result;
+    }
+
+    private void attempt(Target target, Content[] contents, boolean obstacles, RetryPolicy policy, int attempt, long startMs,
+                         SettableFuture<GenerateContentResponse> result) {
+        if (result.isDone()) return;
+        long remainingMs = policy.getDeadlineMs() - (System.currentTimeMillis() - startMs);
+        long sentMs = onRequestSent();
+        recordSent(target, sentMs);
+        boolean warm = connection.onRequestSent();
+        ListenableFuture<GenerateContentResponse> call = Futures.withTimeout(
+                target.modelFor(obstacles).generateContent(contents), Math.max(1, remainingMs), TimeUnit.MILLISECONDS, retryScheduler);
+        result.addListener(() -> {
+            if (result.isCancelled()) call.cancel(true);
+        }, MoreExecutors.directExecutor());
+        Futures.addCallback(call, new FutureCallback<GenerateContentResponse>() {
+            @Override
+            public void onSuccess(GenerateContentResponse response) {
+                circuitBreaker.onSuccess();
+                long latencyMs = System.currentTimeMillis() - sentMs;
+                connection.onResponse(warm, latencyMs);
+                recordSuccess(target, latencyMs);
+                result.set(response);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (result.isCancelled()) {
+                    // Says nothing about overload, but may have been the half-open probe
+                    circuitBreaker.onNeutralOutcome();
+                    return;
+                }
+                recordFailure(target, t);
+                long backoffMs = scheduleRetryIfAllowed(t, policy, attempt, startMs,
+                        () -> attempt(reroute(target), contents, obstacles, policy, attempt + 1, startMs, result));
+                if (backoffMs < 0) {
+                    result.setException(t);
+                }
+            }
+        }, dispatcher);
+    }
+
+    /**
+     * Streaming counterpart of attempt(): only retried while no chunk has been delivered,
+     * since a partially spoken answer cannot be taken back. The policy's deadline covers every
+     * attempt and the whole stream; when it passes, the stream is cancelled and fails with a
+     * TimeoutException.
+     */
+    private void streamWithRetry(Target target, Content[] contents, RetryPolicy policy, int attempt,
+                                 long startMs, Leg leg, StreamHandler handler) {
+        if (leg.cancelled) return;
+        long remainingMs = policy.getDeadlineMs() - (System.currentTimeMillis() - startMs);
+        if (remainingMs <= 0) {
+            deadlinesExpired.incrementAndGet();
+            handler.onFailed(new TimeoutException("Stream deadline of " + policy.getDeadlineMs() + " ms passed"));
+            return;
+        }
+        long sentMs = onRequestSent();
+        recordSent(target, sentMs);
+        boolean warm = connection.onRequestSent();
+        Publisher<GenerateContentResponse> stream = target.model.generateContentStream(contents);
+        stream.subscribe(new Subscriber<GenerateContentResponse>() {
+            // Set once by whichever comes first: completion, an error or the deadline
+            private final AtomicBoolean finished = new AtomicBoolean();
+            private volatile Subscription subscription;
+            private volatile boolean receivedData = false;
+            private final ScheduledFuture<?> deadline = retryScheduler.schedule(() -> dispatcher.execute(() -> {
+                if (leg.cancelled || !finished.compareAndSet(false, true)) return;
+                deadlinesExpired.incrementAndGet();
+                Subscription current = subscription;
+                if (current != null) current.cancel();
+                failed(new TimeoutException("Stream deadline of " + policy.getDeadlineMs() + " ms passed"));
+            }), remainingMs, TimeUnit.MILLISECONDS);
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                leg.onCancel(() -> {
+                    deadline.cancel(false);
+                    subscription.cancel();
+                });
+                if (finished.get()) {
+                    subscription.cancel();
+                } else if (!leg.cancelled) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+            }
+
+            @Override
+            public void onNext(GenerateContentResponse chunk) {
+                if (leg.cancelled || finished.get()) return;
+                if (!receivedData) {
+                    long latencyMs = System.currentTimeMillis() - sentMs;
+                    connection.onResponse(warm, latencyMs);
+                    recordSuccess(target, latencyMs);
+                }
+                receivedData = true;
+                handler.onChunk(chunk);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (leg.cancelled || !finished.compareAndSet(false, true)) return;
+                deadline.cancel(false);
+                failed(t);
+            }
+
+            @Override
+            public void onComplete() {
+                if (leg.cancelled || !finished.compareAndSet(false, true)) return;
+                deadline.cancel(false);
+                circuitBreaker.onSuccess();
+                handler.onDone();
+            }
+
+            private void failed(Throwable t) {
+                recordFailure(target, t);
+                if (receivedData) {
+                    recordOutcome(t);
+                    handler.onFailed(t);
+                    return;
+                }
+                long backoffMs = scheduleRetryIfAllowed(t, policy, attempt, startMs,
+                        () -> streamWithRetry(reroute(target), contents, policy, attempt + 1, startMs, leg, handler));
+                if (backoffMs < 0) {
+                    handler.onFailed(t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records the failure with the circuit breaker and schedules retry if the error is transient
+     * and the policy allows it. Returns the backoff used, or -1 if the caller should give up.
+     */
+    private long scheduleRetryIfAllowed(Throwable t, RetryPolicy policy, int attempt, long startMs, Runnable retry) {
+        recordOutcome(t);
+        long elapsedMs = System.currentTimeMillis() - startMs;
+        long backoffMs = policy.backoffMs(attempt);
+        if (!isRetryable(t) || !policy.canRetry(attempt, elapsedMs, backoffMs)) {
+            if (isRetryable(t)) retriesExhausted.incrementAndGet();
+            return -1;
+        }
+        retries.incrementAndGet();
+        spendExtraAttempt();
+        Log.w(TAG, "Attempt " + attempt + " failed (" + t.getClass().getSimpleName() + "), retrying in "
+                + backoffMs + " ms; " + resilienceStats());
+        retryScheduler.schedule(() -> dispatcher.execute(retry), backoffMs, TimeUnit.MILLISECONDS);
+        return backoffMs;
+    }
+
+    private void recordOutcome(Throwable t) {
+        QuotaManager quota = this.quota;
+        if (quota != null && t instanceof QuotaExceededException) quota.onQuotaExceeded(System.currentTimeMillis());
+        if (isOverload(t) || isTimeout(t)) {
+            circuitBreaker.onFailure(System.currentTimeMillis());
+        } else {
+            circuitBreaker.onNeutralOutcome();
+        }
+    }
+
+    private static boolean isOverload(Throwable t) {
+        if (t instanceof QuotaExceededException) return true;
+        String message = t.getMessage();
+        return t instanceof ServerException && message != null
+                && (message.contains("503") || message.contains("429") || message.contains("overloaded")
+                || message.contains("RESOURCE_EXHAUSTED") || message.contains("UNAVAILABLE"));
+    }
+
+    private static boolean isTimeout(Throwable t) {
+        return t instanceof TimeoutException || t instanceof RequestTimeoutException;
+    }
+
+    private static boolean isRetryable(Throwable t) {
+        if (isOverload(t) || isTimeout(t)) return true;
+        String message = t.getMessage();
+        return t instanceof ServerException && message != null
+                && (message.contains("500") || message.contains("502") || message.contains("504"));
+    }
+
+    /**
+     * True while the circuit breaker is holding back Active Mode because the model is overloaded
+     */
+    public boolean isActiveModePaused() {
+        return circuitBreaker.isOpen(System.currentTimeMillis());
+    }
+
+    public void setCircuitListener(CircuitBreaker.Listener listener) {
+        circuitBreaker.setListener((from, to) -> {
+            Log.w(TAG, "Circuit breaker " + from + " -> " + to);
+            listener.onStateChanged(from, to);
         });
     }
 
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public long getRetriesExhausted() {
+        return retriesExhausted.get();
+    }
+
+    public String resilienceStats() {
+        return "retries=" + retries.get() + " exhausted=" + retriesExhausted.get()
+                + " streamDeadlines=" + deadlinesExpired.get() + " breaker=" + circuitBreaker.getState() + " transitions=" + circuitBreaker.getTransitions()
+                + " heldBack=" + circuitBreaker.getRejected();
+    }
+
+    /**
+     * Model used for hedged duplicates when the pool has a single endpoint; pass the primary model
+     * name to hedge on a second instance of it
+     */
+    public void setHedgeModelName(String modelName) {
+        hedgeTarget = new Target(modelName, endpointConfigs.get(0), -1, modelName);
+    }
+
+    public HedgePolicy getQueryHedgePolicy() {
+        return queryHedgePolicy;
+    }
+
+    public HedgePolicy getActiveModeHedgePolicy() {
+        return activeModeHedgePolicy;
+    }
+
+    /**
+     * Tail latency with and without hedging, and the extra requests it cost, per request type
+     */
+    public String hedgeStats() {
+        return queryHedgePolicy.stats() + "; " + activeModeHedgePolicy.stats();
+    }
+
+    /**
+     * Sets how many of the 64 hash bits may differ before a frame counts as a new scene
+     */
+    public void setSceneChangeThreshold(int maxDistance) {
+        sceneCache.setMaxDistance(maxDistance);
+    }
+
+    /**
+     * Round-trip latency of recent successful network requests
+     */
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    /**
+     * Number of requests that actually went to the network in the last 60 seconds
+     */
+    public int getRequestsInLastMinute() {
+        synchronized (recentRequestTimes) {
+            pruneRequestTimes(System.currentTimeMillis());
+            return recentRequestTimes.size();
+        }
+    }
+
+    private long onRequestSent() {
+        long now = System.currentTimeMillis();
+        synchronized (recentRequestTimes) {
+            recentRequestTimes.addLast(now);
+            pruneRequestTimes(now);
+        }
+        return now;
+    }
+
+    private void pruneRequestTimes(long now) {
+        while (!recentRequestTimes.isEmpty() && now - recentRequestTimes.peekFirst() > 60000) {
+            recentRequestTimes.pollFirst();
+        }
+    }
+
+    public long getCacheHits() {
+        return sceneCache.getHits();
+    }
+
+    public long getCacheMisses() {
+        return sceneCache.getMisses();
+    }
+
+    public void clearSceneCache() {
+        sceneCache.clear();
+    }
+
+    private String cacheStats() {
+        return "(hits=" + sceneCache.getHits() + ", misses=" + sceneCache.getMisses() + ")";
+    }
+
+    private long fingerprint(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (pixelBuffer == null || pixelBuffer.length < width * height) {
+            pixelBuffer = new int[width * height];
+        }
+        bitmap.getPixels(pixelBuffer, 0, width, 0, 0, width, height);
+        return PerceptualHash.dHash(pixelBuffer, width, height);
+    }
+
     private void handleFailure(Throwable t, GeminiCallback callback) {
+        callback.onError(describeFailure(t));
+    }
+
+    private String describeFailure(Throwable t) {
         Log.e(TAG, "Gemini error", t);
-        if (t instanceof ServerException && t.getMessage().contains("503")) {
-            callback.onError("The AI model is currently overloaded.");
+        if (isOverload(t)) {
+            return OVERLOADED_MESSAGE;
+        } else if (isTimeout(t)) {
+            return "The AI took too long to answer.";
         } else {
-            callback.onError("AI processing failed: " + t.getMessage());
+            return "AI processing failed: " + t.getMessage();
         }
     }
 
-    private Bitmap optimizeImage(Bitmap original) {
-        final int MAX_DIMENSION = 512; // Reduced from 768 for faster upload
+    /**
+     * Sets the per-request upload size the JPEG policy aims for (user queries / Active Mode)
+     */
+    public void setByteBudgets(int queryBytes, int activeModeBytes) {
+        queryPolicy.setTargetBytes(queryBytes);
+        activeModePolicy.setTargetBytes(activeModeBytes);
+    }
+
+    /**
+     * Which part of Active Mode frames is uploaded; see RoiLayout. Query frames are always sent whole.
+     */
+    public void setActiveModeRoi(RoiLayout roi) {
+        activeModeRoi = roi != null ? roi : RoiLayout.WHOLE;
+        Log.d(TAG, "Active Mode ROI: " + activeModeRoi);
+    }
+
+    public RoiLayout getActiveModeRoi() {
+        return activeModeRoi;
+    }
+
+    /**
+     * Resizes (or crops to the ROI) and JPEG-encodes the frame once, then returns both bitmaps
+     * to the pool. Takes ownership of original.
+     */
+    private byte[] prepareImage(Bitmap original, JpegQualityPolicy policy, RoiLayout roi, int traceId)
+            throws IOException {
+        long allocatedBefore = bitmapPool.getBytesAllocated();
+        long resizeNs = tracer.begin(traceId, "optimize_image");
+        Bitmap optimized = roi.mode == RoiLayout.Mode.WHOLE_FRAME
+                ? optimizeImage(original, policy.getMaxDimension())
+                : composeRoi(original, roi, policy.getMaxDimension());
+        if (optimized != original) {
+            bitmapPool.release(original);
+        }
+        tracer.end(traceId, "optimize_image", resizeNs);
+
+        long encodeNs = tracer.begin(traceId, "encode_jpeg");
+        byte[] jpeg;
+        try {
+            jpeg = jpegEncoder.encode(optimized, policy);
+        } finally {
+            bitmapPool.release(optimized);
+        }
+        tracer.end(traceId, "encode_jpeg", encodeNs);
+
+        requestCount++;
+        long allocatedNow = bitmapPool.getBytesAllocated();
+        Log.d(TAG, "Image prep allocated " + (allocatedNow - allocatedBefore) / 1024 + " KB, avg "
+                + allocatedNow / requestCount / 1024 + " KB/request, " + bitmapPool.stats()
+                + ", jpeg " + policy);
+        return jpeg;
+    }
+
+    /**
+     * Downscales into a pooled bitmap via Canvas/Matrix. Never recycles or modifies the original.
+     */
+    private Bitmap optimizeImage(Bitmap original, int maxDimension) {
         int width = original.getWidth();
         int height = original.getHeight();
 
-        if (width <= MAX_DIMENSION && height <= MAX_DIMENSION) {
+        if (width <= maxDimension && height <= maxDimension) {
             return original;
         }
 
-        float scale = (width > height) ? (float) MAX_DIMENSION / width : (float) MAX_DIMENSION / height;
+        float scale = (width > height) ? (float) maxDimension / width : (float) maxDimension / height;
         int newWidth = Math.round(width * scale);
         int newHeight = Math.round(height * scale);
 
-        Bitmap resized = Bitmap.createScaledBitmap(original, newWidth, newHeight, true);
-        if (resized != original) {
-            original.recycle();
-        }
+        Bitmap resized = bitmapPool.acquire(newWidth, newHeight);
+        resizeMatrix.setScale((float) newWidth / width, (float) newHeight / height);
+        resizeCanvas.setBitmap(resized);
+        resizeCanvas.drawBitmap(original, resizeMatrix, resizePaint);
+        resizeCanvas.setBitmap(null);
         return resized;
     }
 
-    private String buildPrompt(String userQuery) {
-        String systemPrompt = "You are assisting a person with visual impairments. Provide clear, concise answers in 1-2 sentences max. strictly. be concise as possible. You must not mention image or something. Simulate yourself as you are person's smart cane with eyes. Help them being a personal assistant";
-        String query = (userQuery != null) ? userQuery.toLowerCase().trim() : "";
-        String finalPrompt = "";
-        if(!query.isEmpty()) {
-            finalPrompt = systemPrompt + "User asked: '" + userQuery + "'. Answer their question based on the image.";
+    /**
+     * Draws the ROI tiles (path crop, or head band over path) into one pooled bitmap,
+     * at source resolution unless that would exceed maxDimension
+     */
+    private Bitmap composeRoi(Bitmap original, RoiLayout roi, int maxDimension) {
+        RoiLayout.Plan plan = roi.plan(original.getWidth(), original.getHeight(), maxDimension);
+        Bitmap composed = bitmapPool.acquire(plan.width, plan.height);
+        resizeCanvas.setBitmap(composed);
+        for (RoiLayout.Tile tile : plan.tiles) {
+            roiSource.set(tile.srcLeft, tile.srcTop, tile.srcRight, tile.srcBottom);
+            roiTarget.set(tile.dstLeft, tile.dstTop, tile.dstRight, tile.dstBottom);
+            resizeCanvas.drawBitmap(original, roiSource, roiTarget, resizePaint);
         }
+        resizeCanvas.setBitmap(null);
+
+        int wholeWidth = YuvConverter.scaledWidth(original.getWidth(), original.getHeight(), maxDimension);
+        int wholeHeight = YuvConverter.scaledHeight(original.getWidth(), original.getHeight(), maxDimension);
+        Log.d(TAG, "ROI " + roi.mode + " " + plan.width + "x" + plan.height + " (" + plan.width * plan.height / 1000
+                + "k px vs " + wholeWidth * wholeHeight / 1000 + "k px for the whole frame)");
+        return composed;
+    }
+
+    private String buildPrompt(String userQuery) {
+        String finalPrompt = PromptBuilder.queryPrompt(userQuery);
         System.out.println("Prompt:" +finalPrompt );
         return finalPrompt;
     }
 
-    private String buildObstaclePrompt(String customInstruction) {
-        if (customInstruction != null && !customInstruction.trim().isEmpty()) {
-            return "You are assisting a blind person. " + customInstruction + " If the path is clear, respond with only the word 'clear'.";
-        } else {
-            return "You are assisting a blind person. Describe obstacles or important objects. If the path is clear, respond with only the word 'clear'.";
-        }
+    private String buildObstaclePrompt(String customInstruction, RoiLayout roi) {
+        return PromptBuilder.obstaclePrompt(customInstruction, roi.describe());
     }
 }
@@ -0,0 +1,457 @@
+package com.usbcamera;
+
+import android.graphics.Bitmap;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Gemini Live API client: one persistent WebSocket session that receives camera frames
+ * at a fixed rate and streams text back incrementally (see LIVE_API_PLAN.md).
+ * Video sessions are capped at 2 minutes server-side, so the client rotates the session
+ * shortly before the limit and resumes it with the last resumption handle.
+ */
+public class GeminiLiveClient {
+    private static final String TAG = "GeminiLiveClient";
+    public static final String DEFAULT_ENDPOINT =
+            "wss://generativelanguage.googleapis.com/ws/google.ai.generativelanguage.v1beta.GenerativeService.BidiGenerateContent";
+    private static final String DEFAULT_MODEL = "models/gemini-2.0-flash-live-001";
+    private static final long SESSION_LIMIT_MS = 120000;
+    private static final long SESSION_ROTATE_MARGIN_MS = 10000;
+    private static final long MAX_RECONNECT_DELAY_MS = 10000;
+    private static final int JPEG_QUALITY = 70;
+
+    public interface FrameSource {
+        /** Returns a pooled frame owned by the caller, or null if none is available */
+        Bitmap captureFrame();
+    }
+
+    public interface LiveCallback {
+        void onSessionReady();
+        /** Incremental model text as it arrives */
+        void onPartialText(String text);
+        void onTurnComplete(String fullText);
+        void onSessionClosed(String reason);
+        void onError(String error);
+    }
+
+    private final String apiKey;
+    private final FrameSource frameSource;
+    private final LiveCallback callback;
+    private final OkHttpClient httpClient;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ByteArrayOutputStream jpegStream = new ByteArrayOutputStream(64 * 1024);
+
+    private String endpoint = DEFAULT_ENDPOINT;
+    private String modelName = DEFAULT_MODEL;
+    private String systemInstruction;
+    private long frameIntervalMs = 1000; // Live API processes video at 1 FPS
+    private long sessionLimitMs = SESSION_LIMIT_MS;
+
+    // Session state, only written on the scheduler thread
+    private WebSocket webSocket;
+    private int sessionId = 0;
+    private volatile boolean sessionReady = false;
+    private boolean running = false;
+    private String resumptionHandle;
+    private ScheduledFuture<?> frameTask;
+    private ScheduledFuture<?> rotateTask;
+    private int reconnectAttempts = 0;
+    private final StringBuilder turnText = new StringBuilder();
+    // A text turn was sent and its answer has not completed
+    private boolean turnPending = false;
+
+    // Metrics
+    private volatile long awaitingFirstByteSinceMs = 0;
+    private volatile long lastResponseLatencyMs = -1;
+    private volatile long connectStartMs = 0;
+    private volatile long lastSetupLatencyMs = -1;
+    private volatile int framesSent = 0;
+    private volatile int sessionsOpened = 0;
+    private volatile int reconnects = 0;
+
+    public GeminiLiveClient(String apiKey, FrameSource frameSource, LiveCallback callback) {
+        this.apiKey = apiKey;
+        this.frameSource = frameSource;
+        this.callback = callback;
+        this.httpClient = new OkHttpClient.Builder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .pingInterval(20, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Points the client at a different server, e.g. LocalLiveServer in debug builds
+     */
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public void setModelName(String modelName) {
+        this.modelName = modelName;
+    }
+
+    public void setSystemInstruction(String systemInstruction) {
+        this.systemInstruction = systemInstruction;
+    }
+
+    /**
+     * @param framesPerSecond must be positive; the Live API itself samples video at 1 FPS
+     */
+    public void setFrameRate(float framesPerSecond) {
+        if (!(framesPerSecond > 0)) throw new IllegalArgumentException("Frame rate must be positive: " + framesPerSecond);
+        this.frameIntervalMs = Math.max(100, Math.round(1000 / framesPerSecond));
+        scheduler.execute(() -> {
+            if (sessionReady) startFrameLoop();
+        });
+    }
+
+    /**
+     * Overrides the 2 minute server session limit (the stand-in server uses shorter ones)
+     */
+    public void setSessionLimitMs(long sessionLimitMs) {
+        this.sessionLimitMs = sessionLimitMs;
+    }
+
+    public void start() {
+        scheduler.execute(() -> {
+            if (running) return;
+            running = true;
+            reconnectAttempts = 0;
+            openSession();
+        });
+    }
+
+    public void stop() {
+        scheduler.execute(() -> {
+            running = false;
+            closeSession("Stopped");
+        });
+    }
+
+    /**
+     * Stops streaming and releases the socket and scheduler threads
+     */
+    public void shutdown() {
+        stop();
+        scheduler.shutdown();
+        httpClient.dispatcher().executorService().shutdown();
+    }
+
+    /**
+     * Sends a spoken question as a complete user turn; the answer arrives through LiveCallback
+     */
+    public void sendText(String text) {
+        scheduler.execute(() -> {
+            if (!sessionReady) {
+                callback.onError("Live session not ready");
+                return;
+            }
+            try {
+                JSONObject part = new JSONObject().put("text", text);
+                JSONObject turn = new JSONObject()
+                        .put("role", "user")
+                        .put("parts", new JSONArray().put(part));
+                JSONObject message = new JSONObject().put("clientContent", new JSONObject()
+                        .put("turns", new JSONArray().put(turn))
+                        .put("turnComplete", true));
+                send(message);
+                turnPending = true;
+                awaitingFirstByteSinceMs = System.currentTimeMillis();
+            } catch (JSONException e) {
+                callback.onError("Failed to build message: " + e.getMessage());
+            }
+        });
+    }
+
+    public boolean isSessionReady() {
+        return sessionReady;
+    }
+
+    public long getLastResponseLatencyMs() {
+        return lastResponseLatencyMs;
+    }
+
+    public long getLastSetupLatencyMs() {
+        return lastSetupLatencyMs;
+    }
+
+    public int getFramesSent() {
+        return framesSent;
+    }
+
+    public int getSessionsOpened() {
+        return sessionsOpened;
+    }
+
+    public int getReconnects() {
+        return reconnects;
+    }
+
+    public String stats() {
+        return String.format(Locale.US, "live: %d sessions, %d reconnects, %d frames, setup %d ms, last response %d ms",
+                sessionsOpened, reconnects, framesSent, lastSetupLatencyMs, lastResponseLatencyMs);
+    }
+
+    private void openSession() {
+        final int id = ++sessionId;
+        sessionReady = false;
+        turnText.setLength(0);
+        turnPending = false;
+        connectStartMs = System.currentTimeMillis();
+
+        Request request = new Request.Builder()
+                .url(endpoint + "?key=" + apiKey)
+                .build();
+        webSocket = httpClient.newWebSocket(request, new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket socket, Response response) {
+                scheduler.execute(() -> {
+                    if (id != sessionId) return;
+                    sendSetup();
+                });
+            }
+
+            @Override
+            public void onMessage(WebSocket socket, String text) {
+                scheduler.execute(() -> {
+                    if (id != sessionId) return;
+                    handleServerMessage(text);
+                });
+            }
+
+            @Override
+            public void onMessage(WebSocket socket, okio.ByteString bytes) {
+                // The Live API sends JSON frames as binary messages
+                onMessage(socket, bytes.utf8());
+            }
+
+            @Override
+            public void onClosing(WebSocket socket, int code, String reason) {
+                socket.close(1000, null);
+            }
+
+            @Override
+            public void onClosed(WebSocket socket, int code, String reason) {
+                scheduler.execute(() -> {
+                    if (id != sessionId) return;
+                    onSessionLost("Closed (" + code + "): " + reason);
+                });
+            }
+
+            @Override
+            public void onFailure(WebSocket socket, Throwable t, Response response) {
+                scheduler.execute(() -> {
+                    if (id != sessionId) return;
+                    Log.e(TAG, "Live session failure", t);
+                    onSessionLost("Failure: " + t.getMessage());
+                });
+            }
+        });
+        sessionsOpened++;
+        Log.d(TAG, "Opening live session " + id + (resumptionHandle != null ? " (resuming)" : ""));
+    }
+
+    private void sendSetup() {
+        try {
+            JSONObject setup = new JSONObject()
+                    .put("model", modelName)
+                    .put("generationConfig", new JSONObject()
+                            .put("responseModalities", new JSONArray().put("TEXT")));
+            if (systemInstruction != null) {
+                setup.put("systemInstruction", new JSONObject()
+                        .put("parts", new JSONArray().put(new JSONObject().put("text", systemInstruction))));
+            }
+            JSONObject resumption = new JSONObject();
+            if (resumptionHandle != null) {
+                resumption.put("handle", resumptionHandle);
+            }
+            setup.put("sessionResumption", resumption);
+            send(new JSONObject().put("setup", setup));
+        } catch (JSONException e) {
+            callback.onError("Failed to build setup: " + e.getMessage());
+        }
+    }
+
+    private void handleServerMessage(String text) {
+        JSONObject message;
+        try {
+            message = new JSONObject(text);
+        } catch (JSONException e) {
+            Log.w(TAG, "Ignoring malformed server message");
+            return;
+        }
+
+        if (message.has("setupComplete")) {
+            sessionReady = true;
+            reconnectAttempts = 0;
+            lastSetupLatencyMs = System.currentTimeMillis() - connectStartMs;
+            Log.d(TAG, "Live session ready in " + lastSetupLatencyMs + " ms");
+            scheduleRotation();
+            startFrameLoop();
+            callback.onSessionReady();
+        }
+
+        JSONObject resumptionUpdate = message.optJSONObject("sessionResumptionUpdate");
+        if (resumptionUpdate != null && resumptionUpdate.optBoolean("resumable", false)) {
+            String handle = resumptionUpdate.optString("newHandle", null);
+            if (handle != null && !handle.isEmpty()) {
+                resumptionHandle = handle;
+            }
+        }
+
+        if (message.has("goAway")) {
+            Log.d(TAG, "Server requested session end, rotating");
+            rotateSession();
+            return;
+        }
+
+        JSONObject serverContent = message.optJSONObject("serverContent");
+        if (serverContent != null) {
+            handleServerContent(serverContent);
+        }
+    }
+
+    private void handleServerContent(JSONObject serverContent) {
+        JSONObject modelTurn = serverContent.optJSONObject("modelTurn");
+        if (modelTurn != null) {
+            JSONArray parts = modelTurn.optJSONArray("parts");
+            for (int i = 0; parts != null && i < parts.length(); i++) {
+                String partText = parts.optJSONObject(i) != null ? parts.optJSONObject(i).optString("text", "") : "";
+                if (partText.isEmpty()) continue;
+                if (awaitingFirstByteSinceMs != 0) {
+                    lastResponseLatencyMs = System.currentTimeMillis() - awaitingFirstByteSinceMs;
+                    awaitingFirstByteSinceMs = 0;
+                    Log.d(TAG, "First response text after " + lastResponseLatencyMs + " ms");
+                }
+                turnText.append(partText);
+                callback.onPartialText(partText);
+            }
+        }
+
+        if (serverContent.optBoolean("turnComplete", false)) {
+            String fullText = turnText.toString();
+            turnText.setLength(0);
+            turnPending = false;
+            callback.onTurnComplete(fullText);
+        }
+    }
+
+    private void startFrameLoop() {
+        if (frameTask != null) {
+            frameTask.cancel(false);
+        }
+        frameTask = scheduler.scheduleAtFixedRate(this::sendFrame, 0, frameIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void sendFrame() {
+        if (!sessionReady || frameSource == null) return;
+        Bitmap frame = frameSource.captureFrame();
+        if (frame == null) return;
+
+        try {
+            jpegStream.reset();
+            frame.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, jpegStream);
+        } finally {
+            BitmapPool.getInstance().release(frame);
+        }
+
+        try {
+            String data = Base64.encodeToString(jpegStream.toByteArray(), Base64.NO_WRAP);
+            JSONObject chunk = new JSONObject()
+                    .put("mimeType", "image/jpeg")
+                    .put("data", data);
+            send(new JSONObject().put("realtimeInput", new JSONObject()
+                    .put("mediaChunks", new JSONArray().put(chunk))));
+            framesSent++;
+            if (awaitingFirstByteSinceMs == 0) {
+                awaitingFirstByteSinceMs = System.currentTimeMillis();
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to build frame message", e);
+        }
+    }
+
+    private void scheduleRotation() {
+        if (rotateTask != null) {
+            rotateTask.cancel(false);
+        }
+        long delay = Math.max(1000, sessionLimitMs - SESSION_ROTATE_MARGIN_MS);
+        rotateTask = scheduler.schedule(this::rotateSession, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a fresh session before the current one hits its limit. A turn still being answered
+     * will never complete on the new session, so it is reported as failed.
+     */
+    private void rotateSession() {
+        if (!running) return;
+        if (turnPending || turnText.length() > 0) {
+            Log.w(TAG, "Turn cut off by session rotation");
+            callback.onError("Live turn cut off by session rotation");
+        }
+        closeSession("Session rotation");
+        reconnects++;
+        openSession();
+    }
+
+    private void onSessionLost(String reason) {
+        Log.w(TAG, "Live session lost: " + reason);
+        stopTimers();
+        sessionReady = false;
+        webSocket = null;
+        callback.onSessionClosed(reason);
+        if (!running) return;
+
+        // Exponential backoff so a dead network does not spin
+        long delay = Math.min(MAX_RECONNECT_DELAY_MS, 500L << Math.min(reconnectAttempts, 5));
+        reconnectAttempts++;
+        reconnects++;
+        scheduler.schedule(() -> {
+            if (running && webSocket == null) openSession();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void closeSession(String reason) {
+        stopTimers();
+        sessionReady = false;
+        sessionId++; // ignore late events from the old socket
+        if (webSocket != null) {
+            webSocket.close(1000, reason);
+            webSocket = null;
+        }
+    }
+
+    private void stopTimers() {
+        if (frameTask != null) {
+            frameTask.cancel(false);
+            frameTask = null;
+        }
+        if (rotateTask != null) {
+            rotateTask.cancel(false);
+            rotateTask = null;
+        }
+    }
+
+    private void send(JSONObject message) {
+        if (webSocket != null) {
+            webSocket.send(message.toString());
+        }
+    }
+}
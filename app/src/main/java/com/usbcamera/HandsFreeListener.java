@@ -0,0 +1,287 @@
+package com.usbcamera;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+
+import com.usbcamera.core.PcmRing;
+import com.usbcamera.core.VoiceActivityDetector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Always-on microphone tap that wakes the speech recognizer only when someone starts talking.
+ *
+ * Reads 16 kHz mono PCM from AudioRecord in 100 ms blocks into a preallocated ring and runs a
+ * VoiceActivityDetector over 20 ms frames, so the thread wakes ten times a second and does a
+ * few thousand multiply-adds each time. On speech onset the listener is handed either a pipe
+ * carrying the pre-roll plus live audio (API 33+, where the recognizer can read from a file
+ * descriptor, so the first words are not lost) or null, in which case the microphone has been
+ * released for the recognizer to open. Call endSession() when the recognizer is done.
+ */
+public class HandsFreeListener {
+    private static final String TAG = "HandsFreeListener";
+    public static final int SAMPLE_RATE = 16000;
+    private static final int FRAME_SAMPLES = SAMPLE_RATE / 50;   // 20 ms
+    private static final int READ_SAMPLES = FRAME_SAMPLES * 5;   // 100 ms per wake-up
+    private static final int RING_SAMPLES = SAMPLE_RATE * 2;
+    private static final int PRE_ROLL_SAMPLES = SAMPLE_RATE / 2; // start of the utterance that triggered detection
+    private static final double VAD_THRESHOLD_DB = 12;
+    private static final int VAD_ONSET_FRAMES = 4;
+    private static final int VAD_HANGOVER_FRAMES = 25;
+    private static final long ECHO_TAIL_MS = 400; // room echo after our own speech stops
+
+    public interface Listener {
+        /**
+         * Called on the capture thread when speech starts. audioSource carries the audio from
+         * shortly before the onset (16-bit mono at SAMPLE_RATE), or is null when the microphone
+         * has been released instead.
+         */
+        void onSpeechDetected(ParcelFileDescriptor audioSource);
+    }
+
+    private enum State { DETECTING, STREAMING, HANDED_OVER }
+
+    private final Listener listener;
+    private final PcmRing ring = new PcmRing(RING_SAMPLES);
+    private final VoiceActivityDetector vad =
+            new VoiceActivityDetector(VAD_THRESHOLD_DB, VAD_ONSET_FRAMES, VAD_HANGOVER_FRAMES);
+    private final short[] readBuffer = new short[READ_SAMPLES];
+    private final short[] preRoll = new short[PRE_ROLL_SAMPLES];
+    private final byte[] byteBuffer = new byte[PRE_ROLL_SAMPLES * 2];
+
+    // Guarded by this
+    private State state = State.DETECTING;
+    private boolean running = false;
+    private boolean suppressed = false;
+    private long suppressedUntilMs = 0;
+    private OutputStream streamSink;
+    private Thread thread;
+    private long detections = 0;
+
+    public HandsFreeListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts listening; the caller must hold RECORD_AUDIO
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        state = State.DETECTING;
+        thread = new Thread(this::captureLoop, "HandsFreeListener");
+        thread.start();
+    }
+
+    public void stop() {
+        Thread captureThread;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            closeStream();
+            captureThread = thread;
+            thread = null;
+            notifyAll();
+        }
+        captureThread.interrupt();
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Ignores the microphone while the app itself is talking, and for a short echo tail after
+     */
+    public synchronized void setSuppressed(boolean suppress) {
+        if (suppressed && !suppress) {
+            suppressedUntilMs = System.currentTimeMillis() + ECHO_TAIL_MS;
+        }
+        suppressed = suppress;
+    }
+
+    /**
+     * Releases the microphone for a recognizer session not started by this listener, e.g. a mic tap
+     */
+    public synchronized void pause() {
+        if (!running) return;
+        closeStream();
+        state = State.HANDED_OVER;
+    }
+
+    /**
+     * The recognizer session that followed a detection (or a pause()) is over: go back to detecting
+     */
+    public synchronized void endSession() {
+        closeStream();
+        if (state != State.DETECTING) {
+            state = State.DETECTING;
+            vad.reset();
+            notifyAll();
+        }
+    }
+
+    public synchronized long getDetections() {
+        return detections;
+    }
+
+    @SuppressLint("MissingPermission")
+    private void captureLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+        int minBuffer = AudioRecord.getMinBufferSize(SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        AudioRecord record = null;
+        try {
+            while (true) {
+                if (record != null && isHandedOver()) {
+                    // pause(): someone else needs the microphone
+                    record.stop();
+                    record.release();
+                    record = null;
+                    Log.d(TAG, "Microphone released");
+                }
+                if (!waitUntilMicNeeded()) break;
+                if (record == null) {
+                    record = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, SAMPLE_RATE,
+                            AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                            Math.max(minBuffer, READ_SAMPLES * 2 * 2));
+                    if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+                        Log.e(TAG, "AudioRecord could not be initialized");
+                        record.release();
+                        record = null;
+                        synchronized (this) {
+                            running = false;
+                        }
+                        return;
+                    }
+                    record.startRecording();
+                    Log.d(TAG, "Microphone open, listening for speech");
+                }
+
+                int read = record.read(readBuffer, 0, READ_SAMPLES);
+                if (read <= 0) continue;
+                if (onAudio(read)) {
+                    record.stop();
+                    record.release();
+                    record = null;
+                    listener.onSpeechDetected(null);
+                }
+            }
+        } finally {
+            if (record != null) {
+                record.stop();
+                record.release();
+            }
+            Log.d(TAG, "Microphone closed");
+        }
+    }
+
+    private synchronized boolean isHandedOver() {
+        return state == State.HANDED_OVER;
+    }
+
+    /**
+     * Blocks while the microphone is handed over; returns false once stopped
+     */
+    private synchronized boolean waitUntilMicNeeded() {
+        while (running && state == State.HANDED_OVER) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Handles one block. Returns true if the microphone must be released for the recognizer.
+     */
+    private boolean onAudio(int samples) {
+        ring.write(readBuffer, 0, samples);
+        OutputStream sink;
+        synchronized (this) {
+            sink = state == State.STREAMING ? streamSink : null;
+        }
+        if (sink != null) {
+            // Written outside the lock: the pipe blocks if the recognizer is slow to read
+            if (!writeStream(sink, readBuffer, samples)) endSession();
+            return false;
+        }
+        synchronized (this) {
+            if (state != State.DETECTING) return false;
+            if (suppressed || System.currentTimeMillis() < suppressedUntilMs) {
+                vad.reset();
+                return false;
+            }
+        }
+
+        for (int offset = 0; offset + FRAME_SAMPLES <= samples; offset += FRAME_SAMPLES) {
+            if (!vad.process(readBuffer, offset, FRAME_SAMPLES)) continue;
+            Log.d(TAG, String.format(Locale.US, "Speech onset at %.0f dBFS, noise floor %.0f dBFS",
+                    vad.getLastEnergyDb(), vad.getNoiseFloorDb()));
+            return onSpeechOnset();
+        }
+        return false;
+    }
+
+    private boolean onSpeechOnset() {
+        ParcelFileDescriptor source = null;
+        OutputStream sink = null;
+        synchronized (this) {
+            detections++;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                try {
+                    ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
+                    source = pipe[0];
+                    sink = new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]);
+                    streamSink = sink;
+                    state = State.STREAMING;
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not open audio pipe, handing over the microphone", e);
+                }
+            }
+            if (source == null) {
+                state = State.HANDED_OVER;
+            }
+        }
+        if (source == null) return true;
+
+        int n = ring.copyLatest(preRoll, PRE_ROLL_SAMPLES);
+        writeStream(sink, preRoll, n);
+        listener.onSpeechDetected(source);
+        return false;
+    }
+
+    private boolean writeStream(OutputStream sink, short[] samples, int count) {
+        for (int i = 0; i < count; i++) {
+            byteBuffer[2 * i] = (byte) samples[i];
+            byteBuffer[2 * i + 1] = (byte) (samples[i] >> 8);
+        }
+        try {
+            sink.write(byteBuffer, 0, count * 2);
+            return true;
+        } catch (IOException e) {
+            // The recognizer closed its end, or the session was ended
+            return false;
+        }
+    }
+
+    private void closeStream() {
+        if (streamSink != null) {
+            try {
+                streamSink.close();
+            } catch (IOException ignored) {
+            }
+            streamSink = null;
+        }
+    }
+}
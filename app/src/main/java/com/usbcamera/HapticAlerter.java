@@ -0,0 +1,44 @@
+package com.usbcamera;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Vibration for urgent obstacles. A buzz reaches the user within a few milliseconds of the answer
+ * arriving, while speech waits for synthesis and whatever is already playing, so urgent alerts
+ * buzz first and are spoken after.
+ */
+public class HapticAlerter {
+    private static final String TAG = "HapticAlerter";
+    // Two short pulses: distinct from a notification's single buzz
+    private static final long[] URGENT_PATTERN = {0, 120, 80, 120};
+
+    private final Vibrator vibrator;
+    private final AtomicInteger alerts = new AtomicInteger();
+
+    public HapticAlerter(Context context) {
+        vibrator = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
+    }
+
+    /**
+     * Safe to call from any thread
+     */
+    public void urgent() {
+        if (vibrator == null || !vibrator.hasVibrator()) return;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            vibrator.vibrate(VibrationEffect.createWaveform(URGENT_PATTERN, -1));
+        } else {
+            vibrator.vibrate(URGENT_PATTERN, -1);
+        }
+        Log.d(TAG, "Urgent alert #" + alerts.incrementAndGet());
+    }
+
+    public int getAlertCount() {
+        return alerts.get();
+    }
+}
@@ -0,0 +1,223 @@
+package com.usbcamera;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.util.Log;
+
+import com.usbcamera.core.Detection;
+import com.usbcamera.core.LatencyTracker;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * CPU-only SSD/MobileNet detector (TFLite with XNNPACK) used to screen Active Mode frames
+ * before they go to the cloud.
+ *
+ * Expects a TFLite Object Detection API export in assets: detect.tflite (300x300 input,
+ * uint8 or float) with the usual post-processed outputs (boxes, classes, scores, count), and
+ * labelmap.txt with one label per line. Without the model the detector reports unavailable
+ * and Active Mode sends every frame to Gemini as before.
+ */
+public class ObstacleDetector {
+    private static final String TAG = "ObstacleDetector";
+    private static final String MODEL_ASSET = "detect.tflite";
+    private static final String LABELS_ASSET = "labelmap.txt";
+    private static final int NUM_THREADS = 2;
+    private static final int MAX_RESULTS = 10;
+    private static final float IMAGE_MEAN = 127.5f;
+    private static final float IMAGE_STD = 127.5f;
+
+    private final Context context;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final BitmapPool bitmapPool = BitmapPool.getInstance();
+    private final LatencyTracker latencyTracker = new LatencyTracker(64);
+    private volatile boolean available = false;
+
+    // Only touched on the executor thread
+    private Interpreter interpreter;
+    private final List<String> labels = new ArrayList<>();
+    private int inputSize;
+    private boolean quantized;
+    private ByteBuffer input;
+    private int[] pixels;
+    private float[][][] boxes;
+    private float[][] classes;
+    private float[][] scores;
+    private float[] count;
+    private final Canvas canvas = new Canvas();
+    private final Matrix matrix = new Matrix();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    public interface DetectionCallback {
+        /** Called on the detector thread */
+        void onDetections(List<Detection> detections, long inferenceMs);
+    }
+
+    public ObstacleDetector(Context context) {
+        this.context = context.getApplicationContext();
+        executor.execute(this::load);
+    }
+
+    private void load() {
+        try {
+            Interpreter.Options options = new Interpreter.Options()
+                    .setNumThreads(NUM_THREADS)
+                    .setUseXNNPACK(true);
+            interpreter = new Interpreter(loadModel(), options);
+            loadLabels();
+
+            int[] shape = interpreter.getInputTensor(0).shape(); // [1, height, width, 3]
+            inputSize = shape[1];
+            quantized = interpreter.getInputTensor(0).dataType() == DataType.UINT8;
+            input = ByteBuffer.allocateDirect(inputSize * inputSize * 3 * (quantized ? 1 : 4))
+                    .order(ByteOrder.nativeOrder());
+            pixels = new int[inputSize * inputSize];
+            boxes = new float[1][MAX_RESULTS][4];
+            classes = new float[1][MAX_RESULTS];
+            scores = new float[1][MAX_RESULTS];
+            count = new float[1];
+            available = true;
+            Log.d(TAG, "Detector loaded: " + inputSize + "x" + inputSize + (quantized ? " uint8" : " float")
+                    + ", " + labels.size() + " labels, " + NUM_THREADS + " threads");
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "On-device detector unavailable, every frame goes to the cloud: " + e.getMessage());
+        }
+    }
+
+    private ByteBuffer loadModel() throws IOException {
+        AssetFileDescriptor fd = context.getAssets().openFd(MODEL_ASSET);
+        try (FileInputStream stream = new FileInputStream(fd.getFileDescriptor())) {
+            return stream.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getDeclaredLength());
+        } finally {
+            fd.close();
+        }
+    }
+
+    private void loadLabels() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(context.getAssets().open(LABELS_ASSET)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                labels.add(line.trim());
+            }
+        }
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Runs detection on the detector thread. Does not take ownership of frame; the caller
+     * must keep it alive until the callback has run.
+     */
+    public void detect(Bitmap frame, DetectionCallback callback) {
+        executor.execute(() -> {
+            if (!available) {
+                callback.onDetections(Collections.<Detection>emptyList(), 0);
+                return;
+            }
+            long startMs = System.currentTimeMillis();
+            List<Detection> detections;
+            try {
+                fillInput(frame);
+                Map<Integer, Object> outputs = new HashMap<>();
+                outputs.put(0, boxes);
+                outputs.put(1, classes);
+                outputs.put(2, scores);
+                outputs.put(3, count);
+                interpreter.runForMultipleInputsOutputs(new Object[]{input}, outputs);
+                detections = collect();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Detection failed", e);
+                detections = Collections.emptyList();
+            }
+            long elapsedMs = System.currentTimeMillis() - startMs;
+            latencyTracker.record(elapsedMs);
+            callback.onDetections(detections, elapsedMs);
+        });
+    }
+
+    /**
+     * Stretches the frame to the model input through a pooled bitmap and packs it as RGB
+     */
+    private void fillInput(Bitmap frame) {
+        Bitmap scaled = bitmapPool.acquire(inputSize, inputSize);
+        try {
+            matrix.setScale((float) inputSize / frame.getWidth(), (float) inputSize / frame.getHeight());
+            canvas.setBitmap(scaled);
+            canvas.drawBitmap(frame, matrix, paint);
+            canvas.setBitmap(null);
+            scaled.getPixels(pixels, 0, inputSize, 0, 0, inputSize, inputSize);
+        } finally {
+            bitmapPool.release(scaled);
+        }
+
+        input.rewind();
+        for (int pixel : pixels) {
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            if (quantized) {
+                input.put((byte) r).put((byte) g).put((byte) b);
+            } else {
+                input.putFloat((r - IMAGE_MEAN) / IMAGE_STD)
+                        .putFloat((g - IMAGE_MEAN) / IMAGE_STD)
+                        .putFloat((b - IMAGE_MEAN) / IMAGE_STD);
+            }
+        }
+        input.rewind();
+    }
+
+    private List<Detection> collect() {
+        int n = Math.min(MAX_RESULTS, (int) count[0]);
+        List<Detection> detections = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // Label files for these exports start with a "???" background entry
+            int labelIndex = (int) classes[0][i] + 1;
+            if (labelIndex < 0 || labelIndex >= labels.size()) continue;
+            String label = labels.get(labelIndex);
+            if (label.isEmpty() || label.equals("???")) continue;
+            float[] box = boxes[0][i]; // top, left, bottom, right
+            detections.add(new Detection(label, scores[0][i], box[1], box[0], box[3], box[2]));
+        }
+        return detections;
+    }
+
+    /**
+     * Wall time of preprocessing plus inference for recent frames
+     */
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    public void close() {
+        available = false;
+        executor.execute(() -> {
+            if (interpreter != null) {
+                interpreter.close();
+                interpreter = null;
+            }
+        });
+        executor.shutdown();
+    }
+}
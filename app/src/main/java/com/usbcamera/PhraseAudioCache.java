@@ -0,0 +1,357 @@
+package com.usbcamera;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+
+import com.usbcamera.core.LatencyTracker;
+import com.usbcamera.core.PhraseCache;
+import com.usbcamera.core.WavClip;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pre-rendered audio for phrases that are spoken often, played through static AudioTracks so a
+ * hit starts in a few milliseconds instead of waiting for live synthesis.
+ *
+ * Known phrases (error messages, common alerts) are rendered at startup; other short phrases are
+ * rendered in idle time once they have been spoken a few times. Rendering uses a second
+ * TextToSpeech instance so it never delays live speech. Clips are kept in the app's cache
+ * directory and reloaded on the next start.
+ */
+public class PhraseAudioCache {
+    private static final String TAG = "PhraseAudioCache";
+    private static final String DIR_NAME = "phrases";
+    private static final String INDEX_FILE = "index.txt";
+    private static final long MAX_BYTES = 2 * 1024 * 1024; // roughly a minute of 16-bit mono speech
+    private static final int LEARN_AFTER = 3;
+    private static final int HISTORY_SIZE = 64;
+    private static final int MAX_PHRASE_LENGTH = 80; // longer text is almost never repeated word for word
+
+    private final File dir;
+    private final Set<String> knownKeys = new LinkedHashSet<>();
+    private final PhraseCache<Clip> cache = new PhraseCache<>(MAX_BYTES, LEARN_AFTER, HISTORY_SIZE);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LatencyTracker handoffLatency = new LatencyTracker(64);
+    private TextToSpeech renderer;
+    private volatile boolean rendererReady = false;
+
+    // Only touched on the executor thread
+    private final List<String> pendingRenders = new ArrayList<>();
+    private final Map<String, String> rendering = new HashMap<>(); // render utterance ID -> text
+    private int renderCounter = 0;
+
+    // Guarded by this
+    private Clip playing;
+
+    public interface PlaybackListener {
+        /** Called on the main thread when a cached clip has played to the end */
+        void onPlaybackDone(String utteranceId);
+    }
+
+    private static final class Clip {
+        final String text;
+        final File file;
+        final AudioTrack track;
+        final int frames;
+
+        Clip(String text, File file, AudioTrack track, int frames) {
+            this.text = text;
+            this.file = file;
+            this.track = track;
+            this.frames = frames;
+        }
+    }
+
+    public PhraseAudioCache(Context context, List<String> knownPhrases) {
+        Context appContext = context.getApplicationContext();
+        dir = new File(appContext.getCacheDir(), DIR_NAME);
+        for (String phrase : knownPhrases) {
+            knownKeys.add(PhraseCache.key(phrase));
+        }
+        executor.execute(() -> {
+            if (!dir.exists() && !dir.mkdirs()) Log.e(TAG, "Could not create " + dir);
+            loadIndex();
+            for (String phrase : knownPhrases) {
+                if (!cache.contains(phrase)) pendingRenders.add(phrase);
+            }
+        });
+        renderer = new TextToSpeech(appContext, status -> {
+            if (status != TextToSpeech.SUCCESS) {
+                Log.w(TAG, "Renderer unavailable, phrases are synthesized live");
+                return;
+            }
+            renderer.setLanguage(Locale.US);
+            renderer.setOnUtteranceProgressListener(renderListener);
+            rendererReady = true;
+            renderPending();
+        });
+    }
+
+    /**
+     * Starts the cached clip for text, if there is one. Returns false on a miss, which also
+     * counts towards learning the phrase.
+     */
+    public boolean play(String text, String utteranceId, PlaybackListener listener) {
+        Clip clip = cache.get(text);
+        if (clip == null) {
+            onMiss(text);
+            return false;
+        }
+
+        long startNs = System.nanoTime();
+        synchronized (this) {
+            stopPlaying();
+            try {
+                // A static track stays "playing" at its end; it must be stopped before it can be rewound
+                if (clip.track.getPlayState() != AudioTrack.PLAYSTATE_STOPPED) clip.track.stop();
+                clip.track.reloadStaticData();
+                clip.track.setNotificationMarkerPosition(clip.frames);
+                clip.track.setPlaybackPositionUpdateListener(new AudioTrack.OnPlaybackPositionUpdateListener() {
+                    @Override
+                    public void onMarkerReached(AudioTrack track) {
+                        synchronized (PhraseAudioCache.this) {
+                            if (playing != clip) return;
+                            playing = null;
+                        }
+                        listener.onPlaybackDone(utteranceId);
+                    }
+
+                    @Override
+                    public void onPeriodicNotification(AudioTrack track) {
+                    }
+                }, mainHandler);
+                clip.track.play();
+                playing = clip;
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Cached clip failed, falling back to live synthesis", e);
+                return false;
+            }
+        }
+        handoffLatency.record((System.nanoTime() - startNs) / 1000000);
+        return true;
+    }
+
+    /**
+     * Stops a cached clip that is playing, e.g. when a more urgent utterance preempts it.
+     * No completion callback is delivered for it.
+     */
+    public synchronized void stop() {
+        stopPlaying();
+    }
+
+    private void stopPlaying() {
+        if (playing == null) return;
+        try {
+            playing.track.pause();
+            playing.track.flush();
+            playing.track.stop();
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Stopping clip: " + e.getMessage());
+        }
+        playing = null;
+    }
+
+    private void onMiss(String text) {
+        if (text == null || text.length() > MAX_PHRASE_LENGTH) return;
+        if (cache.recordMiss(text)) {
+            Log.d(TAG, "Learned phrase, rendering when idle: " + text);
+            executor.execute(() -> pendingRenders.add(text));
+        }
+    }
+
+    /**
+     * Renders phrases waiting to be cached; call when nothing is being spoken
+     */
+    public void renderPending() {
+        if (!rendererReady) return;
+        executor.execute(() -> {
+            for (String text : pendingRenders) {
+                String utteranceId = "phrase-" + (++renderCounter);
+                File file = new File(dir, fileName(text));
+                rendering.put(utteranceId, text);
+                Bundle params = new Bundle();
+                if (renderer.synthesizeToFile(text, params, file, utteranceId) != TextToSpeech.SUCCESS) {
+                    rendering.remove(utteranceId);
+                    Log.e(TAG, "Could not queue render of: " + text);
+                }
+            }
+            pendingRenders.clear();
+        });
+    }
+
+    private final UtteranceProgressListener renderListener = new UtteranceProgressListener() {
+        @Override
+        public void onStart(String utteranceId) {
+        }
+
+        @Override
+        public void onDone(String utteranceId) {
+            executor.execute(() -> {
+                String text = rendering.remove(utteranceId);
+                if (text == null) return;
+                load(text, new File(dir, fileName(text)));
+                saveIndex();
+            });
+        }
+
+        @Override
+        public void onError(String utteranceId) {
+            executor.execute(() -> {
+                String text = rendering.remove(utteranceId);
+                Log.e(TAG, "Render failed for: " + text);
+            });
+        }
+    };
+
+    /**
+     * Reads a rendered WAV file into a static AudioTrack and adds it to the cache
+     */
+    private void load(String text, File file) {
+        WavClip wav;
+        try {
+            wav = WavClip.parse(readFile(file));
+        } catch (IOException e) {
+            Log.e(TAG, "Unusable clip for '" + text + "': " + e.getMessage());
+            file.delete();
+            return;
+        }
+
+        AudioTrack track;
+        try {
+            track = new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(AudioAttributes.USAGE_ASSISTANCE_ACCESSIBILITY)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                            .build())
+                    .setAudioFormat(new AudioFormat.Builder()
+                            .setSampleRate(wav.sampleRate)
+                            .setEncoding(wav.bitsPerSample == 8 ? AudioFormat.ENCODING_PCM_8BIT : AudioFormat.ENCODING_PCM_16BIT)
+                            .setChannelMask(wav.channels == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO)
+                            .build())
+                    .setTransferMode(AudioTrack.MODE_STATIC)
+                    .setBufferSizeInBytes(wav.pcm.length)
+                    .build();
+            track.write(wav.pcm, 0, wav.pcm.length);
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            Log.e(TAG, "Could not create track for '" + text + "': " + e.getMessage());
+            return;
+        }
+
+        boolean pinned = knownKeys.contains(PhraseCache.key(text));
+        List<Clip> evicted = cache.put(text, new Clip(text, file, track, wav.frameCount()), wav.pcm.length, pinned);
+        for (Clip clip : evicted) {
+            synchronized (this) {
+                if (playing == clip) stopPlaying();
+            }
+            clip.track.release();
+            if (!clip.file.equals(file)) clip.file.delete();
+        }
+        Log.d(TAG, "Cached '" + text + "' (" + wav.durationMs() + " ms), " + cache.stats());
+    }
+
+    private void loadIndex() {
+        File index = new File(dir, INDEX_FILE);
+        if (!index.exists()) return;
+        try (BufferedReader reader = new BufferedReader(new FileReader(index))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                File file = new File(dir, fileName(line));
+                if (file.exists()) load(line, file);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read phrase index", e);
+        }
+    }
+
+    private void saveIndex() {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(new File(dir, INDEX_FILE)))) {
+            for (String text : cachedTexts()) {
+                writer.println(text);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not write phrase index", e);
+        }
+    }
+
+    private List<String> cachedTexts() {
+        List<Clip> clips = cache.snapshot();
+        List<String> texts = new ArrayList<>(clips.size());
+        for (Clip clip : clips) {
+            texts.add(clip.text);
+        }
+        return texts;
+    }
+
+    private static String fileName(String text) {
+        String key = PhraseCache.key(text);
+        return Integer.toHexString(key.hashCode()) + "-" + key.length() + ".wav";
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Time from play() until AudioTrack.play() returns: the clip has been handed to the mixer,
+     * not necessarily heard yet
+     */
+    public LatencyTracker getHandoffLatency() {
+        return handoffLatency;
+    }
+
+    public String stats() {
+        return cache.stats() + String.format(Locale.US, ", cached handoff p50 %dms", handoffLatency.p50());
+    }
+
+    public void close() {
+        rendererReady = false;
+        synchronized (this) {
+            stopPlaying();
+        }
+        executor.execute(() -> {
+            for (Clip clip : cache.clear()) {
+                clip.track.release();
+            }
+        });
+        executor.shutdown();
+        if (renderer != null) {
+            renderer.shutdown();
+            renderer = null;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.usbcamera;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Named latency spans for the speech -> capture -> AI -> speech pipeline.
+ *
+ * Every user query or Active Mode tick gets a trace (correlation) ID. Spans are emitted as
+ * async android.os.Trace sections (visible in Perfetto/systrace on API 29+) and kept in a
+ * fixed ring buffer, so one slow request can be broken down stage by stage or dumped to a file.
+ */
+public class PipelineTracer {
+    private static final String TAG = "PipelineTracer";
+    public static final int NO_TRACE = 0;
+    private static final int DEFAULT_CAPACITY = 512;
+    private static final int MAX_LABELS = 128;
+
+    private static PipelineTracer instance;
+
+    private final int[] traceIds;
+    private final String[] names;
+    private final long[] startNs;
+    private final long[] endNs;
+    private int next = 0;
+    private int count = 0;
+
+    private final AtomicInteger nextTraceId = new AtomicInteger(NO_TRACE);
+    private final Map<Integer, String> labels = new LinkedHashMap<Integer, String>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > MAX_LABELS;
+        }
+    };
+
+    public static synchronized PipelineTracer getInstance() {
+        if (instance == null) {
+            instance = new PipelineTracer(DEFAULT_CAPACITY);
+        }
+        return instance;
+    }
+
+    public PipelineTracer(int capacity) {
+        traceIds = new int[capacity];
+        names = new String[capacity];
+        startNs = new long[capacity];
+        endNs = new long[capacity];
+    }
+
+    /**
+     * Starts a new trace and returns its correlation ID
+     */
+    public int startTrace(String label) {
+        int id = nextTraceId.incrementAndGet();
+        if (id == NO_TRACE) id = nextTraceId.incrementAndGet();
+        synchronized (this) {
+            labels.put(id, label);
+        }
+        return id;
+    }
+
+    /**
+     * Opens a span and returns its start time, to be passed back to end()
+     */
+    public long begin(int traceId, String span) {
+        if (traceId != NO_TRACE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(span, traceId);
+        }
+        return System.nanoTime();
+    }
+
+    public void end(int traceId, String span, long beginNs) {
+        if (traceId == NO_TRACE) return;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(span, traceId);
+        }
+        record(traceId, span, beginNs, System.nanoTime());
+    }
+
+    /**
+     * Records a zero-length event such as "tts_start"
+     */
+    public void mark(int traceId, String event) {
+        if (traceId == NO_TRACE) return;
+        long now = System.nanoTime();
+        record(traceId, event, now, now);
+    }
+
+    /**
+     * Ends a trace and logs its stage-by-stage breakdown
+     */
+    public void finish(int traceId) {
+        if (traceId == NO_TRACE) return;
+        Log.d(TAG, breakdown(traceId));
+    }
+
+    public synchronized void record(int traceId, String span, long beginNs, long finishNs) {
+        traceIds[next] = traceId;
+        names[next] = span;
+        startNs[next] = beginNs;
+        endNs[next] = finishNs;
+        next = (next + 1) % traceIds.length;
+        if (count < traceIds.length) count++;
+    }
+
+    /**
+     * One line per trace: each span's offset from the first span and its duration
+     */
+    public synchronized String breakdown(int traceId) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("trace ").append(traceId).append(" [").append(labels.get(traceId)).append("]");
+        long origin = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int slot = slot(i);
+            if (traceIds[slot] != traceId) continue;
+            origin = Math.min(origin, startNs[slot]);
+            last = Math.max(last, endNs[slot]);
+        }
+        if (origin == Long.MAX_VALUE) {
+            return sb.append(" (no spans)").toString();
+        }
+        for (int i = 0; i < count; i++) {
+            int slot = slot(i);
+            if (traceIds[slot] != traceId) continue;
+            sb.append(String.format(Locale.US, " | %s +%dms %dms", names[slot],
+                    toMs(startNs[slot] - origin), toMs(endNs[slot] - startNs[slot])));
+        }
+        return sb.append(String.format(Locale.US, " | total %dms", toMs(last - origin))).toString();
+    }
+
+    /**
+     * Writes the whole ring buffer as CSV: trace,label,span,start_ms,duration_ms
+     */
+    public void dumpTo(File file) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            writer.println("trace,label,span,start_ms,duration_ms");
+            synchronized (this) {
+                long origin = count > 0 ? startNs[slot(0)] : 0;
+                for (int i = 0; i < count; i++) {
+                    int slot = slot(i);
+                    writer.println(String.format(Locale.US, "%d,%s,%s,%.2f,%.2f", traceIds[slot],
+                            labels.get(traceIds[slot]), names[slot],
+                            (startNs[slot] - origin) / 1e6, (endNs[slot] - startNs[slot]) / 1e6));
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        Log.d(TAG, "Trace buffer written to " + file.getAbsolutePath());
+    }
+
+    private int slot(int i) {
+        // Oldest entry first
+        return (next - count + i + traceIds.length) % traceIds.length;
+    }
+
+    private static long toMs(long nanos) {
+        return nanos / 1000000;
+    }
+}
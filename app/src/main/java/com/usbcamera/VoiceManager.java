@@ -2,18 +2,39 @@ package com.usbcamera;
 
 import android.content.Context;
 import android.content.Intent;
+import android.media.AudioFormat;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.speech.RecognitionListener;
 import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
 import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
 import android.util.Log;
 
+import com.usbcamera.core.LatencyTracker;
+import com.usbcamera.core.PartialTranscript;
+import com.usbcamera.core.SpeechScheduler;
+import com.usbcamera.core.WakePhraseMatcher;
+
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class VoiceManager {
     private static final String TAG = "VoiceManager";
+    private static final long REPEAT_WINDOW_MS = 20000;
+    private static final float REPEAT_SIMILARITY = 0.7f;
+    private static final int SPECULATE_MIN_WORDS = 3;
+    private static final long SPECULATE_STABLE_MS = 300;
+    private static final String WAKE_PHRASE = "hey assist";
+    private static final String WAKE_REPLY = "Yes?";
 
     private Context context;
     private SpeechRecognizer speechRecognizer;
@@ -21,8 +42,51 @@ public class VoiceManager {
     private boolean ttsReady = false;
     private VoiceCallback callback;
 
+    // One utterance is handed to the engine at a time, so the scheduler can interrupt it
+    private final SpeechScheduler speechScheduler =
+            new SpeechScheduler(REPEAT_WINDOW_MS, REPEAT_SIMILARITY, this::onUtteranceDropped);
+
+    // Speaking and sentence streaming state, guarded by speechLock
+    private final Object speechLock = new Object();
+    private boolean speaking = false;
+    private boolean streamOpen = false;
+    private int streamTraceId = PipelineTracer.NO_TRACE;
+    private Runnable streamSpoken; // runs once the closed stream has been spoken in full
+    private String liveUtteranceId;
+    private long liveHandedOffNs;
+
+    // Frequent phrases play from pre-rendered clips instead of live synthesis
+    private volatile PhraseAudioCache phraseCache;
+    private final LatencyTracker liveStartLatency = new LatencyTracker(64);
+
+    // Latency tracing: the trace opened at end of speech, and when each spoken trace was queued
+    private final PipelineTracer tracer = PipelineTracer.getInstance();
+    private volatile int recognitionTraceId = PipelineTracer.NO_TRACE;
+    private long speechEndedNs = 0;
+    private final Map<Integer, Long> traceQueuedNs = new HashMap<>();
+
+    private final PartialTranscript partialTranscript =
+            new PartialTranscript(SPECULATE_MIN_WORDS, SPECULATE_STABLE_MS);
+
+    // Hands-free listening: recognizer sessions started by the voice detector stay silent until
+    // the wake phrase is heard. Session state is only touched on the main thread.
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final WakePhraseMatcher wakeMatcher = new WakePhraseMatcher(WAKE_PHRASE);
+    private volatile HandsFreeListener handsFree;
+    private boolean wakeSession = false;
+    private boolean wakeMatched = false;
+    private boolean wakeTruncated = false;
+    private ParcelFileDescriptor wakeAudioSource;
+    private boolean listenAfterSpeaking = false;
+    private long wakeSessions = 0;
+    private long wakeAccepted = 0;
+
     public interface VoiceCallback {
         void onSpeechResult(String text);
+        /** The user started talking; a good moment to capture and encode the frame */
+        void onSpeechBegan();
+        /** A partial transcript is settled enough to start answering it; may fire again with different text */
+        void onSpeculativeTranscript(String text);
         void onSpeechError(String error);
         void onListeningStarted();
         void onSpeakingStarted();
@@ -43,6 +107,7 @@ public class VoiceManager {
                 if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
                     Log.e(TAG, "Language not supported");
                 } else {
+                    textToSpeech.setOnUtteranceProgressListener(utteranceListener);
                     ttsReady = true;
                     Log.d(TAG, "TTS initialized successfully");
                 }
@@ -63,7 +128,7 @@ public class VoiceManager {
             @Override
             public void onReadyForSpeech(Bundle params) {
                 Log.d(TAG, "Ready for speech");
-                if (callback != null) {
+                if (callback != null && !wakeSession) {
                     callback.onListeningStarted();
                 }
             }
@@ -71,6 +136,9 @@ public class VoiceManager {
             @Override
             public void onBeginningOfSpeech() {
                 Log.d(TAG, "Speech started");
+                if (callback != null && !wakeSession) {
+                    callback.onSpeechBegan();
+                }
             }
 
             @Override
@@ -86,11 +154,25 @@ public class VoiceManager {
             @Override
             public void onEndOfSpeech() {
                 Log.d(TAG, "Speech ended");
+                recognitionTraceId = tracer.startTrace("query");
+                speechEndedNs = tracer.begin(recognitionTraceId, "speech_to_text");
+                String speculative = partialTranscript.onEndOfSpeech();
+                if (speculative != null && callback != null) {
+                    callback.onSpeculativeTranscript(speculative);
+                }
             }
 
             @Override
             public void onError(int error) {
                 String errorMessage = getErrorText(error);
+                boolean silent = wakeSession && !wakeMatched;
+                onSessionEnded();
+                if (silent) {
+                    // Speech the detector picked up that was not meant for us
+                    Log.d(TAG, "Hands-free session ended without wake phrase: " + errorMessage);
+                    tracer.finish(recognitionTraceId);
+                    return;
+                }
                 Log.e(TAG, "Speech error: " + errorMessage);
                 if (callback != null) {
                     callback.onSpeechError(errorMessage);
@@ -100,9 +182,28 @@ public class VoiceManager {
             @Override
             public void onResults(Bundle results) {
                 ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+                boolean wake = wakeSession;
+                boolean truncated = wakeTruncated;
+                onSessionEnded();
                 if (matches != null && !matches.isEmpty()) {
                     String text = matches.get(0);
                     Log.d(TAG, "Speech result: " + text);
+                    if (wake) {
+                        text = wakeMatcher.match(text, truncated);
+                        if (text == null) {
+                            tracer.finish(recognitionTraceId);
+                            return;
+                        }
+                        wakeAccepted++;
+                        if (text.isEmpty()) {
+                            // Just the wake phrase: answer, then listen for the question
+                            tracer.finish(recognitionTraceId);
+                            listenAfterSpeaking = true;
+                            speak(WAKE_REPLY, SpeechScheduler.Priority.URGENT, PipelineTracer.NO_TRACE);
+                            return;
+                        }
+                    }
+                    tracer.end(recognitionTraceId, "speech_to_text", speechEndedNs);
                     if (callback != null) {
                         callback.onSpeechResult(text);
                     }
@@ -111,7 +212,29 @@ public class VoiceManager {
 
             @Override
             public void onPartialResults(Bundle partialResults) {
-                // Partial results available
+                ArrayList<String> matches = partialResults.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+                if (matches == null || matches.isEmpty()) return;
+                String partial = matches.get(0);
+                if (wakeSession) {
+                    partial = wakeMatcher.match(partial, wakeTruncated);
+                    if (partial == null) return;
+                    if (!wakeMatched) {
+                        wakeMatched = true;
+                        Log.d(TAG, "Wake phrase heard");
+                        if (callback != null) {
+                            callback.onListeningStarted();
+                            callback.onSpeechBegan();
+                        }
+                    }
+                    if (partial.isEmpty()) return;
+                }
+                String speculative = partialTranscript.update(partial, System.currentTimeMillis());
+                if (speculative != null) {
+                    Log.d(TAG, "Stable partial: " + speculative);
+                    if (callback != null) {
+                        callback.onSpeculativeTranscript(speculative);
+                    }
+                }
             }
 
             @Override
@@ -127,70 +250,452 @@ public class VoiceManager {
             return;
         }
 
+        if (wakeSession) {
+            // The user tapped the mic while the detector was checking for the wake phrase
+            speechRecognizer.cancel();
+            onSessionEnded();
+        }
+        HandsFreeListener listener = handsFree;
+        if (listener != null) listener.pause();
+        partialTranscript.reset();
+
+        try {
+            speechRecognizer.startListening(recognizerIntent());
+            Log.d(TAG, "Started listening");
+        } catch (Exception e) {
+            Log.e(TAG, "Error starting speech recognition", e);
+            if (listener != null) listener.endSession();
+            if (callback != null) {
+                callback.onSpeechError("Failed to start listening");
+            }
+        }
+    }
+
+    private Intent recognizerIntent() {
         Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
         intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
         intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault());
         intent.putExtra(RecognizerIntent.EXTRA_PROMPT, "What do you want to know?");
         intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 1);
+        intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
+        return intent;
+    }
+
+    /**
+     * Turns hands-free listening on or off. While on, the microphone is watched by an on-device
+     * voice detector and a question can be asked by starting it with the wake phrase.
+     * The caller must hold RECORD_AUDIO.
+     */
+    public void setHandsFree(boolean enabled) {
+        if (enabled == (handsFree != null)) return;
+        if (enabled) {
+            HandsFreeListener listener = new HandsFreeListener(
+                    audioSource -> mainHandler.post(() -> startWakeSession(audioSource)));
+            synchronized (speechLock) {
+                listener.setSuppressed(speaking);
+            }
+            handsFree = listener;
+            listener.start();
+            Log.d(TAG, "Hands-free listening on, wake phrase \"" + WAKE_PHRASE + "\"");
+        } else {
+            HandsFreeListener listener = handsFree;
+            handsFree = null;
+            listener.stop();
+            if (wakeSession && speechRecognizer != null) {
+                speechRecognizer.cancel();
+                onSessionEnded();
+            }
+            Log.d(TAG, getHandsFreeStats(listener));
+        }
+    }
+
+    public boolean isHandsFree() {
+        return handsFree != null;
+    }
+
+    /**
+     * Starts a recognizer session for speech the detector picked up; nothing reaches the
+     * callback unless it begins with the wake phrase
+     */
+    private void startWakeSession(ParcelFileDescriptor audioSource) {
+        HandsFreeListener listener = handsFree;
+        if (listener == null || speechRecognizer == null || wakeSession) {
+            closeQuietly(audioSource);
+            if (listener != null) listener.endSession();
+            return;
+        }
+
+        Intent intent = recognizerIntent();
+        if (audioSource != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE, audioSource);
+            intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_CHANNEL_COUNT, 1);
+            intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_ENCODING, AudioFormat.ENCODING_PCM_16BIT);
+            intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_SAMPLING_RATE, HandsFreeListener.SAMPLE_RATE);
+        }
+        wakeSession = true;
+        wakeMatched = false;
+        // Without the pre-roll the recognizer opens the microphone late and may miss "hey"
+        wakeTruncated = audioSource == null;
+        wakeAudioSource = audioSource;
+        wakeSessions++;
+        partialTranscript.reset();
 
         try {
             speechRecognizer.startListening(intent);
-            Log.d(TAG, "Started listening");
+            Log.d(TAG, "Speech detected, checking for wake phrase" + (audioSource != null ? " (with pre-roll)" : ""));
         } catch (Exception e) {
-            Log.e(TAG, "Error starting speech recognition", e);
-            if (callback != null) {
-                callback.onSpeechError("Failed to start listening");
-            }
+            Log.e(TAG, "Error starting hands-free recognition", e);
+            onSessionEnded();
+        }
+    }
+
+    /**
+     * A recognizer session finished; hands the microphone back to the voice detector
+     */
+    private void onSessionEnded() {
+        if (wakeSession) {
+            wakeSession = false;
+            wakeMatched = false;
+            closeQuietly(wakeAudioSource);
+            wakeAudioSource = null;
+        }
+        HandsFreeListener listener = handsFree;
+        if (listener != null) listener.endSession();
+    }
+
+    private static void closeQuietly(ParcelFileDescriptor fd) {
+        if (fd == null) return;
+        try {
+            fd.close();
+        } catch (IOException ignored) {
         }
     }
 
+    private String getHandsFreeStats(HandsFreeListener listener) {
+        return String.format(Locale.US, "hands-free: %d detections, %d sessions, %d with wake phrase",
+                listener.getDetections(), wakeSessions, wakeAccepted);
+    }
+
     public void stopListening() {
         if (speechRecognizer != null) {
             speechRecognizer.stopListening();
         }
     }
 
+    /**
+     * Trace opened when the user stopped speaking; read it from onSpeechResult() to follow the query
+     */
+    public int getRecognitionTraceId() {
+        return recognitionTraceId;
+    }
+
+    /**
+     * True if a speculative answer to speculatedText also answers the final transcript
+     */
+    public boolean transcriptMatches(String speculatedText, String finalText) {
+        return partialTranscript.matches(speculatedText, finalText);
+    }
+
     public void speak(String text) {
+        speak(text, SpeechScheduler.Priority.ANSWER, PipelineTracer.NO_TRACE);
+    }
+
+    /**
+     * Speaks an answer, closing the given trace when audio actually starts
+     */
+    public void speak(String text, int traceId) {
+        speak(text, SpeechScheduler.Priority.ANSWER, traceId);
+    }
+
+    /**
+     * Queues text at the given priority. Urgent alerts interrupt answers and descriptions,
+     * answers interrupt descriptions; alerts and descriptions repeating something said
+     * recently are dropped.
+     */
+    public void speak(String text, SpeechScheduler.Priority priority, int traceId) {
         if (!ttsReady) {
             Log.e(TAG, "TTS not ready");
             return;
         }
+        enqueue(text, priority, true, traceId);
+    }
 
-        if (callback != null) {
-            callback.onSpeakingStarted();
+    /**
+     * Speaks obstacle alerts that have already been de-duplicated (WorldState, EscalationGate).
+     * They skip the repeat check: alerts for different objects differ only in the label.
+     */
+    public void speakObstacles(String text, SpeechScheduler.Priority priority, int traceId) {
+        if (!ttsReady) {
+            Log.e(TAG, "TTS not ready");
+            return;
         }
+        enqueue(text, priority, false, traceId);
+    }
 
-        textToSpeech.setOnUtteranceProgressListener(new android.speech.tts.UtteranceProgressListener() {
-            @Override
-            public void onStart(String utteranceId) {
-                Log.d(TAG, "TTS started");
-            }
+    /**
+     * Starts a spoken answer that arrives sentence by sentence.
+     * Call speakSentence() for each sentence, then endSpeechStream() once the last one is queued;
+     * onSpeakingCompleted() fires after the final queued sentence has been spoken.
+     */
+    public void beginSpeechStream() {
+        beginSpeechStream(PipelineTracer.NO_TRACE);
+    }
 
-            @Override
-            public void onDone(String utteranceId) {
-                Log.d(TAG, "TTS completed");
-                if (callback != null) {
-                    callback.onSpeakingCompleted();
+    /**
+     * As beginSpeechStream(), closing the given trace when the first sentence starts playing
+     */
+    public void beginSpeechStream(int traceId) {
+        if (!ttsReady) {
+            Log.e(TAG, "TTS not ready");
+            return;
+        }
+
+        synchronized (speechLock) {
+            streamOpen = true;
+            streamTraceId = traceId;
+            streamSpoken = null;
+        }
+        // Whatever is left of a previous answer is superseded by this one
+        speechScheduler.clear(SpeechScheduler.Priority.ANSWER);
+        markSpeaking();
+    }
+
+    /**
+     * Queues one sentence of a streamed answer
+     */
+    public void speakSentence(String sentence) {
+        if (!ttsReady || sentence == null || sentence.trim().isEmpty()) return;
+
+        int traceId;
+        synchronized (speechLock) {
+            // Only the first sentence carries the trace; it closes when that sentence starts
+            traceId = streamTraceId;
+            streamTraceId = PipelineTracer.NO_TRACE;
+        }
+        enqueue(sentence, SpeechScheduler.Priority.ANSWER, true, traceId);
+    }
+
+    /**
+     * Marks the streamed answer as complete
+     */
+    public void endSpeechStream() {
+        endSpeechStream(null);
+    }
+
+    /**
+     * As endSpeechStream(); onSpoken runs, on a TTS thread, once every queued sentence has been
+     * spoken, and never if a newer answer supersedes this one first
+     */
+    public void endSpeechStream(Runnable onSpoken) {
+        synchronized (speechLock) {
+            streamOpen = false;
+            streamTraceId = PipelineTracer.NO_TRACE;
+            streamSpoken = onSpoken;
+        }
+        checkFinished();
+    }
+
+    /**
+     * Pre-renders the given phrases and starts learning other frequent ones, so they play
+     * without waiting for synthesis
+     */
+    public void preparePhrases(List<String> knownPhrases) {
+        if (phraseCache == null) {
+            phraseCache = new PhraseAudioCache(context, knownPhrases);
+        }
+    }
+
+    /**
+     * Utterances waiting behind the one being spoken
+     */
+    public int getQueueDepth() {
+        return speechScheduler.getQueueDepth();
+    }
+
+    /**
+     * Queue depth, suppressed repeats, preemptions and time to speech per priority
+     */
+    public String getSpeechStats() {
+        PhraseAudioCache cache = phraseCache;
+        return speechScheduler.stats() + String.format(Locale.US, "; live synthesis start p50 %dms", liveStartLatency.p50())
+                + (cache != null ? "; " + cache.stats() : "");
+    }
+
+    private void enqueue(String text, SpeechScheduler.Priority priority, boolean checkRepeats, int traceId) {
+        // Opened before the offer, so a drop racing with it always finds the entry to close
+        if (traceId != PipelineTracer.NO_TRACE) {
+            synchronized (speechLock) {
+                if (!traceQueuedNs.containsKey(traceId)) {
+                    traceQueuedNs.put(traceId, tracer.begin(traceId, "tts_queue"));
                 }
             }
+        }
+        SpeechScheduler.Outcome outcome = speechScheduler.offer(text, priority, checkRepeats, traceId, System.currentTimeMillis());
+        if (outcome == SpeechScheduler.Outcome.SUPPRESSED) {
+            Log.d(TAG, "Suppressed repeat (" + priority + "): " + text);
+            synchronized (speechLock) {
+                traceQueuedNs.remove(traceId);
+            }
+            tracer.finish(traceId);
+            return;
+        }
+        markSpeaking();
+        if (outcome == SpeechScheduler.Outcome.PREEMPT) {
+            Log.d(TAG, "Interrupting speech for " + priority + ", queue depth " + speechScheduler.getQueueDepth());
+            textToSpeech.stop();
+            if (phraseCache != null) phraseCache.stop();
+        }
+        speakNext();
+    }
 
-            @Override
-            public void onError(String utteranceId) {
-                Log.e(TAG, "TTS error");
+    /**
+     * Hands the next utterance to the engine unless one is already playing
+     */
+    private void speakNext() {
+        SpeechScheduler.Utterance next;
+        while ((next = speechScheduler.next()) != null) {
+            PhraseAudioCache cache = phraseCache;
+            if (cache != null && cache.play(next.text, next.id, this::onUtteranceFinished)) {
+                utteranceListener.onStart(next.id);
+                return;
             }
+            synchronized (speechLock) {
+                liveUtteranceId = next.id;
+                liveHandedOffNs = System.nanoTime();
+            }
+            Bundle params = new Bundle();
+            params.putString(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, next.id);
+            if (textToSpeech.speak(next.text, TextToSpeech.QUEUE_ADD, params, next.id) == TextToSpeech.SUCCESS) {
+                return;
+            }
+            Log.e(TAG, "TTS rejected utterance " + next.id);
+            speechScheduler.onFinished(next.id);
+        }
+        checkFinished();
+    }
+
+    private void markSpeaking() {
+        boolean started;
+        synchronized (speechLock) {
+            started = !speaking;
+            speaking = true;
+            // The detector must not hear our own voice
+            HandsFreeListener listener = handsFree;
+            if (listener != null) listener.setSuppressed(true);
+        }
+        if (started && callback != null) {
+            callback.onSpeakingStarted();
+        }
+    }
+
+    private void checkFinished() {
+        boolean finished;
+        Runnable spoken = null;
+        synchronized (speechLock) {
+            finished = speaking && !streamOpen && speechScheduler.isIdle();
+            if (finished) {
+                speaking = false;
+                spoken = streamSpoken;
+                streamSpoken = null;
+                HandsFreeListener listener = handsFree;
+                if (listener != null) listener.setSuppressed(false);
+            }
+        }
+        if (!finished) return;
+        if (spoken != null) spoken.run();
+        if (callback != null) {
+            Log.d(TAG, "TTS completed");
+            callback.onSpeakingCompleted();
+        }
+        mainHandler.post(() -> {
+            if (!listenAfterSpeaking) return;
+            listenAfterSpeaking = false;
+            startListening();
         });
+        // Nothing is being said, so learned phrases can be rendered without competing for the CPU
+        PhraseAudioCache cache = phraseCache;
+        if (cache != null) cache.renderPending();
+    }
+
+    // Registered once; the utterance ID says which queued message a callback belongs to
+    private final UtteranceProgressListener utteranceListener = new UtteranceProgressListener() {
+        @Override
+        public void onStart(String utteranceId) {
+            synchronized (speechLock) {
+                if (utteranceId.equals(liveUtteranceId)) {
+                    liveStartLatency.record((System.nanoTime() - liveHandedOffNs) / 1000000);
+                    liveUtteranceId = null;
+                }
+            }
+            SpeechScheduler.Utterance started = speechScheduler.onStarted(utteranceId, System.currentTimeMillis());
+            if (started != null) {
+                onTraceSpeechStarted(started.traceId);
+            }
+        }
+
+        @Override
+        public void onDone(String utteranceId) {
+            onUtteranceFinished(utteranceId);
+        }
+
+        @Override
+        public void onError(String utteranceId) {
+            Log.e(TAG, "TTS error for " + utteranceId);
+            onUtteranceFinished(utteranceId);
+        }
+
+        @Override
+        public void onStop(String utteranceId, boolean interrupted) {
+            onUtteranceFinished(utteranceId);
+        }
+    };
+
+    private void onUtteranceFinished(String utteranceId) {
+        // Callbacks for an utterance that was preempted arrive after its replacement has started
+        if (speechScheduler.onFinished(utteranceId)) {
+            speakNext();
+        }
+    }
 
-        Bundle params = new Bundle();
-        params.putString(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, "AssistEyes");
-        textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, params, "AssistEyes");
+    private void onTraceSpeechStarted(int traceId) {
+        if (traceId == PipelineTracer.NO_TRACE) return;
+        Long queuedNs;
+        synchronized (speechLock) {
+            queuedNs = traceQueuedNs.remove(traceId);
+        }
+        if (queuedNs == null) return;
+        tracer.end(traceId, "tts_queue", queuedNs);
+        tracer.mark(traceId, "tts_start");
+        tracer.finish(traceId);
+    }
+
+    // A superseded or replaced utterance never starts, so its trace would otherwise stay queued forever
+    private void onUtteranceDropped(SpeechScheduler.Utterance utterance) {
+        if (utterance.traceId == PipelineTracer.NO_TRACE) return;
+        Long queuedNs;
+        synchronized (speechLock) {
+            queuedNs = traceQueuedNs.remove(utterance.traceId);
+        }
+        if (queuedNs == null) return;
+        tracer.end(utterance.traceId, "tts_queue", queuedNs);
+        tracer.mark(utterance.traceId, "tts_dropped");
+        tracer.finish(utterance.traceId);
     }
 
     public void destroy() {
+        if (handsFree != null) {
+            setHandsFree(false);
+        }
         if (speechRecognizer != null) {
             speechRecognizer.destroy();
             speechRecognizer = null;
         }
 
+        Log.d(TAG, getSpeechStats());
+        if (phraseCache != null) {
+            phraseCache.close();
+        }
+
         if (textToSpeech != null) {
             textToSpeech.stop();
             textToSpeech.shutdown();
@@ -0,0 +1,144 @@
+package com.usbcamera.benchmarks;
+
+import com.usbcamera.core.AdaptiveJpegEncoder;
+import com.usbcamera.core.FrameRing;
+import com.usbcamera.core.JpegQualityPolicy;
+import com.usbcamera.core.MotionEstimator;
+import com.usbcamera.core.PerceptualHash;
+import com.usbcamera.core.YuvConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame costs of the capture path: preview tap -> ring -> scaled ARGB -> fingerprint -> JPEG.
+ * Each invocation works on the next recorded frame, so scene content varies as it does live.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameProcessingBenchmark {
+    private static final int FRAME_COUNT = 60;
+    private static final int CAPTURE_MAX_DIMENSION = 512;
+
+    private byte[][] frames;
+    private ByteBuffer[] directFrames;
+    private int[][] scaledFrames;
+    private BufferedImage[] images;
+    private int outWidth;
+    private int outHeight;
+    private int index;
+
+    private int[] argb;
+    private FrameRing ring;
+    private MotionEstimator motion;
+    private AdaptiveJpegEncoder<BufferedImage> encoder;
+    private JpegQualityPolicy policy;
+    private BufferedImage scratchImage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        frames = RecordedFrames.load(FRAME_COUNT);
+        outWidth = YuvConverter.scaledWidth(RecordedFrames.WIDTH, RecordedFrames.HEIGHT, CAPTURE_MAX_DIMENSION);
+        outHeight = YuvConverter.scaledHeight(RecordedFrames.WIDTH, RecordedFrames.HEIGHT, CAPTURE_MAX_DIMENSION);
+
+        directFrames = new ByteBuffer[frames.length];
+        scaledFrames = new int[frames.length][];
+        images = new BufferedImage[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            directFrames[i] = ByteBuffer.allocateDirect(RecordedFrames.FRAME_BYTES);
+            directFrames[i].put(frames[i]).flip();
+            scaledFrames[i] = new int[outWidth * outHeight];
+            YuvConverter.nv21ToArgb(directFrames[i], RecordedFrames.WIDTH, RecordedFrames.HEIGHT,
+                    scaledFrames[i], outWidth, outHeight);
+            images[i] = toImage(scaledFrames[i], new BufferedImage(outWidth, outHeight, BufferedImage.TYPE_INT_RGB));
+        }
+
+        argb = new int[outWidth * outHeight];
+        ring = new FrameRing(3, RecordedFrames.FRAME_BYTES);
+        motion = new MotionEstimator();
+        encoder = new AdaptiveJpegEncoder<>(new ImageIoJpegEncoder(), 48 * 1024 * 2);
+        // Same budget and bounds as GeminiClient's user-query policy
+        policy = new JpegQualityPolicy(48 * 1024, 50, 90, 256, 512);
+        scratchImage = new BufferedImage(outWidth, outHeight, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private int next() {
+        index = (index + 1) % frames.length;
+        return index;
+    }
+
+    @Benchmark
+    public int ringWriteAndAcquire() {
+        byte[] frame = frames[next()];
+        ring.write(frame, frame.length, RecordedFrames.WIDTH, RecordedFrames.HEIGHT, index);
+        int slot = ring.acquireLatest();
+        ring.release(slot);
+        return slot;
+    }
+
+    @Benchmark
+    public int[] nv21ToScaledArgb() {
+        ByteBuffer frame = directFrames[next()];
+        YuvConverter.nv21ToArgb(frame, RecordedFrames.WIDTH, RecordedFrames.HEIGHT, argb, outWidth, outHeight);
+        return argb;
+    }
+
+    @Benchmark
+    public long perceptualHash() {
+        return PerceptualHash.dHash(scaledFrames[next()], outWidth, outHeight);
+    }
+
+    @Benchmark
+    public float motionEstimate() {
+        byte[] frame = frames[next()];
+        motion.update(frame, RecordedFrames.WIDTH, RecordedFrames.HEIGHT);
+        return motion.getScore();
+    }
+
+    @Benchmark
+    public byte[] adaptiveJpegEncode() throws IOException {
+        return encoder.encode(images[next()], policy);
+    }
+
+    /**
+     * Everything a PREVIEW_TAP capture does before the upload, end to end
+     */
+    @Benchmark
+    public byte[] fullPreparation() throws IOException {
+        byte[] frame = frames[next()];
+        ring.write(frame, frame.length, RecordedFrames.WIDTH, RecordedFrames.HEIGHT, index);
+        int slot = ring.acquireLatest();
+        try {
+            YuvConverter.nv21ToArgb(ring.buffer(slot), RecordedFrames.WIDTH, RecordedFrames.HEIGHT,
+                    argb, outWidth, outHeight);
+        } finally {
+            ring.release(slot);
+        }
+        long fingerprint = PerceptualHash.dHash(argb, outWidth, outHeight);
+        byte[] jpeg = encoder.encode(toImage(argb, scratchImage), policy);
+        return fingerprint == 0 ? null : jpeg;
+    }
+
+    private BufferedImage toImage(int[] pixels, BufferedImage image) {
+        image.setRGB(0, 0, outWidth, outHeight, pixels, 0, outWidth);
+        return image;
+    }
+}
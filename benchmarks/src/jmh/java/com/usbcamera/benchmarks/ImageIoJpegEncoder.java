@@ -0,0 +1,43 @@
+package com.usbcamera.benchmarks;
+
+import com.usbcamera.core.FrameEncoder;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * JVM stand-in for Bitmap.compress, so the adaptive quality loop can be measured off-device.
+ * Absolute times differ from Android's libjpeg-turbo; compare runs against each other.
+ */
+final class ImageIoJpegEncoder implements FrameEncoder<BufferedImage> {
+    private final ImageWriter writer;
+    private final ImageWriteParam param;
+
+    ImageIoJpegEncoder() {
+        ImageIO.setUseCache(false); // keep encoding in memory, like Bitmap.compress
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        writer = writers.next();
+        param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    }
+
+    @Override
+    public void encode(BufferedImage image, int quality, OutputStream out) throws IOException {
+        param.setCompressionQuality(quality / 100f);
+        ImageOutputStream stream = ImageIO.createImageOutputStream(out);
+        try {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.usbcamera.benchmarks;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 640x480 NV21 preview frames for the benchmarks.
+ *
+ * With -Dassist.frames=path the frames come from a raw recording (concatenated NV21 frames,
+ * e.g. `ffmpeg -i walk.mp4 -vf scale=640:480 -pix_fmt nv21 -f rawvideo walk.nv21`).
+ * Otherwise a deterministic synthetic sequence with texture, noise and a moving object is used,
+ * so runs on different machines stay comparable.
+ */
+final class RecordedFrames {
+    static final int WIDTH = 640;
+    static final int HEIGHT = 480;
+    static final int FRAME_BYTES = WIDTH * HEIGHT * 3 / 2;
+    static final String FRAMES_PROPERTY = "assist.frames";
+
+    private RecordedFrames() {
+    }
+
+    static byte[][] load(int maxFrames) throws IOException {
+        String path = System.getProperty(FRAMES_PROPERTY);
+        if (path == null || path.isEmpty()) {
+            return synthesize(maxFrames);
+        }
+
+        File file = new File(path);
+        List<byte[]> frames = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            long available = file.length() / FRAME_BYTES;
+            for (long i = 0; i < available && frames.size() < maxFrames; i++) {
+                byte[] frame = new byte[FRAME_BYTES];
+                in.readFully(frame);
+                frames.add(frame);
+            }
+        } finally {
+            in.close();
+        }
+        if (frames.isEmpty()) {
+            throw new IOException(path + " holds no complete " + WIDTH + "x" + HEIGHT + " NV21 frame");
+        }
+        return frames.toArray(new byte[0][]);
+    }
+
+    private static byte[][] synthesize(int count) {
+        Random random = new Random(42);
+        byte[][] frames = new byte[count][];
+        for (int f = 0; f < count; f++) {
+            byte[] frame = new byte[FRAME_BYTES];
+            int objectX = (f * 23) % (WIDTH - 120);
+            int objectY = HEIGHT / 2 - 60 + (f % 7) * 4;
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int luma = 40 + (x * 120 / WIDTH) + (y * 60 / HEIGHT) + ((x / 16 + y / 16) % 2) * 20;
+                    if (x >= objectX && x < objectX + 120 && y >= objectY && y < objectY + 120) {
+                        luma = 210;
+                    }
+                    luma += random.nextInt(9) - 4;
+                    frame[y * WIDTH + x] = (byte) Math.max(0, Math.min(255, luma));
+                }
+            }
+            for (int i = WIDTH * HEIGHT; i < FRAME_BYTES; i += 2) {
+                int row = (i - WIDTH * HEIGHT) / WIDTH;
+                frame[i] = (byte) (128 + row / 8);     // V
+                frame[i + 1] = (byte) (128 - row / 8); // U
+            }
+            frames[f] = frame;
+        }
+        return frames;
+    }
+}
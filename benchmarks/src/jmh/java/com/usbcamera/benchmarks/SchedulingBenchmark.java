@@ -0,0 +1,132 @@
+package com.usbcamera.benchmarks;
+
+import com.usbcamera.core.CadenceController;
+import com.usbcamera.core.CircuitBreaker;
+import com.usbcamera.core.LatencyTracker;
+import com.usbcamera.core.LatestFrameScheduler;
+import com.usbcamera.core.PromptBuilder;
+import com.usbcamera.core.ResponseCache;
+import com.usbcamera.core.SentenceSplitter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request-side bookkeeping that runs on every query or Active Mode tick
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulingBenchmark {
+    private static final String ANSWER = "There is a chair about two steps ahead, slightly to your left. "
+            + "The doorway is straight ahead and clear! Watch for a low step at approx. one metre. "
+            + "Dr. Smith's office sign is on the right wall.";
+    private static final int CHUNK_SIZE = 24; // roughly one streamed chunk
+
+    private LatestFrameScheduler<Object> scheduler;
+    private final Object frame = new Object();
+    private CadenceController cadence;
+    private LatencyTracker latency;
+    private ResponseCache cache;
+    private CircuitBreaker breaker;
+    private String[] chunks;
+    private String prompt;
+    private long clock;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scheduler = new LatestFrameScheduler<>(4000, (f, captureTimeMs) -> { }, f -> { });
+        cadence = new CadenceController(1000, 8000, 15);
+        latency = new LatencyTracker(32);
+        for (int i = 0; i < 32; i++) {
+            latency.record(800 + (i * 37) % 900);
+        }
+
+        prompt = PromptBuilder.obstaclePrompt(null);
+        cache = new ResponseCache(16, 6, Long.MAX_VALUE);
+        for (int i = 0; i < 16; i++) {
+            cache.put(0x9E3779B97F4A7C15L * (i + 1), prompt, "answer " + i, 0);
+        }
+        breaker = new CircuitBreaker(3, 30000);
+
+        int count = (ANSWER.length() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunks = new String[count];
+        for (int i = 0; i < count; i++) {
+            chunks[i] = ANSWER.substring(i * CHUNK_SIZE, Math.min(ANSWER.length(), (i + 1) * CHUNK_SIZE));
+        }
+    }
+
+    /**
+     * Active Mode under load: a frame arrives while one is in flight, then the request completes
+     */
+    @Benchmark
+    public boolean schedulerSubmitComplete() {
+        clock += 500;
+        scheduler.submit(frame, clock);
+        scheduler.submit(frame, clock + 100);
+        return scheduler.complete(clock, clock + 900);
+    }
+
+    @Benchmark
+    public long cadenceNextInterval() {
+        clock++;
+        return cadence.nextIntervalMs(latency.p50(), latency.p95(), (clock % 100) / 100f, 0.4f);
+    }
+
+    @Benchmark
+    public long latencyRecordAndPercentiles() {
+        latency.record(700 + (++clock % 1000));
+        return latency.p50() + latency.p95();
+    }
+
+    @Benchmark
+    public String sceneCacheNearMiss() {
+        // Differs from every stored fingerprint by more than the match distance
+        return cache.get(++clock * 0x5851F42D4C957F2DL, prompt, 1);
+    }
+
+    @Benchmark
+    public String sceneCacheNearHit() {
+        // Two bits away from an entry
+        return cache.get((0x9E3779B97F4A7C15L * 5) ^ 0x11L, prompt, 1);
+    }
+
+    @Benchmark
+    public boolean breakerAllowAndRecord() {
+        clock++;
+        boolean allowed = breaker.allowRequest(clock);
+        breaker.onSuccess();
+        return allowed;
+    }
+
+    @Benchmark
+    public String buildQueryPrompt() {
+        return PromptBuilder.queryPrompt("What is in front of me?");
+    }
+
+    @Benchmark
+    public void splitStreamedAnswer(Blackhole blackhole) {
+        SentenceSplitter splitter = new SentenceSplitter();
+        for (String chunk : chunks) {
+            List<String> sentences = splitter.feed(chunk);
+            blackhole.consume(sentences);
+        }
+        blackhole.consume(splitter.flush());
+    }
+}
@@ -0,0 +1,26 @@
+package com.usbcamera.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodes frames at the quality a JpegQualityPolicy currently asks for and feeds the
+ * resulting size back to it. Compresses into one reused stream, so only the final
+ * exact-size copy is allocated. Not thread-safe; use one instance per encoding thread.
+ */
+public class AdaptiveJpegEncoder<I> {
+    private final FrameEncoder<I> encoder;
+    private final ByteArrayOutputStream stream;
+
+    public AdaptiveJpegEncoder(FrameEncoder<I> encoder, int initialCapacity) {
+        this.encoder = encoder;
+        this.stream = new ByteArrayOutputStream(initialCapacity);
+    }
+
+    public byte[] encode(I image, JpegQualityPolicy policy) throws IOException {
+        stream.reset();
+        encoder.encode(image, policy.getQuality(), stream);
+        policy.onEncoded(stream.size());
+        return stream.toByteArray();
+    }
+}
@@ -0,0 +1,88 @@
+package com.usbcamera.core;
+
+/**
+ * Chooses the delay before the next Active Mode sample.
+ *
+ * - Motion sets the base: a still scene drifts toward the max interval, fast movement toward the min.
+ * - Latency sets a floor: sampling faster than the median response only replaces waiting frames.
+ * - Budget stretches the interval once less than half of the request budget remains.
+ */
+public class CadenceController {
+    private static final float UNKNOWN_MOTION = 0.5f;
+    private static final float BUDGET_COMFORT = 0.5f;
+    /** Fastest allowed sampling; each sample captures and converts a frame on the UI thread */
+    public static final long MIN_INTERVAL_FLOOR_MS = 250;
+
+    private volatile long minIntervalMs;
+    private volatile long maxIntervalMs;
+    private final long budgetIntervalMs;
+
+    private volatile long lastIntervalMs;
+
+    /**
+     * @param requestsPerMinute sustained request budget, e.g. 15 on the free tier less what is kept for queries
+     */
+    public CadenceController(long minIntervalMs, long maxIntervalMs, int requestsPerMinute) {
+        this.budgetIntervalMs = 60000L / Math.max(1, requestsPerMinute);
+        setBounds(minIntervalMs, maxIntervalMs);
+        this.lastIntervalMs = this.maxIntervalMs;
+    }
+
+    /**
+     * Applies the bounds after clampBounds(), so a bad saved setting cannot make sampling spin
+     */
+    public void setBounds(long minIntervalMs, long maxIntervalMs) {
+        long[] bounds = clampBounds(minIntervalMs, maxIntervalMs);
+        this.minIntervalMs = bounds[0];
+        this.maxIntervalMs = bounds[1];
+    }
+
+    /**
+     * {min, max} with min at least MIN_INTERVAL_FLOOR_MS and max at least min
+     */
+    public static long[] clampBounds(long minIntervalMs, long maxIntervalMs) {
+        long min = Math.max(MIN_INTERVAL_FLOOR_MS, Math.min(minIntervalMs, maxIntervalMs));
+        return new long[]{min, Math.max(min, maxIntervalMs)};
+    }
+
+    /**
+     * @param p50Ms median recent latency, or -1 if unknown
+     * @param p95Ms 95th percentile recent latency, or -1 if unknown
+     * @param motion motion score in [0, 1], or negative if unknown
+     * @param remainingBudget fraction of the request budget still unused, in [0, 1]
+     */
+    public long nextIntervalMs(long p50Ms, long p95Ms, float motion, float remainingBudget) {
+        float m = motion < 0 ? UNKNOWN_MOTION : Math.min(1f, motion);
+        long interval = Math.round(maxIntervalMs - m * (maxIntervalMs - minIntervalMs));
+
+        if (p50Ms > 0) {
+            interval = Math.max(interval, p50Ms);
+        }
+        if (p95Ms > 0 && m < UNKNOWN_MOTION) {
+            // In a calm scene there is no hurry; leave room for slow responses
+            interval = Math.max(interval, p95Ms);
+        }
+
+        if (remainingBudget < BUDGET_COMFORT) {
+            float drained = (BUDGET_COMFORT - Math.max(0f, remainingBudget)) / BUDGET_COMFORT;
+            long budgetFloor = Math.round(budgetIntervalMs * (1f + 2f * drained));
+            interval = Math.max(interval, budgetFloor);
+        }
+
+        interval = Math.max(minIntervalMs, Math.min(maxIntervalMs, interval));
+        lastIntervalMs = interval;
+        return interval;
+    }
+
+    public long getLastIntervalMs() {
+        return lastIntervalMs;
+    }
+
+    public long getMinIntervalMs() {
+        return minIntervalMs;
+    }
+
+    public long getMaxIntervalMs() {
+        return maxIntervalMs;
+    }
+}
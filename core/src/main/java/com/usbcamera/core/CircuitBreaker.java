@@ -0,0 +1,134 @@
+package com.usbcamera.core;
+
+/**
+ * Classic three-state circuit breaker for model overload.
+ *
+ * CLOSED: requests flow; consecutive overload failures are counted.
+ * OPEN: after failureThreshold failures, optional traffic (Active Mode) is held back for openMs.
+ * HALF_OPEN: one probe is let through; success closes the circuit, failure reopens it.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public interface Listener {
+        void onStateChanged(State from, State to);
+    }
+
+    private final int failureThreshold;
+    private final long openMs;
+    private Listener listener;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAtMs = 0;
+    private boolean probeInFlight = false;
+
+    private long transitions = 0;
+    private long rejected = 0;
+
+    public CircuitBreaker(int failureThreshold, long openMs) {
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+    }
+
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Whether an optional request may go out now. In HALF_OPEN only a single probe is allowed.
+     */
+    public boolean allowRequest(long nowMs) {
+        Listener notify = null;
+        State from = null;
+        boolean allowed;
+        synchronized (this) {
+            if (state == State.OPEN && nowMs - openedAtMs >= openMs) {
+                from = state;
+                moveTo(State.HALF_OPEN);
+                notify = listener;
+            }
+            if (state == State.CLOSED) {
+                allowed = true;
+            } else if (state == State.HALF_OPEN && !probeInFlight) {
+                probeInFlight = true;
+                allowed = true;
+            } else {
+                rejected++;
+                allowed = false;
+            }
+        }
+        if (notify != null) notify.onStateChanged(from, State.HALF_OPEN);
+        return allowed;
+    }
+
+    public void onSuccess() {
+        transition(true, 0);
+    }
+
+    /**
+     * Records an overload-type failure (503 / 429 / timeout). Other errors should not be reported.
+     */
+    public void onFailure(long nowMs) {
+        transition(false, nowMs);
+    }
+
+    /**
+     * Records an outcome that says nothing about overload (e.g. a bad request), only freeing the probe slot
+     */
+    public synchronized void onNeutralOutcome() {
+        probeInFlight = false;
+    }
+
+    private void transition(boolean success, long nowMs) {
+        Listener notify = null;
+        State from;
+        State to;
+        synchronized (this) {
+            from = state;
+            probeInFlight = false;
+            if (success) {
+                consecutiveFailures = 0;
+                if (state != State.CLOSED) moveTo(State.CLOSED);
+            } else {
+                consecutiveFailures++;
+                if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                    openedAtMs = nowMs;
+                    moveTo(State.OPEN);
+                }
+            }
+            to = state;
+            if (from != to) notify = listener;
+        }
+        if (notify != null) notify.onStateChanged(from, to);
+    }
+
+    private void moveTo(State next) {
+        state = next;
+        transitions++;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * True while optional traffic is being held back (OPEN and the cool-down has not elapsed)
+     */
+    public synchronized boolean isOpen(long nowMs) {
+        return state == State.OPEN && nowMs - openedAtMs < openMs;
+    }
+
+    public synchronized long getTransitions() {
+        return transitions;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
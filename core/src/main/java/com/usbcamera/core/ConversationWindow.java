@@ -0,0 +1,117 @@
+package com.usbcamera.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Recent question and answer turns of a spoken conversation, so a follow-up ("what colour is
+ * it?") can refer back, while what each request sends stays bounded.
+ *
+ * Only the newest question goes out with an image; an earlier frame is kept as what was said
+ * about it. Turns are dropped oldest first once their estimated tokens exceed maxTokens or there
+ * are more than maxTurns, and the conversation is forgotten after idleResetMs without a new
+ * turn, since by then the camera is usually looking at something else.
+ */
+public class ConversationWindow {
+    private static final int CHARS_PER_TOKEN = 4; // rough average for English text
+    private static final int TURN_OVERHEAD_TOKENS = 8; // role markers and the question's framing
+
+    public static final class Turn {
+        public final String question;
+        public final String answer;
+        final int tokens;
+
+        Turn(String question, String answer) {
+            this.question = question;
+            this.answer = answer;
+            this.tokens = estimateTokens(question) + estimateTokens(answer) + TURN_OVERHEAD_TOKENS;
+        }
+    }
+
+    private final int maxTokens;
+    private final int maxTurns;
+    private final long idleResetMs;
+    private final ArrayDeque<Turn> turns = new ArrayDeque<>();
+    private int tokens = 0;
+    private long lastTurnMs = -1;
+
+    private long dropped = 0;
+    private long resets = 0;
+    private long measuredRequests = 0;
+    private long promptTokensTotal = 0;
+    private int firstPromptTokens = -1;
+    private int lastPromptTokens = -1;
+    private int maxPromptTokens = 0;
+
+    public ConversationWindow(int maxTokens, int maxTurns, long idleResetMs) {
+        this.maxTokens = maxTokens;
+        this.maxTurns = maxTurns;
+        this.idleResetMs = idleResetMs;
+    }
+
+    public static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Turns to send before a new question, oldest first; empty once the conversation has gone idle
+     */
+    public synchronized List<Turn> history(long nowMs) {
+        expire(nowMs);
+        return new ArrayList<>(turns);
+    }
+
+    /**
+     * Records an answer the user actually got
+     */
+    public synchronized void add(String question, String answer, long nowMs) {
+        if (question == null || question.trim().isEmpty() || answer == null || answer.trim().isEmpty()) return;
+        expire(nowMs);
+        Turn turn = new Turn(question.trim(), answer.trim());
+        turns.addLast(turn);
+        tokens += turn.tokens;
+        lastTurnMs = nowMs;
+        while (!turns.isEmpty() && (tokens > maxTokens || turns.size() > maxTurns)) {
+            tokens -= turns.removeFirst().tokens;
+            dropped++;
+        }
+    }
+
+    private void expire(long nowMs) {
+        if (!turns.isEmpty() && nowMs - lastTurnMs > idleResetMs) {
+            clear();
+            resets++;
+        }
+    }
+
+    public synchronized void clear() {
+        turns.clear();
+        tokens = 0;
+    }
+
+    public synchronized int size() {
+        return turns.size();
+    }
+
+    /**
+     * Input tokens the server counted for a request made with this window, to check they stay flat
+     */
+    public synchronized void recordPromptTokens(int promptTokens) {
+        if (promptTokens <= 0) return;
+        if (firstPromptTokens < 0) firstPromptTokens = promptTokens;
+        lastPromptTokens = promptTokens;
+        maxPromptTokens = Math.max(maxPromptTokens, promptTokens);
+        promptTokensTotal += promptTokens;
+        measuredRequests++;
+    }
+
+    public synchronized String stats() {
+        long average = measuredRequests > 0 ? promptTokensTotal / measuredRequests : 0;
+        return String.format(Locale.US,
+                "conversation: %d turns (~%d tokens of %d), dropped %d, resets %d; input tokens first %d, last %d, avg %d, max %d (n=%d)",
+                turns.size(), tokens, maxTokens, dropped, resets, firstPromptTokens, lastPromptTokens, average,
+                maxPromptTokens, measuredRequests);
+    }
+}
@@ -0,0 +1,49 @@
+package com.usbcamera.core;
+
+import java.util.Locale;
+
+/**
+ * One object found by the on-device detector. Box coordinates are normalized to [0, 1]
+ * with the origin at the top-left of the frame.
+ */
+public final class Detection {
+    public final String label;
+    public final float score;
+    public final float left;
+    public final float top;
+    public final float right;
+    public final float bottom;
+
+    public Detection(String label, float score, float left, float top, float right, float bottom) {
+        this.label = label;
+        this.score = score;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public float centerX() {
+        return (left + right) / 2f;
+    }
+
+    public float area() {
+        return Math.max(0f, right - left) * Math.max(0f, bottom - top);
+    }
+
+    /**
+     * Intersection over union with another box
+     */
+    public float iou(Detection other) {
+        float w = Math.min(right, other.right) - Math.max(left, other.left);
+        float h = Math.min(bottom, other.bottom) - Math.max(top, other.top);
+        if (w <= 0 || h <= 0) return 0f;
+        float intersection = w * h;
+        return intersection / (area() + other.area() - intersection);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s %.2f [%.2f,%.2f,%.2f,%.2f]", label, score, left, top, right, bottom);
+    }
+}
@@ -0,0 +1,214 @@
+package com.usbcamera.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Routes requests across several model endpoints (API key and model pairs), so one key's rate
+ * limit or overload does not cap the device.
+ *
+ * Each endpoint keeps a latency EWMA, an error-rate EWMA and the requests it was sent in the last
+ * minute. choose() prefers endpoints in service and under their per-minute limit, and among
+ * those the lowest expected cost: latency, inflated by error rate and by how much of the minute's
+ * capacity is used. An endpoint that fails ejectAfterFailures times in a row is taken out of
+ * service for a while, twice as long on each ejection; when that time is up takeDueProbes() hands
+ * it out for one minimal request, and a successful probe puts it back.
+ */
+public class EndpointPool {
+    private static final double ALPHA = 0.2;
+    private static final long WINDOW_MS = 60000;
+    private static final double ERROR_COST = 4; // a 50% error rate triples an endpoint's cost
+
+    public enum State {
+        IN_SERVICE,
+        /** Taken out after repeated failures; only used if nothing else is left */
+        EJECTED,
+        /** Ejection time is up and a probe is in flight */
+        PROBING
+    }
+
+    private static final class Endpoint {
+        final String name;
+        final int requestsPerMinute;
+        final ArrayDeque<Long> sentTimes = new ArrayDeque<>();
+        double latencyEwmaMs = -1;
+        double errorRate = 0;
+        int consecutiveFailures = 0;
+        State state = State.IN_SERVICE;
+        long ejectMs;
+        long ejectedUntilMs = 0;
+        long sent = 0;
+        long failures = 0;
+        long ejections = 0;
+
+        Endpoint(String name, int requestsPerMinute, long ejectMs) {
+            this.name = name;
+            this.requestsPerMinute = Math.max(1, requestsPerMinute);
+            this.ejectMs = ejectMs;
+        }
+
+        int sentInWindow(long nowMs) {
+            while (!sentTimes.isEmpty() && nowMs - sentTimes.peekFirst() > WINDOW_MS) {
+                sentTimes.pollFirst();
+            }
+            return sentTimes.size();
+        }
+
+        /**
+         * Unknown latency costs nothing, so a new endpoint gets tried early
+         */
+        double cost(long nowMs) {
+            double latency = Math.max(0, latencyEwmaMs);
+            double load = sentInWindow(nowMs) / (double) requestsPerMinute;
+            return latency * (1 + ERROR_COST * errorRate) * (1 + load);
+        }
+    }
+
+    private final int ejectAfterFailures;
+    private final long baseEjectMs;
+    private final long maxEjectMs;
+    private final List<Endpoint> endpoints = new ArrayList<>();
+
+    public EndpointPool(int ejectAfterFailures, long baseEjectMs, long maxEjectMs) {
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.baseEjectMs = baseEjectMs;
+        this.maxEjectMs = maxEjectMs;
+    }
+
+    /**
+     * Adds an endpoint and returns its index
+     */
+    public synchronized int add(String name, int requestsPerMinute) {
+        endpoints.add(new Endpoint(name, requestsPerMinute, baseEjectMs));
+        return endpoints.size() - 1;
+    }
+
+    public synchronized int size() {
+        return endpoints.size();
+    }
+
+    public synchronized String getName(int index) {
+        return endpoints.get(index).name;
+    }
+
+    public synchronized State getState(int index) {
+        return endpoints.get(index).state;
+    }
+
+    /**
+     * Picks the endpoint for the next request, avoiding the given index (e.g. the one a retry or
+     * hedge is moving away from; -1 for none) unless it is the only choice. Falls back to an
+     * endpoint over its limit, then to the ejected endpoint due back soonest.
+     */
+    public synchronized int choose(long nowMs, int avoid) {
+        int best = pick(nowMs, avoid, true);
+        if (best < 0) best = pick(nowMs, avoid, false);
+        if (best < 0 && avoid >= 0) best = pick(nowMs, -1, false);
+        if (best >= 0) return best;
+        for (int i = 0; i < endpoints.size(); i++) {
+            if (best < 0 || endpoints.get(i).ejectedUntilMs < endpoints.get(best).ejectedUntilMs) best = i;
+        }
+        return best;
+    }
+
+    private int pick(long nowMs, int avoid, boolean needCapacity) {
+        int best = -1;
+        double bestCost = 0;
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get(i);
+            if (i == avoid || endpoint.state != State.IN_SERVICE) continue;
+            if (needCapacity && endpoint.sentInWindow(nowMs) >= endpoint.requestsPerMinute) continue;
+            double cost = endpoint.cost(nowMs);
+            if (best < 0 || cost < bestCost) {
+                best = i;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A request (or retry) is going to the endpoint
+     */
+    public synchronized void onSent(int index, long nowMs) {
+        Endpoint endpoint = endpoints.get(index);
+        endpoint.sentInWindow(nowMs);
+        endpoint.sentTimes.addLast(nowMs);
+        endpoint.sent++;
+    }
+
+    public synchronized void onSuccess(int index, long latencyMs) {
+        Endpoint endpoint = endpoints.get(index);
+        endpoint.latencyEwmaMs = endpoint.latencyEwmaMs < 0 ? latencyMs
+                : (1 - ALPHA) * endpoint.latencyEwmaMs + ALPHA * latencyMs;
+        endpoint.errorRate *= 1 - ALPHA;
+        endpoint.consecutiveFailures = 0;
+        endpoint.ejectMs = baseEjectMs;
+    }
+
+    /**
+     * The endpoint failed in a way that says something about it (overload, rate limit, timeout,
+     * server error); a rejected prompt is not its fault and should not be reported here
+     */
+    public synchronized void onFailure(int index, long nowMs) {
+        Endpoint endpoint = endpoints.get(index);
+        endpoint.errorRate = (1 - ALPHA) * endpoint.errorRate + ALPHA;
+        endpoint.failures++;
+        endpoint.consecutiveFailures++;
+        if (endpoint.state == State.IN_SERVICE && endpoint.consecutiveFailures >= ejectAfterFailures) {
+            eject(endpoint, nowMs);
+        }
+    }
+
+    private void eject(Endpoint endpoint, long nowMs) {
+        endpoint.state = State.EJECTED;
+        endpoint.ejectedUntilMs = nowMs + endpoint.ejectMs;
+        endpoint.ejectMs = Math.min(maxEjectMs, endpoint.ejectMs * 2);
+        endpoint.ejections++;
+    }
+
+    /**
+     * Ejected endpoints whose time is up; each is marked PROBING and must be reported back
+     * through onProbeResult()
+     */
+    public synchronized List<Integer> takeDueProbes(long nowMs) {
+        List<Integer> due = new ArrayList<>();
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get(i);
+            if (endpoint.state == State.EJECTED && nowMs >= endpoint.ejectedUntilMs) {
+                endpoint.state = State.PROBING;
+                due.add(i);
+            }
+        }
+        return due;
+    }
+
+    public synchronized void onProbeResult(int index, boolean succeeded, long latencyMs, long nowMs) {
+        Endpoint endpoint = endpoints.get(index);
+        if (endpoint.state != State.PROBING) return;
+        if (!succeeded) {
+            eject(endpoint, nowMs);
+            return;
+        }
+        endpoint.state = State.IN_SERVICE;
+        endpoint.consecutiveFailures = 0;
+        // Ejecting it again takes ejectAfterFailures failures in a row, and it stays out twice as
+        // long until a request succeeds; the halved error rate only makes it cheaper to route to
+        endpoint.errorRate /= 2;
+        endpoint.latencyEwmaMs = Math.max(endpoint.latencyEwmaMs, latencyMs);
+    }
+
+    public synchronized String stats() {
+        long nowMs = System.currentTimeMillis();
+        StringBuilder stats = new StringBuilder("endpoints:");
+        for (Endpoint endpoint : endpoints) {
+            stats.append(String.format(Locale.US, " [%s %s, latency %dms, errors %.0f%%, %d/%d per min, sent %d, failed %d, ejected %d]",
+                    endpoint.name, endpoint.state, Math.round(endpoint.latencyEwmaMs), endpoint.errorRate * 100,
+                    endpoint.sentInWindow(nowMs), endpoint.requestsPerMinute, endpoint.sent, endpoint.failures,
+                    endpoint.ejections));
+        }
+        return stats.toString();
+    }
+}
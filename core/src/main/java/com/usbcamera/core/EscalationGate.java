@@ -0,0 +1,155 @@
+package com.usbcamera.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides, from on-device detections, whether an Active Mode frame is worth a cloud call.
+ *
+ * A frame escalates when an object appears that was not seen recently, or when a known object
+ * moves into the walking path (centre corridor, lower part of the frame). Frames where nothing
+ * changed are answered locally as "clear". Because the detector only knows its own label set,
+ * a frame is still escalated after maxQuietMs without one, so the cloud model can catch
+ * obstacles such as steps or poles that the detector cannot see.
+ */
+public class EscalationGate {
+
+    public static final class Decision {
+        public final boolean escalate;
+        public final String reason;
+        /** Short phrase for an object newly in the path, usable when the cloud is unreachable; null if none */
+        public final String localAlert;
+
+        Decision(boolean escalate, String reason, String localAlert) {
+            this.escalate = escalate;
+            this.reason = reason;
+            this.localAlert = localAlert;
+        }
+    }
+
+    private static final class Tracked {
+        Detection box;
+        long lastSeenMs;
+        boolean inPath;
+
+        Tracked(Detection box, long lastSeenMs, boolean inPath) {
+            this.box = box;
+            this.lastSeenMs = lastSeenMs;
+            this.inPath = inPath;
+        }
+    }
+
+    private static final float SAME_OBJECT_IOU = 0.3f;
+    private static final float CORRIDOR_HALF_WIDTH = 0.2f; // path = centre 40% of the frame
+    private static final float NEAR_BOTTOM = 0.6f;         // box reaching below this is close
+    private static final float NEAR_AREA = 0.15f;          // or covering this much of the frame
+
+    private final float minScore;
+    private final long forgetAfterMs;
+    private final long maxQuietMs;
+    private final List<Tracked> tracked = new ArrayList<>();
+    private long lastEscalationMs = Long.MIN_VALUE / 2;
+
+    private long evaluated = 0;
+    private long escalated = 0;
+    private long localAlerts = 0;
+
+    /**
+     * @param forgetAfterMs an object unseen for this long counts as new when it reappears
+     * @param maxQuietMs longest time without an escalation before one is forced
+     */
+    public EscalationGate(float minScore, long forgetAfterMs, long maxQuietMs) {
+        this.minScore = minScore;
+        this.forgetAfterMs = forgetAfterMs;
+        this.maxQuietMs = maxQuietMs;
+    }
+
+    public synchronized Decision evaluate(List<Detection> detections, long nowMs) {
+        evaluated++;
+        Iterator<Tracked> it = tracked.iterator();
+        while (it.hasNext()) {
+            if (nowMs - it.next().lastSeenMs > forgetAfterMs) it.remove();
+        }
+
+        String reason = null;
+        Detection alertBox = null;
+        for (Detection d : detections) {
+            if (d.score < minScore) continue;
+            boolean inPath = isInPath(d);
+            Tracked match = findMatch(d);
+            boolean enteredPath;
+            if (match == null) {
+                tracked.add(new Tracked(d, nowMs, inPath));
+                if (reason == null) reason = "new " + d.label;
+                enteredPath = inPath;
+            } else {
+                enteredPath = inPath && !match.inPath;
+                match.box = d;
+                match.lastSeenMs = nowMs;
+                match.inPath = inPath;
+                if (enteredPath && reason == null) reason = d.label + " entered path";
+            }
+            if (enteredPath && (alertBox == null || d.area() > alertBox.area())) {
+                alertBox = d;
+            }
+        }
+
+        if (reason == null && nowMs - lastEscalationMs >= maxQuietMs) {
+            reason = "periodic check";
+        }
+        boolean escalate = reason != null;
+        if (escalate) {
+            escalated++;
+            lastEscalationMs = nowMs;
+        }
+        String alert = alertBox != null ? describe(alertBox) : null;
+        if (alert != null) localAlerts++;
+        return new Decision(escalate, escalate ? reason : "no change", alert);
+    }
+
+    private Tracked findMatch(Detection d) {
+        Tracked best = null;
+        float bestIou = SAME_OBJECT_IOU;
+        for (Tracked t : tracked) {
+            if (!t.box.label.equals(d.label)) continue;
+            float iou = t.box.iou(d);
+            if (iou >= bestIou) {
+                best = t;
+                bestIou = iou;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isInPath(Detection d) {
+        boolean overlapsCorridor = d.right > 0.5f - CORRIDOR_HALF_WIDTH && d.left < 0.5f + CORRIDOR_HALF_WIDTH;
+        boolean near = d.bottom >= NEAR_BOTTOM || d.area() >= NEAR_AREA;
+        return overlapsCorridor && near;
+    }
+
+    private static String describe(Detection d) {
+        float x = d.centerX();
+        String where = x < 0.5f - CORRIDOR_HALF_WIDTH / 2 ? " ahead, on your left"
+                : x > 0.5f + CORRIDOR_HALF_WIDTH / 2 ? " ahead, on your right" : " ahead";
+        return d.label.substring(0, 1).toUpperCase(Locale.US) + d.label.substring(1) + where;
+    }
+
+    public synchronized void reset() {
+        tracked.clear();
+        lastEscalationMs = Long.MIN_VALUE / 2;
+    }
+
+    /**
+     * Share of evaluated frames that went to the cloud
+     */
+    public synchronized float getEscalationRate() {
+        return evaluated == 0 ? 0f : escalated / (float) evaluated;
+    }
+
+    public synchronized String stats() {
+        return String.format(Locale.US, "gate escalated %d/%d (%.0f%%), local alerts %d",
+                escalated, evaluated, getEscalationRate() * 100, localAlerts);
+    }
+}
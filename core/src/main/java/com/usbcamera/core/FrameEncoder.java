@@ -0,0 +1,17 @@
+package com.usbcamera.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Platform image encoder: Bitmap.compress on Android, ImageIO on a plain JVM
+ *
+ * @param <I> the platform's image type
+ */
+public interface FrameEncoder<I> {
+
+    /**
+     * Writes image to out as a JPEG at the given quality (0-100)
+     */
+    void encode(I image, int quality, OutputStream out) throws IOException;
+}
@@ -0,0 +1,87 @@
+package com.usbcamera.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Short history of raw preview frames sampled at a fixed minimum spacing, for burst requests
+ * that show the model how a scene changed over the last second or two. Unlike FrameRing,
+ * which keeps only the newest few frames at camera rate, this keeps one frame per spacing
+ * interval so a handful of slots covers a useful time span.
+ */
+public class FrameHistory {
+
+    public interface FrameVisitor {
+        /** Called with a read-only view of one stored frame; the buffer is only valid during the call */
+        void visit(ByteBuffer nv21, int width, int height, long timestampMs);
+    }
+
+    private final ByteBuffer[] slots;
+    private final int[] widths;
+    private final int[] heights;
+    private final long[] timestamps;
+    private final long minSpacingMs;
+
+    private int count = 0;
+    private int next = 0;
+    private long lastStoredMs = Long.MIN_VALUE / 2;
+
+    public FrameHistory(int slotCount, int frameBytes, long minSpacingMs) {
+        slots = new ByteBuffer[slotCount];
+        widths = new int[slotCount];
+        heights = new int[slotCount];
+        timestamps = new long[slotCount];
+        this.minSpacingMs = minSpacingMs;
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = ByteBuffer.allocateDirect(frameBytes);
+        }
+    }
+
+    /**
+     * Stores the frame if at least minSpacingMs has passed since the last stored one
+     */
+    public synchronized boolean offer(byte[] data, int length, int width, int height, long timestampMs) {
+        if (timestampMs - lastStoredMs < minSpacingMs) return false;
+
+        ByteBuffer buffer = slots[next];
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocateDirect(length);
+            slots[next] = buffer;
+        }
+        buffer.clear();
+        buffer.put(data, 0, length);
+        buffer.flip();
+        widths[next] = width;
+        heights[next] = height;
+        timestamps[next] = timestampMs;
+
+        next = (next + 1) % slots.length;
+        if (count < slots.length) count++;
+        lastStoredMs = timestampMs;
+        return true;
+    }
+
+    /**
+     * Visits up to maxFrames of the newest frames taken within maxAgeMs of nowMs, oldest first.
+     * Writers are held off while visiting, so keep the visitor short.
+     *
+     * @return number of frames visited
+     */
+    public synchronized int visitLatest(int maxFrames, long nowMs, long maxAgeMs, FrameVisitor visitor) {
+        int n = 0;
+        while (n < Math.min(maxFrames, count)) {
+            int slot = (next - 1 - n + slots.length) % slots.length;
+            if (nowMs - timestamps[slot] > maxAgeMs) break;
+            n++;
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            int slot = (next - 1 - i + slots.length) % slots.length;
+            visitor.visit(slots[slot].duplicate(), widths[slot], heights[slot], timestamps[slot]);
+        }
+        return n;
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        lastStoredMs = Long.MIN_VALUE / 2;
+    }
+}
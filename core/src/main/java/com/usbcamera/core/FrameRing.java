@@ -0,0 +1,119 @@
+package com.usbcamera.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed ring of preallocated direct buffers holding the most recent raw preview frames.
+ * The camera thread writes every frame into the next free slot; readers lock the newest
+ * slot while they convert it, and the writer skips locked slots instead of waiting.
+ */
+public class FrameRing {
+    private final ByteBuffer[] slots;
+    private final int[] widths;
+    private final int[] heights;
+    private final long[] timestamps;
+    private final boolean[] locked;
+
+    private int newest = -1;
+    private int writeIndex = 0;
+    private long framesWritten = 0;
+    private long framesDropped = 0;
+
+    public FrameRing(int slotCount, int frameBytes) {
+        slots = new ByteBuffer[slotCount];
+        widths = new int[slotCount];
+        heights = new int[slotCount];
+        timestamps = new long[slotCount];
+        locked = new boolean[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = ByteBuffer.allocateDirect(frameBytes);
+        }
+    }
+
+    /**
+     * Copies a frame into the ring. Returns false if every slot was locked by readers.
+     */
+    public synchronized boolean write(byte[] data, int length, int width, int height, long timestampMs) {
+        int slot = -1;
+        for (int i = 0; i < slots.length; i++) {
+            int candidate = (writeIndex + i) % slots.length;
+            if (!locked[candidate]) {
+                slot = candidate;
+                break;
+            }
+        }
+        if (slot < 0) {
+            framesDropped++;
+            return false;
+        }
+
+        ByteBuffer buffer = slots[slot];
+        if (buffer.capacity() < length) {
+            // Preview size changed; grow once and keep the new size from then on
+            buffer = ByteBuffer.allocateDirect(length);
+            slots[slot] = buffer;
+        }
+        buffer.clear();
+        buffer.put(data, 0, length);
+        buffer.flip();
+
+        widths[slot] = width;
+        heights[slot] = height;
+        timestamps[slot] = timestampMs;
+        newest = slot;
+        writeIndex = (slot + 1) % slots.length;
+        framesWritten++;
+        return true;
+    }
+
+    /**
+     * Locks and returns the newest slot index, or -1 if no frame has arrived yet.
+     * Callers must pass the index back to {@link #release(int)} when done.
+     */
+    public synchronized int acquireLatest() {
+        if (newest < 0) return -1;
+        locked[newest] = true;
+        return newest;
+    }
+
+    public synchronized void release(int slot) {
+        if (slot >= 0) {
+            locked[slot] = false;
+        }
+    }
+
+    /**
+     * Read-only view of a locked slot
+     */
+    public ByteBuffer buffer(int slot) {
+        return slots[slot].duplicate();
+    }
+
+    public int width(int slot) {
+        return widths[slot];
+    }
+
+    public int height(int slot) {
+        return heights[slot];
+    }
+
+    public long timestamp(int slot) {
+        return timestamps[slot];
+    }
+
+    public synchronized boolean hasFrame() {
+        return newest >= 0;
+    }
+
+    public synchronized void reset() {
+        newest = -1;
+    }
+
+    public synchronized long getFramesWritten() {
+        return framesWritten;
+    }
+
+    public synchronized long getFramesDropped() {
+        return framesDropped;
+    }
+}
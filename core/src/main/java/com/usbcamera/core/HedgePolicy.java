@@ -0,0 +1,139 @@
+package com.usbcamera.core;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * When to send a duplicate ("hedged") request for one request type.
+ *
+ * The hedge fires once the primary has gone longer than the given percentile of recent
+ * first-byte latency without answering. Hedges are capped at a fraction of all requests,
+ * which bounds the extra quota spent. A small random holdout is never hedged, so the tail
+ * with hedging can be compared against a live baseline instead of a guess.
+ */
+public class HedgePolicy {
+    /** startRequest() result: do not hedge (disabled or still warming up) */
+    public static final long NO_HEDGE = -1;
+    /** startRequest() result: do not hedge, and count the request in the baseline */
+    public static final long HOLDOUT = -2;
+    private static final int MIN_SAMPLES = 8;
+
+    private final String name;
+    private final int percentile;
+    private final long minDelayMs;
+    private final long maxDelayMs;
+    private final float maxHedgeRatio;
+    private final float holdoutFraction;
+    private final Random random = new Random();
+    private volatile boolean enabled = true;
+
+    // Primary first-byte latency, used to pick the hedge delay; see onFirstByte() for hedge wins
+    private final LatencyTracker primaryLatency = new LatencyTracker(64);
+    // Time to first byte as the user experienced it, split by whether a hedge was armed
+    private final LatencyTracker armedLatency = new LatencyTracker(128);
+    private final LatencyTracker holdoutLatency = new LatencyTracker(128);
+
+    private long requests = 0;
+    private long hedgesSent = 0;
+    private long hedgeWins = 0;
+    private long budgetDenied = 0;
+
+    /**
+     * @param percentile latency percentile after which the hedge is sent, e.g. 90
+     * @param maxHedgeRatio upper bound on hedges / requests, i.e. the extra cost
+     * @param holdoutFraction share of requests that are never hedged, kept as a baseline
+     */
+    public HedgePolicy(String name, int percentile, long minDelayMs, long maxDelayMs,
+                       float maxHedgeRatio, float holdoutFraction) {
+        this.name = name;
+        this.percentile = percentile;
+        this.minDelayMs = minDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.maxHedgeRatio = maxHedgeRatio;
+        this.holdoutFraction = holdoutFraction;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registers a new request and returns how long to wait before hedging it.
+     * A negative result (NO_HEDGE or HOLDOUT) means the request is not hedged.
+     */
+    public synchronized long startRequest() {
+        requests++;
+        if (!enabled || primaryLatency.getCount() < MIN_SAMPLES) return NO_HEDGE;
+        if (random.nextFloat() < holdoutFraction) return HOLDOUT;
+        long delay = primaryLatency.percentile(percentile);
+        return Math.max(minDelayMs, Math.min(maxDelayMs, delay));
+    }
+
+    /**
+     * Claims a hedge from the budget; false if sending it would exceed maxHedgeRatio
+     */
+    public synchronized boolean tryStartHedge() {
+        if (hedgesSent + 1 > maxHedgeRatio * requests) {
+            budgetDenied++;
+            return false;
+        }
+        hedgesSent++;
+        return true;
+    }
+
+    /**
+     * Records the winner of a request started with startRequest()
+     *
+     * @param delayMs the value startRequest() returned for this request
+     * @param firstByteMs time from the primary's start to the first byte of the winning response; when the
+     *                    hedge won, a lower bound on the primary's latency, recorded as such
+     */
+    public synchronized void onFirstByte(long delayMs, long firstByteMs, boolean hedgeWon) {
+        if (hedgeWon) {
+            hedgeWins++;
+            // The primary is cancelled, but it had already gone firstByteMs without answering; leaving
+            // it out would sample only fast primaries and pull the hedge delay down over time
+        }
+        primaryLatency.record(firstByteMs);
+        if (delayMs == HOLDOUT) {
+            holdoutLatency.record(firstByteMs);
+        } else if (delayMs >= 0) {
+            armedLatency.record(firstByteMs);
+        }
+    }
+
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    public synchronized long getHedgesSent() {
+        return hedgesSent;
+    }
+
+    public synchronized long getHedgeWins() {
+        return hedgeWins;
+    }
+
+    /**
+     * Extra requests sent, as a fraction of all requests
+     */
+    public synchronized float getExtraCost() {
+        return requests == 0 ? 0f : hedgesSent / (float) requests;
+    }
+
+    /**
+     * Tail of requests that could be hedged against the unhedged baseline, plus what it cost
+     */
+    public synchronized String stats() {
+        return String.format(Locale.US,
+                "hedge[%s] hedged %d/%d (+%.1f%% calls), hedge won %d, budget denied %d; "
+                        + "p95 %dms / p99 %dms hedged vs %dms / %dms unhedged",
+                name, hedgesSent, requests, getExtraCost() * 100, hedgeWins, budgetDenied,
+                armedLatency.percentile(95), armedLatency.percentile(99),
+                holdoutLatency.percentile(95), holdoutLatency.percentile(99));
+    }
+}
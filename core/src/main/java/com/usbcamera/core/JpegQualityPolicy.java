@@ -0,0 +1,84 @@
+package com.usbcamera.core;
+
+/**
+ * Picks JPEG quality and upload resolution so each encoded frame lands near a byte budget.
+ * Over budget, quality drops first and resolution only once quality hits its floor;
+ * with headroom, resolution is restored first since detail matters more than artifacts.
+ */
+public class JpegQualityPolicy {
+    private static final float DIMENSION_STEP = 0.85f;
+    private static final float OVER_BUDGET = 0.9f;  // encoded size above budget / 0.9
+    private static final float UNDER_BUDGET = 1.3f; // budget at least 1.3x the encoded size
+
+    private final int minQuality;
+    private final int maxQuality;
+    private final int minDimension;
+    private final int maxDimension;
+
+    private int targetBytes;
+    private int quality;
+    private int dimension;
+    private int lastBytes = 0;
+
+    public JpegQualityPolicy(int targetBytes, int minQuality, int maxQuality, int minDimension, int maxDimension) {
+        this.targetBytes = targetBytes;
+        this.minQuality = minQuality;
+        this.maxQuality = maxQuality;
+        this.minDimension = minDimension;
+        this.maxDimension = maxDimension;
+        this.quality = maxQuality;
+        this.dimension = maxDimension;
+    }
+
+    public synchronized int getQuality() {
+        return quality;
+    }
+
+    /**
+     * Longest side, in pixels, the next frame should be resized to
+     */
+    public synchronized int getMaxDimension() {
+        return dimension;
+    }
+
+    public synchronized void setTargetBytes(int targetBytes) {
+        this.targetBytes = targetBytes;
+    }
+
+    public synchronized int getTargetBytes() {
+        return targetBytes;
+    }
+
+    public synchronized int getLastBytes() {
+        return lastBytes;
+    }
+
+    /**
+     * Feeds back the size of the frame just encoded with the current settings
+     */
+    public synchronized void onEncoded(int bytes) {
+        lastBytes = bytes;
+        if (bytes <= 0) return;
+
+        float ratio = (float) targetBytes / bytes;
+        if (ratio < OVER_BUDGET) {
+            if (quality > minQuality) {
+                int step = Math.max(5, Math.round((1f - ratio) * 40));
+                quality = Math.max(minQuality, quality - step);
+            } else if (dimension > minDimension) {
+                dimension = Math.max(minDimension, Math.round(dimension * DIMENSION_STEP));
+            }
+        } else if (ratio > UNDER_BUDGET) {
+            if (dimension < maxDimension) {
+                dimension = Math.min(maxDimension, Math.round(dimension / DIMENSION_STEP));
+            } else if (quality < maxQuality) {
+                quality = Math.min(maxQuality, quality + 5);
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "q=" + quality + " dim=" + dimension + " last=" + lastBytes / 1024 + "KB/" + targetBytes / 1024 + "KB";
+    }
+}
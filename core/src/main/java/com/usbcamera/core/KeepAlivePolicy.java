@@ -0,0 +1,109 @@
+package com.usbcamera.core;
+
+import java.util.Locale;
+
+/**
+ * Decides when to send a cheap probe so the connection to the model endpoint is already open
+ * (DNS resolved, TLS and HTTP/2 set up) when the next real request goes out, and measures
+ * what that saves.
+ *
+ * The connection counts as warm for coldAfterMs after the last successful exchange; servers and
+ * mobile NATs drop idle connections after a few minutes. Probes go out once the connection has
+ * been idle for probeAfterIdleMs, but only while the app has been used within keepWarmForMs,
+ * so a phone left on the table does not keep the radio busy.
+ */
+public class KeepAlivePolicy {
+    private final long probeAfterIdleMs;
+    private final long coldAfterMs;
+    private final long keepWarmForMs;
+
+    private long lastExchangeMs = -1;
+    private long lastActivityMs = -1;
+    private boolean probing = false;
+
+    private final LatencyTracker coldProbes = new LatencyTracker(16);
+    private final LatencyTracker warmProbes = new LatencyTracker(32);
+    private final LatencyTracker coldRequests = new LatencyTracker(16);
+    private final LatencyTracker warmRequests = new LatencyTracker(64);
+    private long probes = 0;
+    private long failedProbes = 0;
+    private long networkChanges = 0;
+
+    public KeepAlivePolicy(long probeAfterIdleMs, long coldAfterMs, long keepWarmForMs) {
+        this.probeAfterIdleMs = probeAfterIdleMs;
+        this.coldAfterMs = coldAfterMs;
+        this.keepWarmForMs = keepWarmForMs;
+    }
+
+    /**
+     * The user did something that will lead to requests (opened the screen, sent a request)
+     */
+    public synchronized void onActivity(long nowMs) {
+        lastActivityMs = nowMs;
+    }
+
+    /**
+     * A request or probe got a response, so the connection is open
+     */
+    public synchronized void onExchange(long nowMs) {
+        lastExchangeMs = Math.max(lastExchangeMs, nowMs);
+    }
+
+    /**
+     * The network changed; whatever connection there was is gone
+     */
+    public synchronized void onNetworkChanged() {
+        lastExchangeMs = -1;
+        networkChanges++;
+    }
+
+    public synchronized boolean isWarm(long nowMs) {
+        return lastExchangeMs >= 0 && nowMs - lastExchangeMs < coldAfterMs;
+    }
+
+    /**
+     * True if a keep-alive probe should go out now
+     */
+    public synchronized boolean shouldProbe(long nowMs) {
+        if (probing || lastActivityMs < 0 || nowMs - lastActivityMs >= keepWarmForMs) return false;
+        return lastExchangeMs < 0 || nowMs - lastExchangeMs >= probeAfterIdleMs;
+    }
+
+    /**
+     * Marks a probe as started. Returns false if one is already in flight.
+     */
+    public synchronized boolean beginProbe() {
+        if (probing) return false;
+        probing = true;
+        probes++;
+        return true;
+    }
+
+    /**
+     * @param wasWarm isWarm() when the probe was sent
+     */
+    public synchronized void onProbeDone(boolean succeeded, boolean wasWarm, long latencyMs, long nowMs) {
+        probing = false;
+        if (!succeeded) {
+            failedProbes++;
+            return;
+        }
+        (wasWarm ? warmProbes : coldProbes).record(latencyMs);
+        onExchange(nowMs);
+    }
+
+    /**
+     * Time to first byte of a real request, split by whether the connection was warm when it was sent
+     */
+    public synchronized void recordRequest(boolean wasWarm, long latencyMs) {
+        (wasWarm ? warmRequests : coldRequests).record(latencyMs);
+    }
+
+    public synchronized String stats() {
+        return String.format(Locale.US,
+                "connection: probes %d (%d failed), cold p50 %dms vs warm p50 %dms; requests cold p50 %dms (n=%d) vs warm p50 %dms (n=%d); network changes %d",
+                probes, failedProbes, coldProbes.p50(), warmProbes.p50(),
+                coldRequests.p50(), coldRequests.getCount(), warmRequests.p50(), warmRequests.getCount(),
+                networkChanges);
+    }
+}
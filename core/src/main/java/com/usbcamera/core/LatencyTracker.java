@@ -0,0 +1,47 @@
+package com.usbcamera.core;
+
+import java.util.Arrays;
+
+/**
+ * Rolling window of recent request latencies with percentile lookups
+ */
+public class LatencyTracker {
+    private final long[] samples;
+    private final long[] scratch;
+    private int next = 0;
+    private int count = 0;
+
+    public LatencyTracker(int windowSize) {
+        samples = new long[windowSize];
+        scratch = new long[windowSize];
+    }
+
+    public synchronized void record(long latencyMs) {
+        samples[next] = latencyMs;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+    }
+
+    /**
+     * Latency at the given percentile (0-100), or -1 if nothing has been recorded yet
+     */
+    public synchronized long percentile(int percentile) {
+        if (count == 0) return -1;
+        System.arraycopy(samples, 0, scratch, 0, count);
+        Arrays.sort(scratch, 0, count);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return scratch[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    public long p50() {
+        return percentile(50);
+    }
+
+    public long p95() {
+        return percentile(95);
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,147 @@
+package com.usbcamera.core;
+
+/**
+ * Keeps at most one analysis request in flight and holds only the newest waiting frame.
+ * A frame submitted while a request is running replaces (and drops) any older waiting frame,
+ * so the next request always describes the most recent view. Results whose source frame
+ * is older than the staleness threshold are reported as stale and should be discarded, and a
+ * waiting frame that is already that old when the slot frees up is dropped instead of sent.
+ */
+public class LatestFrameScheduler<F> {
+
+    public interface Dispatcher<F> {
+        /** Starts a request for frame; must eventually be followed by complete(captureTimeMs) */
+        void dispatch(F frame, long captureTimeMs);
+    }
+
+    public interface DropListener<F> {
+        /** Called for frames superseded before they were sent, so they can be released */
+        void onDropped(F frame);
+    }
+
+    private final Dispatcher<F> dispatcher;
+    private final DropListener<F> dropListener;
+    private volatile long staleAfterMs;
+
+    private boolean inFlight = false;
+    private F pending;
+    private long pendingCaptureTimeMs;
+
+    private long submitted = 0;
+    private long dispatched = 0;
+    private long superseded = 0;
+    private long expired = 0;
+    private long staleResults = 0;
+    private long lastAgeMs = 0;
+    private long totalAgeMs = 0;
+    private long completed = 0;
+
+    public LatestFrameScheduler(long staleAfterMs, Dispatcher<F> dispatcher, DropListener<F> dropListener) {
+        this.staleAfterMs = staleAfterMs;
+        this.dispatcher = dispatcher;
+        this.dropListener = dropListener;
+    }
+
+    /**
+     * Offers a new frame. It is sent right away if nothing is in flight, otherwise it waits
+     * and replaces any frame already waiting.
+     */
+    public void submit(F frame, long captureTimeMs) {
+        F dropped = null;
+        boolean sendNow;
+        synchronized (this) {
+            submitted++;
+            if (inFlight) {
+                dropped = pending;
+                if (dropped != null) superseded++;
+                pending = frame;
+                pendingCaptureTimeMs = captureTimeMs;
+                sendNow = false;
+            } else {
+                inFlight = true;
+                dispatched++;
+                sendNow = true;
+            }
+        }
+        if (dropped != null) dropListener.onDropped(dropped);
+        if (sendNow) dispatcher.dispatch(frame, captureTimeMs);
+    }
+
+    /**
+     * Marks the in-flight request as finished and starts the waiting frame, if any and still fresh.
+     * @return true if the result is fresh enough to act on, false if it should be discarded
+     */
+    public boolean complete(long captureTimeMs, long nowMs) {
+        long age = nowMs - captureTimeMs;
+        boolean fresh = age <= staleAfterMs;
+        F next;
+        long nextCaptureTimeMs;
+        F dropped = null;
+        synchronized (this) {
+            completed++;
+            lastAgeMs = age;
+            totalAgeMs += age;
+            if (!fresh) staleResults++;
+
+            next = pending;
+            nextCaptureTimeMs = pendingCaptureTimeMs;
+            pending = null;
+            if (next != null && nowMs - nextCaptureTimeMs > staleAfterMs) {
+                // Its answer would only be discarded as stale
+                dropped = next;
+                next = null;
+                expired++;
+            }
+            inFlight = next != null;
+            if (next != null) dispatched++;
+        }
+        if (dropped != null) dropListener.onDropped(dropped);
+        if (next != null) dispatcher.dispatch(next, nextCaptureTimeMs);
+        return fresh;
+    }
+
+    /**
+     * Drops the waiting frame. A request already in flight still has to complete().
+     */
+    public void clearPending() {
+        F dropped;
+        synchronized (this) {
+            dropped = pending;
+            pending = null;
+        }
+        if (dropped != null) dropListener.onDropped(dropped);
+    }
+
+    public void setStaleAfterMs(long staleAfterMs) {
+        this.staleAfterMs = staleAfterMs;
+    }
+
+    public synchronized boolean isInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getStaleResults() {
+        return staleResults;
+    }
+
+    public synchronized long getSuperseded() {
+        return superseded;
+    }
+
+    public synchronized long getExpired() {
+        return expired;
+    }
+
+    public synchronized long getLastAgeMs() {
+        return lastAgeMs;
+    }
+
+    public synchronized long getAverageAgeMs() {
+        return completed == 0 ? 0 : totalAgeMs / completed;
+    }
+
+    public synchronized String stats() {
+        return "submitted=" + submitted + " dispatched=" + dispatched + " superseded=" + superseded
+                + " expired=" + expired + " stale=" + staleResults + " lastAge=" + lastAgeMs + "ms avgAge=" + getAverageAgeMs() + "ms";
+    }
+}
@@ -0,0 +1,56 @@
+package com.usbcamera.core;
+
+/**
+ * Cheap inter-frame motion score from the luma plane of consecutive preview frames.
+ * Samples a fixed 32x24 grid, takes the mean absolute difference against the previous
+ * frame and smooths it, giving roughly 0 for a still scene and 1 for fast movement.
+ */
+public class MotionEstimator {
+    private static final int GRID_WIDTH = 32;
+    private static final int GRID_HEIGHT = 24;
+    private static final float FULL_MOTION_DIFF = 24f; // mean luma difference treated as score 1
+    private static final float SMOOTHING = 0.3f;
+
+    private final int[] previous = new int[GRID_WIDTH * GRID_HEIGHT];
+    private boolean hasPrevious = false;
+    private volatile float score = -1f;
+
+    /**
+     * Feeds a frame whose first width*height bytes are luma (NV21 / I420 layout)
+     */
+    public void update(byte[] luma, int width, int height) {
+        if (width < GRID_WIDTH || height < GRID_HEIGHT || luma.length < width * height) return;
+
+        long diffSum = 0;
+        int i = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            int row = (gy * height / GRID_HEIGHT + height / (2 * GRID_HEIGHT)) * width;
+            for (int gx = 0; gx < GRID_WIDTH; gx++) {
+                int value = luma[row + gx * width / GRID_WIDTH + width / (2 * GRID_WIDTH)] & 0xFF;
+                diffSum += Math.abs(value - previous[i]);
+                previous[i] = value;
+                i++;
+            }
+        }
+
+        if (!hasPrevious) {
+            hasPrevious = true;
+            return;
+        }
+        float instant = Math.min(1f, diffSum / (float) previous.length / FULL_MOTION_DIFF);
+        float current = score;
+        score = current < 0 ? instant : current + SMOOTHING * (instant - current);
+    }
+
+    /**
+     * Smoothed motion in [0, 1], or -1 if no preview frames have been seen
+     */
+    public float getScore() {
+        return score;
+    }
+
+    public void reset() {
+        hasPrevious = false;
+        score = -1f;
+    }
+}
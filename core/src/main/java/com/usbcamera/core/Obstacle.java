@@ -0,0 +1,101 @@
+package com.usbcamera.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One object from a structured Active Mode answer: what it is, where, how far, and how urgent.
+ */
+public final class Obstacle {
+
+    public enum Direction { LEFT, AHEAD, RIGHT }
+
+    /** Closest first */
+    public enum Distance { NEAR, MEDIUM, FAR }
+
+    /** Least urgent first */
+    public enum Urgency { INFO, CAUTION, URGENT }
+
+    /** Most urgent first, then closest */
+    public static final Comparator<Obstacle> MOST_URGENT_FIRST = (a, b) -> {
+        if (a.urgency != b.urgency) return b.urgency.compareTo(a.urgency);
+        return a.distance.compareTo(b.distance);
+    };
+
+    public final String label;
+    public final Direction direction;
+    public final Distance distance;
+    public final Urgency urgency;
+
+    public Obstacle(String label, Direction direction, Distance distance, Urgency urgency) {
+        this.label = label;
+        this.direction = direction;
+        this.distance = distance;
+        this.urgency = urgency;
+    }
+
+    /**
+     * Builds an obstacle from the model's field values, tolerating case and near-miss wording;
+     * returns null without a label
+     */
+    public static Obstacle fromFields(String label, String direction, String distance, String urgency) {
+        if (label == null || label.trim().isEmpty()) return null;
+        return new Obstacle(label.trim().toLowerCase(Locale.US), parseDirection(direction), parseDistance(distance),
+                parseUrgency(urgency));
+    }
+
+    static Direction parseDirection(String value) {
+        String v = value != null ? value.toLowerCase(Locale.US) : "";
+        if (v.contains("left")) return Direction.LEFT;
+        if (v.contains("right")) return Direction.RIGHT;
+        return Direction.AHEAD;
+    }
+
+    static Distance parseDistance(String value) {
+        String v = value != null ? value.toLowerCase(Locale.US) : "";
+        if (v.contains("near") || v.contains("close")) return Distance.NEAR;
+        if (v.contains("far")) return Distance.FAR;
+        return Distance.MEDIUM;
+    }
+
+    static Urgency parseUrgency(String value) {
+        String v = value != null ? value.toLowerCase(Locale.US) : "";
+        if (v.contains("urgent") || v.contains("high")) return Urgency.URGENT;
+        if (v.contains("caution") || v.contains("medium")) return Urgency.CAUTION;
+        return Urgency.INFO;
+    }
+
+    public boolean isUrgent() {
+        return urgency == Urgency.URGENT;
+    }
+
+    /**
+     * Short spoken phrase, e.g. "Person ahead, on your left, close"
+     */
+    public String describe() {
+        String where = direction == Direction.LEFT ? " ahead, on your left"
+                : direction == Direction.RIGHT ? " ahead, on your right" : " ahead";
+        String phrase = label.substring(0, 1).toUpperCase(Locale.US) + label.substring(1) + where;
+        return distance == Distance.NEAR ? phrase + ", close" : phrase;
+    }
+
+    /**
+     * Every phrase describe() can say about an object with this label, so they can be pre-rendered
+     */
+    public static List<String> phrasesFor(String label) {
+        List<String> phrases = new ArrayList<>();
+        for (Distance distance : new Distance[]{Distance.MEDIUM, Distance.NEAR}) {
+            for (Direction direction : Direction.values()) {
+                phrases.add(new Obstacle(label, direction, distance, Urgency.INFO).describe());
+            }
+        }
+        return phrases;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s %s %s %s", label, direction, distance, urgency);
+    }
+}
@@ -0,0 +1,74 @@
+package com.usbcamera.core;
+
+/**
+ * Decides when a partial speech transcript is settled enough to start a speculative request,
+ * and whether the final transcript still matches what was speculated on.
+ *
+ * A partial is stable once it has at least minWords words and has not changed for stableForMs,
+ * or when the speaker stops. The speculation holds only if the final transcript, ignoring case
+ * and punctuation, is the same text. Any other change means it answers a different question:
+ * "what's" for "what is", and also words added after a pause ("read the sign on the" becoming
+ * "read the sign on the right"), so a later stable partial that extends it replaces it.
+ */
+public class PartialTranscript {
+    private final int minWords;
+    private final long stableForMs;
+
+    private String latest;
+    private long latestChangedMs;
+    private String speculated;
+
+    public PartialTranscript(int minWords, long stableForMs) {
+        this.minWords = minWords;
+        this.stableForMs = stableForMs;
+    }
+
+    public synchronized void reset() {
+        latest = null;
+        speculated = null;
+    }
+
+    /**
+     * Records a partial result. Returns the text to (re)start a speculative request with, or null.
+     */
+    public synchronized String update(String partial, long nowMs) {
+        if (partial == null || partial.trim().isEmpty()) return null;
+        if (latest == null || !TextSimilarity.words(partial).equals(TextSimilarity.words(latest))) {
+            latestChangedMs = nowMs;
+        }
+        latest = partial;
+        if (nowMs - latestChangedMs < stableForMs) return null;
+        return speculateOn(latest);
+    }
+
+    /**
+     * The speaker has stopped: the latest partial is the best guess until the final result arrives.
+     * Returns the text to (re)start a speculative request with, or null.
+     */
+    public synchronized String onEndOfSpeech() {
+        return latest == null ? null : speculateOn(latest);
+    }
+
+    /**
+     * Text the running speculative request was started with, or null
+     */
+    public synchronized String getSpeculated() {
+        return speculated;
+    }
+
+    /**
+     * True if the final transcript is the speculated one, ignoring case and punctuation
+     */
+    public boolean matches(String speculatedText, String finalText) {
+        if (speculatedText == null || finalText == null) return false;
+        String speculated = TextSimilarity.normalize(speculatedText);
+        return !speculated.isEmpty() && speculated.equals(TextSimilarity.normalize(finalText));
+    }
+
+    private String speculateOn(String text) {
+        if (TextSimilarity.words(text).size() < minWords) return null;
+        if (speculated != null && matches(speculated, text)) return null;
+        speculated = text;
+        return text;
+    }
+}
@@ -0,0 +1,48 @@
+package com.usbcamera.core;
+
+/**
+ * Fixed-size ring of the most recent 16-bit PCM samples, allocated once. Used as pre-roll so
+ * the start of an utterance that triggered voice detection is not lost.
+ */
+public class PcmRing {
+    private final short[] samples;
+    private int next = 0;
+    private int count = 0;
+
+    public PcmRing(int capacitySamples) {
+        samples = new short[capacitySamples];
+    }
+
+    public synchronized void write(short[] src, int offset, int length) {
+        if (length >= samples.length) {
+            System.arraycopy(src, offset + length - samples.length, samples, 0, samples.length);
+            next = 0;
+            count = samples.length;
+            return;
+        }
+        int first = Math.min(length, samples.length - next);
+        System.arraycopy(src, offset, samples, next, first);
+        System.arraycopy(src, offset + first, samples, 0, length - first);
+        next = (next + length) % samples.length;
+        count = Math.min(samples.length, count + length);
+    }
+
+    /**
+     * Copies up to maxSamples of the newest samples into dst, oldest first
+     *
+     * @return number of samples copied
+     */
+    public synchronized int copyLatest(short[] dst, int maxSamples) {
+        int n = Math.min(Math.min(maxSamples, count), dst.length);
+        int start = (next - n + samples.length) % samples.length;
+        int first = Math.min(n, samples.length - start);
+        System.arraycopy(samples, start, dst, 0, first);
+        System.arraycopy(samples, 0, dst, first, n - first);
+        return n;
+    }
+
+    public synchronized void reset() {
+        next = 0;
+        count = 0;
+    }
+}
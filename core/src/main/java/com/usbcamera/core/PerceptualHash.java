@@ -0,0 +1,68 @@
+package com.usbcamera.core;
+
+/**
+ * 64-bit difference hash (dHash) used to tell whether two camera frames show the same scene.
+ * The frame is reduced to a 9x8 grid of average luminance and each bit records whether a cell
+ * is brighter than its right-hand neighbour, so small exposure or noise changes keep the hash stable.
+ */
+public final class PerceptualHash {
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    private static final int SAMPLES_PER_CELL = 4; // 4x4 samples per cell is plenty for a 9x8 grid
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Computes the dHash of an ARGB pixel buffer (as filled by Bitmap.getPixels)
+     */
+    public static long dHash(int[] argb, int width, int height) {
+        if (width < GRID_WIDTH || height < GRID_HEIGHT) {
+            return 0L;
+        }
+
+        long hash = 0L;
+        int bit = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            int previous = cellLuma(argb, width, height, 0, gy);
+            for (int gx = 1; gx < GRID_WIDTH; gx++) {
+                int current = cellLuma(argb, width, height, gx, gy);
+                if (previous > current) {
+                    hash |= 1L << bit;
+                }
+                previous = current;
+                bit++;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Number of differing bits between two hashes (0 = identical scene, 64 = unrelated)
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static int cellLuma(int[] argb, int width, int height, int gx, int gy) {
+        int x0 = gx * width / GRID_WIDTH;
+        int x1 = (gx + 1) * width / GRID_WIDTH;
+        int y0 = gy * height / GRID_HEIGHT;
+        int y1 = (gy + 1) * height / GRID_HEIGHT;
+        int stepX = Math.max(1, (x1 - x0) / SAMPLES_PER_CELL);
+        int stepY = Math.max(1, (y1 - y0) / SAMPLES_PER_CELL);
+
+        int sum = 0;
+        int count = 0;
+        for (int y = y0; y < y1; y += stepY) {
+            int row = y * width;
+            for (int x = x0; x < x1; x += stepX) {
+                int pixel = argb[row + x];
+                // Integer approximation of Rec. 601 luma
+                sum += (((pixel >> 16) & 0xFF) * 77 + ((pixel >> 8) & 0xFF) * 150 + (pixel & 0xFF) * 29) >> 8;
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : 0;
+    }
+}
@@ -0,0 +1,156 @@
+package com.usbcamera.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Which phrases have pre-rendered audio, and which ones are worth rendering next.
+ *
+ * Known phrases are pinned and never evicted. Other phrases are learned: every spoken phrase
+ * that misses the cache is counted, and once one has been said learnAfter times it is worth
+ * rendering. Learned entries are evicted least-recently-used first when the cache holds more
+ * than maxBytes of audio. The value type is whatever the player needs (a clip handle), so this
+ * class knows nothing about audio.
+ */
+public class PhraseCache<V> {
+
+    private static final class Entry<V> {
+        final V value;
+        final long bytes;
+        final boolean pinned;
+
+        Entry(V value, long bytes, boolean pinned) {
+            this.value = value;
+            this.bytes = bytes;
+            this.pinned = pinned;
+        }
+    }
+
+    private final long maxBytes;
+    private final int learnAfter;
+    private final int historySize;
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Integer> missCounts = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long learned = 0;
+    private long evicted = 0;
+
+    /**
+     * @param learnAfter misses after which a phrase should be rendered
+     * @param historySize how many distinct missed phrases are counted at once
+     */
+    public PhraseCache(long maxBytes, int learnAfter, int historySize) {
+        this.maxBytes = maxBytes;
+        this.learnAfter = learnAfter;
+        this.historySize = historySize;
+    }
+
+    /**
+     * Cache key: lower-cased with whitespace collapsed, punctuation kept since it changes prosody
+     */
+    public static String key(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.US).replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Rendered audio for the phrase, or null. A miss counts towards learning the phrase.
+     */
+    public synchronized V get(String text) {
+        String key = key(text);
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+            return entry.value;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Counts one more use of a phrase that was not cached. Returns true exactly once, when the
+     * phrase has been used often enough that it should be rendered.
+     */
+    public synchronized boolean recordMiss(String text) {
+        String key = key(text);
+        if (key.isEmpty() || entries.containsKey(key)) return false;
+        Integer count = missCounts.get(key);
+        int newCount = count == null ? 1 : count + 1;
+        missCounts.put(key, newCount);
+        if (missCounts.size() > historySize) {
+            Iterator<String> eldest = missCounts.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return newCount == learnAfter;
+    }
+
+    public synchronized boolean contains(String text) {
+        return entries.containsKey(key(text));
+    }
+
+    /**
+     * Stores rendered audio. Returns the values evicted to stay within maxBytes (possibly
+     * including value itself if it alone is too big); the caller frees them.
+     */
+    public synchronized List<V> put(String text, V value, long sizeBytes, boolean pinned) {
+        String key = key(text);
+        List<V> removed = new ArrayList<>();
+        Entry<V> previous = entries.put(key, new Entry<>(value, sizeBytes, pinned));
+        if (previous != null) {
+            bytes -= previous.bytes;
+            if (previous.value != value) removed.add(previous.value);
+        }
+        bytes += sizeBytes;
+        missCounts.remove(key);
+        if (!pinned) learned++;
+
+        Iterator<Map.Entry<String, Entry<V>>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry<V> candidate = it.next().getValue();
+            if (candidate.pinned) continue;
+            it.remove();
+            bytes -= candidate.bytes;
+            removed.add(candidate.value);
+            evicted++;
+        }
+        return removed;
+    }
+
+    /**
+     * Cached values, least recently used first
+     */
+    public synchronized List<V> snapshot() {
+        List<V> values = new ArrayList<>(entries.size());
+        for (Entry<V> entry : entries.values()) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    /**
+     * Removes and returns every value, e.g. on shutdown
+     */
+    public synchronized List<V> clear() {
+        List<V> values = snapshot();
+        entries.clear();
+        bytes = 0;
+        return values;
+    }
+
+    /**
+     * Hit rate is over all get() calls, i.e. everything spoken since startup
+     */
+    public synchronized String stats() {
+        long lookups = hits + misses;
+        return String.format(Locale.US, "phrases: %d cached (%d KB), hits %d/%d (%.0f%%), learned %d, evicted %d",
+                entries.size(), bytes / 1024, hits, lookups, lookups == 0 ? 0f : hits * 100f / lookups,
+                learned, evicted);
+    }
+}
@@ -0,0 +1,160 @@
+package com.usbcamera.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed pool that runs queued tasks by priority, first-in-first-out within a priority, and
+ * measures how long each priority class waits in the queue.
+ *
+ * Queued tasks can be cancelled; a cancelled or discarded task never runs, but its onDiscard
+ * action does, so it can free what it owned (e.g. pooled bitmaps). A task that has started
+ * runs to completion.
+ */
+public class PriorityExecutor {
+
+    public enum Priority {
+        /** Someone is waiting for the result */
+        INTERACTIVE,
+        /** Periodic work that can be delayed or dropped */
+        BACKGROUND
+    }
+
+    public final class Task implements Runnable, Comparable<Task> {
+        private final Priority priority;
+        private final long sequence;
+        private final long queuedNs = System.nanoTime();
+        private final Runnable body;
+        private final Runnable onDiscard;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        private Task(Priority priority, long sequence, Runnable body, Runnable onDiscard) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.body = body;
+            this.onDiscard = onDiscard;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, STARTED)) return;
+            queueWait[priority.ordinal()].record((System.nanoTime() - queuedNs) / 1000000);
+            body.run();
+        }
+
+        /**
+         * Returns true if the task had not started yet and now never will
+         */
+        boolean discard() {
+            if (!state.compareAndSet(QUEUED, DISCARDED)) return false;
+            discarded.incrementAndGet();
+            if (onDiscard != null) onDiscard.run();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (priority != other.priority) return priority.compareTo(other.priority);
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final int QUEUED = 0;
+    private static final int STARTED = 1;
+    private static final int DISCARDED = 2;
+
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final LatencyTracker[] queueWait = new LatencyTracker[Priority.values().length];
+
+    public PriorityExecutor(final String name, int threads) {
+        for (int i = 0; i < queueWait.length; i++) {
+            queueWait[i] = new LatencyTracker(64);
+        }
+        final AtomicInteger threadCount = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+                runnable -> new Thread(runnable, name + "-" + threadCount.incrementAndGet()));
+    }
+
+    /**
+     * Queues body at the given priority. onDiscard (may be null) runs instead of body if the task
+     * is cancelled before it starts, or if the executor has been shut down.
+     */
+    public Task submit(Priority priority, Runnable body, Runnable onDiscard) {
+        Task task = new Task(priority, sequence.getAndIncrement(), body, onDiscard);
+        if (pool.isShutdown()) {
+            task.discard();
+            return task;
+        }
+        pool.execute(task);
+        return task;
+    }
+
+    /**
+     * Removes a task that has not started. Returns false if it is already running or done.
+     */
+    public boolean cancel(Task task) {
+        if (task == null || !task.discard()) return false;
+        pool.remove(task);
+        return true;
+    }
+
+    /**
+     * Cancels every queued task of the given priority; returns how many were dropped
+     */
+    public int cancelQueued(Priority priority) {
+        List<Task> matching = new ArrayList<>();
+        for (Runnable runnable : pool.getQueue()) {
+            Task task = (Task) runnable;
+            if (task.priority == priority) matching.add(task);
+        }
+        int cancelled = 0;
+        for (Task task : matching) {
+            if (cancel(task)) cancelled++;
+        }
+        return cancelled;
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * Time tasks of this priority spent queued before starting
+     */
+    public LatencyTracker getQueueWait(Priority priority) {
+        return queueWait[priority.ordinal()];
+    }
+
+    /**
+     * Discards everything queued and stops accepting work; a running task is left to finish
+     */
+    public void shutdown() {
+        // Not shutdownNow(): that would interrupt the running task
+        pool.shutdown();
+        List<Runnable> queued = new ArrayList<>();
+        pool.getQueue().drainTo(queued);
+        for (Runnable runnable : queued) {
+            ((Task) runnable).discard();
+        }
+    }
+
+    public String stats() {
+        LatencyTracker interactive = getQueueWait(Priority.INTERACTIVE);
+        LatencyTracker background = getQueueWait(Priority.BACKGROUND);
+        return String.format(Locale.US, "queue wait: interactive p50 %dms p95 %dms (n=%d), background p50 %dms p95 %dms (n=%d), discarded %d",
+                interactive.p50(), interactive.p95(), interactive.getCount(),
+                background.p50(), background.p95(), background.getCount(), discarded.get());
+    }
+}
@@ -0,0 +1,79 @@
+package com.usbcamera.core;
+
+/**
+ * Prompt text for user questions and Active Mode obstacle checks. The fixed part is the system
+ * instruction, set once on the model; each request only carries its own question or check.
+ */
+public final class PromptBuilder {
+    private static final String ASSISTANT_PROMPT = "You are assisting a person with visual impairments. Provide clear, concise answers in 1-2 sentences max. strictly. be concise as possible. You must not mention image or something. Simulate yourself as you are person's smart cane with eyes. Help them being a personal assistant.";
+
+    /**
+     * System instruction for every request to the model
+     */
+    public static final String SYSTEM_INSTRUCTION = ASSISTANT_PROMPT
+            + " Earlier turns of the conversation keep only what was said; just the newest question comes with the current view.";
+
+    // Active Mode answers follow a response schema; this says how to fill it
+    private static final String OBSTACLE_FIELDS = " List at most 3 obstacles or important objects, most urgent first,"
+            + " each with label (one or two words), direction (left, ahead or right), distance (near, medium or far)"
+            + " and urgency (urgent if the person could walk into it within a few steps, caution, or info)."
+            + " Return an empty list if the path is clear.";
+
+    private PromptBuilder() {
+    }
+
+    /**
+     * Prompt for a spoken question; empty if the question is blank
+     */
+    public static String queryPrompt(String userQuery) {
+        String query = (userQuery != null) ? userQuery.toLowerCase().trim() : "";
+        if (query.isEmpty()) {
+            return "";
+        }
+        return "User asked: '" + userQuery + "'. Answer their question based on the image.";
+    }
+
+    /**
+     * An earlier question as it is replayed in the conversation history, without its image
+     */
+    public static String earlierQuestion(String userQuery) {
+        return "User asked: '" + userQuery + "'.";
+    }
+
+    public static String obstaclePrompt(String customInstruction) {
+        return obstaclePrompt(customInstruction, "");
+    }
+
+    /**
+     * Text turn asking a Live session, which already sees the streamed frames, for an obstacle
+     * check; the answer is spoken as it is, so it asks for one short sentence instead of a list
+     */
+    public static String liveCheckPrompt(String customInstruction) {
+        String check = "Obstacle check on the latest view. In one short sentence, name the most urgent obstacle and"
+                + " where it is, or say 'clear' if the path is clear.";
+        if (customInstruction != null && !customInstruction.trim().isEmpty()) {
+            return check + " " + customInstruction;
+        }
+        return check;
+    }
+
+    /**
+     * Sentence explaining a multi-frame burst: frame order and the relative time labels
+     */
+    public static String burstNote(int frameCount) {
+        return " You get " + frameCount + " images from the same camera, oldest first, each labelled with its time"
+                + " relative to the newest. Use how things moved between them to tell what is approaching and how fast;"
+                + " describe only the situation in the newest image.";
+    }
+
+    /**
+     * @param imageNote sentence describing the uploaded image, e.g. RoiLayout.describe(); may be empty
+     */
+    public static String obstaclePrompt(String customInstruction, String imageNote) {
+        if (customInstruction != null && !customInstruction.trim().isEmpty()) {
+            return "Obstacle check." + imageNote + " " + customInstruction + OBSTACLE_FIELDS;
+        } else {
+            return "Obstacle check." + imageNote + OBSTACLE_FIELDS;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.usbcamera.core;
+
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Request quota shared by user questions and Active Mode, counted the way the provider counts
+ * it: the per-minute limit over any rolling 60 seconds (a log of send times), and the daily cap
+ * over a calendar day that resets at midnight in the provider's time zone.
+ *
+ * Part of each limit is reserved for interactive requests, so Active Mode can never use up the
+ * capacity a spoken question needs. Nothing here blocks: tryAcquire() either takes a slot or
+ * says how long until one is free, and remainingFraction() lets the Active Mode cadence slow
+ * down well before a limit is reached. The day's count is saved through a Store so a restart
+ * does not hand out a fresh day's worth of requests.
+ */
+public class QuotaManager {
+    private static final long MINUTE_MS = 60000;
+
+    public interface Store {
+        /** Requests counted in the day that ends at loadDayResetAtMs() */
+        int loadDayUsed();
+        /** When the saved day ends, or 0 if nothing was saved */
+        long loadDayResetAtMs();
+        void save(int dayUsed, long dayResetAtMs);
+    }
+
+    /**
+     * Send times within the last minute; may hold more than the limit when retries and hedges
+     * spend more than was admitted
+     */
+    private static final class MinuteWindow {
+        final int limit;
+        final int reserve;
+        final ArrayDeque<Long> sentMs = new ArrayDeque<>();
+        // After a server rejection the window counts as full until then
+        long fullUntilMs = 0;
+
+        MinuteWindow(int limit, int reserve) {
+            this.limit = limit;
+            this.reserve = Math.min(reserve, limit - 1);
+        }
+
+        void expire(long nowMs) {
+            while (!sentMs.isEmpty() && nowMs - sentMs.peekFirst() >= MINUTE_MS) {
+                sentMs.pollFirst();
+            }
+        }
+
+        int allowed(PriorityExecutor.Priority priority) {
+            return priority == PriorityExecutor.Priority.INTERACTIVE ? limit : limit - reserve;
+        }
+
+        /**
+         * Milliseconds until a request of this priority fits, 0 if it fits now
+         */
+        long waitMs(PriorityExecutor.Priority priority, long nowMs) {
+            long blockedMs = Math.max(0, fullUntilMs - nowMs);
+            // The request fits once all but allowed - 1 of the logged sends have aged out
+            int mustExpire = sentMs.size() - allowed(priority) + 1;
+            if (mustExpire <= 0) return blockedMs;
+            Iterator<Long> oldest = sentMs.iterator();
+            long sent = 0;
+            for (int i = 0; i < mustExpire; i++) {
+                sent = oldest.next();
+            }
+            return Math.max(blockedMs, sent + MINUTE_MS - nowMs);
+        }
+
+        float remaining(PriorityExecutor.Priority priority, long nowMs) {
+            if (nowMs < fullUntilMs) return 0;
+            int allowed = allowed(priority);
+            return Math.max(0, (allowed - sentMs.size()) / (float) allowed);
+        }
+
+        void take(long nowMs) {
+            sentMs.addLast(nowMs);
+        }
+    }
+
+    /**
+     * Requests counted since the last daily reset
+     */
+    private static final class DayWindow {
+        final int limit;
+        final int reserve;
+        int used = 0;
+        long resetAtMs;
+
+        DayWindow(int limit, int reserve) {
+            this.limit = limit;
+            this.reserve = Math.min(reserve, limit - 1);
+        }
+
+        int allowed(PriorityExecutor.Priority priority) {
+            return priority == PriorityExecutor.Priority.INTERACTIVE ? limit : limit - reserve;
+        }
+
+        long waitMs(PriorityExecutor.Priority priority, long nowMs) {
+            return used < allowed(priority) ? 0 : resetAtMs - nowMs;
+        }
+
+        float remaining(PriorityExecutor.Priority priority) {
+            int allowed = allowed(priority);
+            return Math.max(0, (allowed - used) / (float) allowed);
+        }
+    }
+
+    private final MinuteWindow minute;
+    private final DayWindow day;
+    private final TimeZone resetZone;
+    private final Store store;
+
+    private final long[] admitted = new long[PriorityExecutor.Priority.values().length];
+    private final long[] denied = new long[PriorityExecutor.Priority.values().length];
+    private long extra = 0;
+    private long serverRejections = 0;
+
+    /**
+     * @param interactiveReservePerMinute requests per minute only interactive requests may use
+     * @param interactiveReservePerDay requests per day only interactive requests may use
+     * @param resetZone the daily cap resets at midnight in this time zone
+     * @param store where the day's count is persisted, or null
+     */
+    public QuotaManager(int perMinute, int perDay, int interactiveReservePerMinute, int interactiveReservePerDay,
+                        TimeZone resetZone, Store store, long nowMs) {
+        this.minute = new MinuteWindow(perMinute, interactiveReservePerMinute);
+        this.day = new DayWindow(perDay, interactiveReservePerDay);
+        this.resetZone = resetZone;
+        this.store = store;
+        day.resetAtMs = nextResetAfter(nowMs);
+        if (store != null) {
+            long savedResetAtMs = store.loadDayResetAtMs();
+            // Same day, and not from a clock that has since been set back
+            if (savedResetAtMs > nowMs && savedResetAtMs <= day.resetAtMs) {
+                day.used = Math.max(0, store.loadDayUsed());
+                day.resetAtMs = savedResetAtMs;
+            }
+        }
+    }
+
+    /**
+     * Takes a slot for a request about to be sent. Returns 0 if it may go now, otherwise how
+     * many milliseconds until it could.
+     */
+    public synchronized long tryAcquire(PriorityExecutor.Priority priority, long nowMs) {
+        long waitMs = delayUntilAllowedMs(priority, nowMs);
+        if (waitMs > 0) {
+            denied[priority.ordinal()]++;
+            return waitMs;
+        }
+        take(nowMs);
+        admitted[priority.ordinal()]++;
+        return 0;
+    }
+
+    /**
+     * How long until a request of this priority could be sent; 0 means now. Takes nothing.
+     */
+    public synchronized long delayUntilAllowedMs(PriorityExecutor.Priority priority, long nowMs) {
+        advance(nowMs);
+        return Math.max(minute.waitMs(priority, nowMs), day.waitMs(priority, nowMs));
+    }
+
+    /**
+     * Counts a network attempt beyond the admitted one (retry or hedge), whether or not there is
+     * room for it, so later requests wait for it
+     */
+    public synchronized void consumeExtra(long nowMs) {
+        advance(nowMs);
+        take(nowMs);
+        extra++;
+    }
+
+    /**
+     * The server refused a request for quota: our count has drifted (another device on the same
+     * key, a different limit), so treat the minute as used up until our oldest request in it ages
+     * out, or for a whole minute if we have sent nothing lately
+     */
+    public synchronized void onQuotaExceeded(long nowMs) {
+        advance(nowMs);
+        long freesAtMs = minute.sentMs.isEmpty() ? nowMs + MINUTE_MS : minute.sentMs.peekFirst() + MINUTE_MS;
+        minute.fullUntilMs = Math.max(minute.fullUntilMs, freesAtMs);
+        serverRejections++;
+    }
+
+    /**
+     * Fraction of the budget usable by this priority that is left, the tighter of the two limits
+     */
+    public synchronized float remainingFraction(PriorityExecutor.Priority priority, long nowMs) {
+        advance(nowMs);
+        return Math.min(minute.remaining(priority, nowMs), day.remaining(priority));
+    }
+
+    private void advance(long nowMs) {
+        minute.expire(nowMs);
+        if (nowMs >= day.resetAtMs) {
+            day.used = 0;
+            day.resetAtMs = nextResetAfter(nowMs);
+        }
+    }
+
+    private void take(long nowMs) {
+        minute.take(nowMs);
+        day.used++;
+        if (store != null) store.save(day.used, day.resetAtMs);
+    }
+
+    /**
+     * The first midnight in the reset time zone after nowMs
+     */
+    private long nextResetAfter(long nowMs) {
+        Calendar calendar = Calendar.getInstance(resetZone, Locale.US);
+        calendar.setTimeInMillis(nowMs);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    public synchronized String stats() {
+        int interactive = PriorityExecutor.Priority.INTERACTIVE.ordinal();
+        int background = PriorityExecutor.Priority.BACKGROUND.ordinal();
+        return String.format(Locale.US,
+                "quota: minute %d/%d, day %d/%d; admitted %d interactive, %d background; denied %d interactive, %d background; retries/hedges %d; server rejections %d",
+                minute.sentMs.size(), minute.limit, day.used, day.limit,
+                admitted[interactive], admitted[background], denied[interactive], denied[background], extra,
+                serverRejections);
+    }
+}
@@ -0,0 +1,47 @@
+package com.usbcamera.core;
+
+import java.util.Locale;
+
+/**
+ * Quota and latency bookkeeping for one way of sending frames (single frame vs burst),
+ * so the two can be compared on requests per frame covered, upload size and latency
+ */
+public class RequestModeStats {
+    private final String name;
+    private final LatencyTracker latency = new LatencyTracker(64);
+    private long requests = 0;
+    private long frames = 0;
+    private long bytes = 0;
+
+    public RequestModeStats(String name) {
+        this.name = name;
+    }
+
+    public synchronized void record(int frameCount, int uploadBytes, long latencyMs) {
+        requests++;
+        frames += frameCount;
+        bytes += uploadBytes;
+        latency.record(latencyMs);
+    }
+
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Requests spent per frame the model saw; 1.0 for single-frame mode
+     */
+    public synchronized float requestsPerFrame() {
+        return frames == 0 ? 0f : requests / (float) frames;
+    }
+
+    public synchronized String summary() {
+        return String.format(Locale.US, "%s: %d req / %d frames (%.2f req/frame), avg %d KB, p50 %dms p95 %dms",
+                name, requests, frames, requestsPerFrame(), requests == 0 ? 0 : bytes / requests / 1024,
+                latency.p50(), latency.p95());
+    }
+}
@@ -0,0 +1,143 @@
+package com.usbcamera.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of Gemini answers keyed by scene fingerprint plus prompt.
+ * A lookup matches any entry with the same prompt whose fingerprint is within
+ * the configured Hamming distance, so a user standing still reuses the last answer.
+ */
+public class ResponseCache {
+    private final int maxEntries;
+    private final long maxAgeMs;
+    private volatile int maxDistance;
+
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    public ResponseCache(int maxEntries, int maxDistance, long maxAgeMs) {
+        this.maxEntries = maxEntries;
+        this.maxDistance = maxDistance;
+        this.maxAgeMs = maxAgeMs;
+        this.entries = new LinkedHashMap<Key, Entry>(maxEntries + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ResponseCache.Entry> eldest) {
+                return size() > ResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached answer for a near-duplicate scene, or null on a miss
+     */
+    public synchronized String get(long fingerprint, String prompt, long nowMs) {
+        Entry exact = entries.get(new Key(fingerprint, prompt));
+        if (exact != null && !isExpired(exact, nowMs)) {
+            hits++;
+            return exact.response;
+        }
+
+        Entry best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (isExpired(e.getValue(), nowMs)) {
+                it.remove();
+                continue;
+            }
+            if (!e.getKey().prompt.equals(prompt)) continue;
+            int distance = PerceptualHash.distance(e.getKey().fingerprint, fingerprint);
+            if (distance <= maxDistance && distance < bestDistance) {
+                best = e.getValue();
+                bestDistance = distance;
+            }
+        }
+
+        if (best == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        // Touch the entry so it stays at the MRU end
+        entries.get(best.key);
+        return best.response;
+    }
+
+    public synchronized void put(long fingerprint, String prompt, String response, long nowMs) {
+        if (response == null) return;
+        Key key = new Key(fingerprint, prompt);
+        entries.put(key, new Entry(key, response, nowMs));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public void setMaxDistance(int maxDistance) {
+        this.maxDistance = maxDistance;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized float getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0f : (float) hits / total;
+    }
+
+    private boolean isExpired(Entry entry, long nowMs) {
+        return nowMs - entry.createdAtMs > maxAgeMs;
+    }
+
+    private static final class Key {
+        final long fingerprint;
+        final String prompt;
+
+        Key(long fingerprint, String prompt) {
+            this.fingerprint = fingerprint;
+            this.prompt = prompt != null ? prompt : "";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return fingerprint == other.fingerprint && prompt.equals(other.prompt);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(fingerprint) + prompt.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        final Key key;
+        final String response;
+        final long createdAtMs;
+
+        Entry(Key key, String response, long createdAtMs) {
+            this.key = key;
+            this.response = response;
+            this.createdAtMs = createdAtMs;
+        }
+    }
+}
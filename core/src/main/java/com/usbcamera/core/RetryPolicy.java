@@ -0,0 +1,47 @@
+package com.usbcamera.core;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with full jitter, bounded by an attempt count and an overall deadline
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final long deadlineMs;
+    private final Random random = new Random();
+
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, long deadlineMs) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.deadlineMs = deadlineMs;
+    }
+
+    /**
+     * Delay before the given retry (1 = first retry): a random value in [0, min(max, base * 2^(n-1))]
+     */
+    public long backoffMs(int retry) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(Math.max(0, retry - 1), 16));
+        synchronized (random) {
+            return (long) (random.nextDouble() * (ceiling + 1));
+        }
+    }
+
+    /**
+     * Whether another attempt may start after `attempts` have failed, given the time already spent
+     * and the backoff that would precede it
+     */
+    public boolean canRetry(int attempts, long elapsedMs, long backoffMs) {
+        return attempts < maxAttempts && elapsedMs + backoffMs < deadlineMs;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+}
@@ -0,0 +1,142 @@
+package com.usbcamera.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Which parts of an Active Mode frame are uploaded, and how they are laid out.
+ *
+ * WHOLE_FRAME downscales everything (the old behaviour). PATH_CROP keeps only the walking path,
+ * a bottom-centre region, at source resolution. MOSAIC stacks a head-level band above the path
+ * so overhanging obstacles are still covered. Regions are fractions of the frame, so the same
+ * layout works for any capture size.
+ */
+public final class RoiLayout {
+
+    public enum Mode {
+        WHOLE_FRAME,
+        PATH_CROP,
+        MOSAIC
+    }
+
+    /**
+     * Copy source rectangle (left, top, right, bottom) to the same-sized-or-scaled destination rectangle
+     */
+    public static final class Tile {
+        public final int srcLeft, srcTop, srcRight, srcBottom;
+        public final int dstLeft, dstTop, dstRight, dstBottom;
+
+        Tile(int srcLeft, int srcTop, int srcRight, int srcBottom,
+             int dstLeft, int dstTop, int dstRight, int dstBottom) {
+            this.srcLeft = srcLeft;
+            this.srcTop = srcTop;
+            this.srcRight = srcRight;
+            this.srcBottom = srcBottom;
+            this.dstLeft = dstLeft;
+            this.dstTop = dstTop;
+            this.dstRight = dstRight;
+            this.dstBottom = dstBottom;
+        }
+    }
+
+    /**
+     * Output size plus the tiles to draw into it
+     */
+    public static final class Plan {
+        public final int width;
+        public final int height;
+        public final List<Tile> tiles;
+
+        Plan(int width, int height, List<Tile> tiles) {
+            this.width = width;
+            this.height = height;
+            this.tiles = tiles;
+        }
+    }
+
+    public static final RoiLayout WHOLE = new RoiLayout(Mode.WHOLE_FRAME, 1f, 1f, 0f, 0f);
+
+    public final Mode mode;
+    public final float pathWidth;   // fraction of frame width, centred
+    public final float pathHeight;  // fraction of frame height, anchored at the bottom
+    public final float headTop;     // head band top, fraction of frame height
+    public final float headHeight;  // head band height, fraction of frame height
+
+    public RoiLayout(Mode mode, float pathWidth, float pathHeight, float headTop, float headHeight) {
+        this.mode = mode;
+        this.pathWidth = clamp(pathWidth, 0.1f, 1f);
+        this.pathHeight = clamp(pathHeight, 0.1f, 1f);
+        this.headTop = clamp(headTop, 0f, 0.9f);
+        this.headHeight = clamp(headHeight, 0.05f, 1f - this.headTop);
+    }
+
+    /**
+     * Where each region goes for a frame of the given size, scaled down only if the result
+     * would exceed maxDimension on its longest side
+     */
+    public Plan plan(int frameWidth, int frameHeight, int maxDimension) {
+        int pathW = Math.round(frameWidth * pathWidth);
+        int pathH = Math.round(frameHeight * pathHeight);
+        int pathLeft = (frameWidth - pathW) / 2;
+        int pathTop = frameHeight - pathH;
+
+        switch (mode) {
+            case PATH_CROP: {
+                int outW = YuvConverter.scaledWidth(pathW, pathH, maxDimension);
+                int outH = YuvConverter.scaledHeight(pathW, pathH, maxDimension);
+                return new Plan(outW, outH, Collections.singletonList(
+                        new Tile(pathLeft, pathTop, pathLeft + pathW, frameHeight, 0, 0, outW, outH)));
+            }
+            case MOSAIC: {
+                int headTopPx = Math.round(frameHeight * headTop);
+                int headH = Math.min(Math.round(frameHeight * headHeight), pathTop - headTopPx);
+                if (headH <= 0) {
+                    // Band overlaps the path; the path crop already covers it
+                    return new RoiLayout(Mode.PATH_CROP, pathWidth, pathHeight, headTop, headHeight)
+                            .plan(frameWidth, frameHeight, maxDimension);
+                }
+                int fullH = headH + pathH;
+                int outW = YuvConverter.scaledWidth(pathW, fullH, maxDimension);
+                int outH = YuvConverter.scaledHeight(pathW, fullH, maxDimension);
+                int splitY = Math.round(headH * (outH / (float) fullH));
+                List<Tile> tiles = new ArrayList<>(2);
+                tiles.add(new Tile(pathLeft, headTopPx, pathLeft + pathW, headTopPx + headH, 0, 0, outW, splitY));
+                tiles.add(new Tile(pathLeft, pathTop, pathLeft + pathW, frameHeight, 0, splitY, outW, outH));
+                return new Plan(outW, outH, tiles);
+            }
+            default: {
+                int outW = YuvConverter.scaledWidth(frameWidth, frameHeight, maxDimension);
+                int outH = YuvConverter.scaledHeight(frameWidth, frameHeight, maxDimension);
+                return new Plan(outW, outH, Collections.singletonList(
+                        new Tile(0, 0, frameWidth, frameHeight, 0, 0, outW, outH)));
+            }
+        }
+    }
+
+    /**
+     * Sentence telling the model what the uploaded image shows, or "" for the whole frame
+     */
+    public String describe() {
+        switch (mode) {
+            case PATH_CROP:
+                return " The image is a close crop of the walking path directly ahead.";
+            case MOSAIC:
+                return " The image has two parts: the top strip is head height ahead,"
+                        + " the bottom part is the walking path directly ahead.";
+            default:
+                return "";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s path %.0f%%x%.0f%% head %.0f%%+%.0f%%",
+                mode, pathWidth * 100, pathHeight * 100, headTop * 100, headHeight * 100);
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
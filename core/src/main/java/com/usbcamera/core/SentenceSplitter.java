@@ -0,0 +1,78 @@
+package com.usbcamera.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Incrementally cuts a token stream into speakable sentences.
+ * A sentence ends at '.', '!' or '?' followed by whitespace, except after decimals
+ * ("3.5 meters"), initials and known abbreviations ("Mr.", "e.g."), so TTS never speaks half a
+ * number. Other short words ("It.", "Go.") end a sentence as usual.
+ */
+public class SentenceSplitter {
+    private static final int MIN_SENTENCE_LENGTH = 12; // avoid speaking tiny fragments on their own
+    private static final Set<String> ABBREVIATIONS = new HashSet<>(Arrays.asList(
+            "mr", "mrs", "ms", "dr", "st", "jr", "sr", "prof", "vs", "approx", "ave"));
+
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * Appends a chunk and returns any sentences it completed (possibly none)
+     */
+    public List<String> feed(String chunk) {
+        List<String> sentences = new ArrayList<>();
+        if (chunk == null || chunk.isEmpty()) return sentences;
+        pending.append(chunk);
+
+        int start = 0;
+        for (int i = 0; i < pending.length() - 1; i++) {
+            char c = pending.charAt(i);
+            if ((c == '.' || c == '!' || c == '?') && Character.isWhitespace(pending.charAt(i + 1))) {
+                if (c == '.' && isAbbreviation(pending, start, i)) continue;
+                if (i + 1 - start < MIN_SENTENCE_LENGTH) continue;
+                String sentence = pending.substring(start, i + 1).trim();
+                if (!sentence.isEmpty()) {
+                    sentences.add(sentence);
+                }
+                start = i + 1;
+            }
+        }
+        pending.delete(0, start);
+        return sentences;
+    }
+
+    /**
+     * Returns whatever is left once the stream ends, or null if nothing is pending
+     */
+    public String flush() {
+        String rest = pending.toString().trim();
+        pending.setLength(0);
+        return rest.isEmpty() ? null : rest;
+    }
+
+    public void reset() {
+        pending.setLength(0);
+    }
+
+    private static boolean isAbbreviation(CharSequence text, int sentenceStart, int dot) {
+        // Walk back over the word that ends at this dot
+        int wordStart = dot;
+        while (wordStart > sentenceStart && !Character.isWhitespace(text.charAt(wordStart - 1))) {
+            wordStart--;
+        }
+        int wordLength = dot - wordStart;
+        if (wordLength == 0) return false;
+        if (Character.isDigit(text.charAt(dot - 1))) {
+            // "there are 3." ends a sentence; decimals never get here since no whitespace follows the dot
+            return false;
+        }
+        // Initials ("J. Smith") and dotted forms like "e.g" / "i.e"
+        if (wordLength == 1) return Character.isUpperCase(text.charAt(wordStart));
+        String word = text.subSequence(wordStart, dot).toString().toLowerCase(Locale.US);
+        return word.indexOf('.') >= 0 || ABBREVIATIONS.contains(word);
+    }
+}
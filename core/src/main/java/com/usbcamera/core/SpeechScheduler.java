@@ -0,0 +1,309 @@
+package com.usbcamera.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decides what the text-to-speech engine says next.
+ *
+ * Utterances wait in one FIFO queue per priority and only one is handed to the engine at a time,
+ * so a higher-priority utterance can interrupt the current one. An interrupted answer goes back
+ * to the front of its queue and is spoken again once the interruption is over; an interrupted
+ * ambient description is dropped, since it is stale by then. Alerts and descriptions that are
+ * close to something said within the repeat window are suppressed, unless the caller has already
+ * removed repeats itself. Answers never are: the user asked for them.
+ */
+public class SpeechScheduler {
+
+    public enum Priority {
+        /** Obstacle alerts; interrupt anything else */
+        URGENT,
+        /** Answers to the user's questions; interrupt ambient descriptions */
+        ANSWER,
+        /** Active Mode scene descriptions; only the newest waiting one is kept */
+        AMBIENT
+    }
+
+    public static final class Utterance {
+        public final String id;
+        public final String text;
+        public final Priority priority;
+        public final int traceId;
+        final long enqueuedMs;
+        final Set<String> tokens;
+        int resumes = 0;
+        boolean started = false;
+
+        Utterance(String id, String text, Priority priority, int traceId, long enqueuedMs) {
+            this.id = id;
+            this.text = text;
+            this.priority = priority;
+            this.traceId = traceId;
+            this.enqueuedMs = enqueuedMs;
+            this.tokens = TextSimilarity.words(text);
+        }
+    }
+
+    public interface DropListener {
+        /**
+         * Called, outside the scheduler's lock, for an utterance dropped before it started
+         * playing once nothing else with its trace ID is waiting or playing
+         */
+        void onDropped(Utterance utterance);
+    }
+
+    /** What offer() did with a new utterance */
+    public enum Outcome {
+        /** Close to something said recently; dropped */
+        SUPPRESSED,
+        /** Waiting behind the current utterance */
+        QUEUED,
+        /** Outranks the current utterance, which has been taken off the engine; stop playback and call next() */
+        PREEMPT
+    }
+
+    private static final int MAX_RESUMES = 2;
+    private static final int RECENT_CAPACITY = 16;
+
+    private final long repeatWindowMs;
+    private final float similarityThreshold;
+    private final List<ArrayDeque<Utterance>> queues = new ArrayList<>();
+    private final ArrayDeque<Utterance> recent = new ArrayDeque<>(); // spoken, newest last
+    private final ArrayDeque<Long> recentSpokenMs = new ArrayDeque<>();
+    private final LatencyTracker[] timeToSpeech = new LatencyTracker[Priority.values().length];
+    private final DropListener dropListener;
+    private Utterance current;
+    private long nextId = 0;
+
+    private int maxDepth = 0;
+    private long spoken = 0;
+    private long suppressed = 0;
+    private long preempted = 0;
+    private long resumed = 0;
+    private long dropped = 0;
+
+    /**
+     * @param repeatWindowMs how long a spoken alert or description suppresses similar ones
+     * @param similarityThreshold word-overlap (Jaccard) at or above which two messages count as a repeat
+     */
+    public SpeechScheduler(long repeatWindowMs, float similarityThreshold) {
+        this(repeatWindowMs, similarityThreshold, null);
+    }
+
+    /**
+     * @param dropListener told about utterances that will never be spoken, e.g. to close their traces
+     */
+    public SpeechScheduler(long repeatWindowMs, float similarityThreshold, DropListener dropListener) {
+        this.repeatWindowMs = repeatWindowMs;
+        this.similarityThreshold = similarityThreshold;
+        this.dropListener = dropListener;
+        for (int i = 0; i < Priority.values().length; i++) {
+            queues.add(new ArrayDeque<Utterance>());
+            timeToSpeech[i] = new LatencyTracker(64);
+        }
+    }
+
+    /**
+     * Adds an utterance. Returns PREEMPT when it outranks what is playing; the caller must then
+     * stop the engine and speak next().
+     */
+    public Outcome offer(String text, Priority priority, int traceId, long nowMs) {
+        return offer(text, priority, true, traceId, nowMs);
+    }
+
+    /**
+     * @param checkRepeats false for text whose repeats the caller has already removed, e.g.
+     *                     obstacle alerts diffed by WorldState: their templated wording makes a
+     *                     different object look like a repeat ("Pole ahead" vs "Person ahead")
+     */
+    public Outcome offer(String text, Priority priority, boolean checkRepeats, int traceId, long nowMs) {
+        List<Utterance> gone = new ArrayList<>();
+        Outcome outcome;
+        synchronized (this) {
+            Utterance utterance = new Utterance("AssistEyes-" + (++nextId), text, priority, traceId, nowMs);
+            if (checkRepeats && priority != Priority.ANSWER && isRepeat(utterance, nowMs)) {
+                suppressed++;
+                return Outcome.SUPPRESSED;
+            }
+
+            ArrayDeque<Utterance> queue = queues.get(priority.ordinal());
+            if (priority == Priority.AMBIENT && !queue.isEmpty()) {
+                gone.addAll(queue);
+                queue.clear();
+            }
+            queue.addLast(utterance);
+            maxDepth = Math.max(maxDepth, getQueueDepth());
+
+            outcome = Outcome.QUEUED;
+            if (current != null && priority.ordinal() < current.priority.ordinal()) {
+                Utterance interrupted = interrupt();
+                if (interrupted != null) gone.add(interrupted);
+                outcome = Outcome.PREEMPT;
+            }
+            gone = orphaned(gone);
+        }
+        notifyDropped(gone);
+        return outcome;
+    }
+
+    /**
+     * Takes the highest-priority waiting utterance as the current one, or null if one is
+     * already playing or nothing is waiting
+     */
+    public synchronized Utterance next() {
+        if (current != null) return null;
+        for (ArrayDeque<Utterance> queue : queues) {
+            Utterance utterance = queue.pollFirst();
+            if (utterance != null) {
+                current = utterance;
+                return utterance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The engine started playing the utterance; records time to speech and remembers the text
+     * for repeat suppression. Returns the utterance the first time it starts, null when a resumed
+     * utterance starts again or the utterance is no longer current.
+     */
+    public synchronized Utterance onStarted(String id, long nowMs) {
+        if (current == null || !current.id.equals(id) || current.started) return null;
+        current.started = true;
+        spoken++;
+        timeToSpeech[current.priority.ordinal()].record(nowMs - current.enqueuedMs);
+        remember(current, nowMs);
+        return current;
+    }
+
+    /**
+     * The engine finished, failed or was stopped for this utterance. Returns false for callbacks
+     * about utterances that were already taken off the engine by a preemption.
+     */
+    public synchronized boolean onFinished(String id) {
+        if (current == null || !current.id.equals(id)) return false;
+        current = null;
+        return true;
+    }
+
+    /**
+     * Drops everything waiting at the given priority, e.g. the rest of an answer superseded by a new one
+     */
+    public void clear(Priority priority) {
+        List<Utterance> gone;
+        synchronized (this) {
+            ArrayDeque<Utterance> queue = queues.get(priority.ordinal());
+            gone = new ArrayList<>(queue);
+            queue.clear();
+            gone = orphaned(gone);
+        }
+        notifyDropped(gone);
+    }
+
+    public synchronized boolean isIdle() {
+        return current == null && getQueueDepth() == 0;
+    }
+
+    /**
+     * Utterances waiting, not counting the one playing
+     */
+    public synchronized int getQueueDepth() {
+        int depth = 0;
+        for (ArrayDeque<Utterance> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    public synchronized LatencyTracker getTimeToSpeech(Priority priority) {
+        return timeToSpeech[priority.ordinal()];
+    }
+
+    public synchronized String stats() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                "speech: spoken %d, queued %d (max %d), suppressed %d, preempted %d, resumed %d, dropped %d",
+                spoken, getQueueDepth(), maxDepth, suppressed, preempted, resumed, dropped));
+        for (Priority priority : Priority.values()) {
+            LatencyTracker tracker = timeToSpeech[priority.ordinal()];
+            if (tracker.getCount() == 0) continue;
+            sb.append(String.format(Locale.US, "; %s to speech p50 %dms p95 %dms",
+                    priority.name().toLowerCase(Locale.US), tracker.p50(), tracker.p95()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Takes the current utterance off the engine; returns it if it is dropped rather than resumed
+     */
+    private Utterance interrupt() {
+        Utterance interrupted = current;
+        current = null;
+        preempted++;
+        if (interrupted.priority == Priority.AMBIENT || interrupted.resumes >= MAX_RESUMES) {
+            return interrupted;
+        }
+        // Re-speak from the start of the sentence; answers arrive sentence by sentence, so little is repeated
+        interrupted.resumes++;
+        resumed++;
+        queues.get(interrupted.priority.ordinal()).addFirst(interrupted);
+        return null;
+    }
+
+    /**
+     * Counts the dropped utterances and keeps those that never started and whose trace has
+     * nothing else waiting or playing. Called with the lock held, after they were removed.
+     */
+    private List<Utterance> orphaned(List<Utterance> gone) {
+        dropped += gone.size();
+        List<Utterance> orphaned = new ArrayList<>(gone.size());
+        for (Utterance utterance : gone) {
+            if (!utterance.started && !hasTrace(utterance.traceId)) orphaned.add(utterance);
+        }
+        return orphaned;
+    }
+
+    private boolean hasTrace(int traceId) {
+        if (current != null && current.traceId == traceId) return true;
+        for (ArrayDeque<Utterance> queue : queues) {
+            for (Utterance waiting : queue) {
+                if (waiting.traceId == traceId) return true;
+            }
+        }
+        return false;
+    }
+
+    private void notifyDropped(List<Utterance> gone) {
+        if (dropListener == null) return;
+        for (Utterance utterance : gone) {
+            dropListener.onDropped(utterance);
+        }
+    }
+
+    private boolean isRepeat(Utterance utterance, long nowMs) {
+        while (!recentSpokenMs.isEmpty() && nowMs - recentSpokenMs.peekFirst() > repeatWindowMs) {
+            recentSpokenMs.pollFirst();
+            recent.pollFirst();
+        }
+        for (Utterance said : recent) {
+            if (TextSimilarity.similarity(said.tokens, utterance.tokens) >= similarityThreshold) return true;
+        }
+        if (current != null && TextSimilarity.similarity(current.tokens, utterance.tokens) >= similarityThreshold) return true;
+        for (Utterance waiting : queues.get(utterance.priority.ordinal())) {
+            if (TextSimilarity.similarity(waiting.tokens, utterance.tokens) >= similarityThreshold) return true;
+        }
+        return false;
+    }
+
+    private void remember(Utterance utterance, long nowMs) {
+        if (utterance.priority == Priority.ANSWER) return;
+        if (recent.size() == RECENT_CAPACITY) {
+            recent.pollFirst();
+            recentSpokenMs.pollFirst();
+        }
+        recent.addLast(utterance);
+        recentSpokenMs.addLast(nowMs);
+    }
+}
@@ -0,0 +1,47 @@
+package com.usbcamera.core;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Word-level comparison of short texts such as spoken alerts and transcripts
+ */
+public final class TextSimilarity {
+
+    private TextSimilarity() {
+    }
+
+    /**
+     * Lower-cased words with punctuation stripped, so "Person ahead!" and "person ahead" match
+     */
+    public static Set<String> words(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) return new HashSet<>();
+        return new HashSet<>(Arrays.asList(normalized.split(" ")));
+    }
+
+    /**
+     * The text lower-cased, with punctuation and runs of spaces collapsed to single spaces
+     */
+    public static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.US).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    /**
+     * Shared words over all words (Jaccard index), 1.0 for identical word sets
+     */
+    public static float similarity(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) return 1f;
+        int shared = 0;
+        for (String token : a) {
+            if (b.contains(token)) shared++;
+        }
+        return shared / (float) (a.size() + b.size() - shared);
+    }
+
+    public static float similarity(String a, String b) {
+        return similarity(words(a), words(b));
+    }
+}
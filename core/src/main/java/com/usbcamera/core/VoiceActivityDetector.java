@@ -0,0 +1,104 @@
+package com.usbcamera.core;
+
+/**
+ * Cheap frame-by-frame voice activity detector for 16-bit PCM.
+ *
+ * A frame counts as voiced when its energy is well above an adaptive noise floor and its
+ * zero-crossing rate is in the range of speech rather than hiss or hum. Speech starts after
+ * onsetFrames voiced frames in a row and ends after hangoverFrames unvoiced ones, so short
+ * clicks do not trigger it and short pauses between words do not end it. The noise floor
+ * falls quickly and rises slowly, and only moves while nobody is speaking.
+ */
+public class VoiceActivityDetector {
+    private static final double MIN_SPEECH_DB = -50; // dBFS; quieter is never speech
+    private static final double FLOOR_RISE = 0.02;   // per frame, while above the floor
+    private static final double FLOOR_FALL = 0.3;
+    private static final double INITIAL_FLOOR_DB = -60;
+    private static final float MIN_ZCR = 0.01f;      // below: hum and rumble
+    private static final float MAX_ZCR = 0.45f;      // above: hiss and wind
+
+    private final double thresholdDb;
+    private final int onsetFrames;
+    private final int hangoverFrames;
+
+    private double noiseFloorDb = INITIAL_FLOOR_DB;
+    private double lastEnergyDb = -120;
+    private boolean speaking = false;
+    private int voicedRun = 0;
+    private int unvoicedRun = 0;
+
+    /**
+     * @param thresholdDb how far above the noise floor a frame must be to count as voiced
+     */
+    public VoiceActivityDetector(double thresholdDb, int onsetFrames, int hangoverFrames) {
+        this.thresholdDb = thresholdDb;
+        this.onsetFrames = onsetFrames;
+        this.hangoverFrames = hangoverFrames;
+    }
+
+    /**
+     * Classifies one frame. Returns true only on the frame where speech is confirmed to start.
+     */
+    public boolean process(short[] pcm, int offset, int length) {
+        if (length <= 0) return false;
+        long sumSquares = 0;
+        int crossings = 0;
+        short previous = pcm[offset];
+        for (int i = offset; i < offset + length; i++) {
+            short sample = pcm[i];
+            sumSquares += sample * sample;
+            if ((sample ^ previous) < 0) crossings++;
+            previous = sample;
+        }
+        double rms = Math.sqrt(sumSquares / (double) length);
+        double energyDb = 20 * Math.log10(Math.max(rms, 1) / 32768.0);
+        float zcr = crossings / (float) length;
+        lastEnergyDb = energyDb;
+
+        boolean voiced = energyDb > MIN_SPEECH_DB
+                && energyDb > noiseFloorDb + thresholdDb
+                && zcr >= MIN_ZCR && zcr <= MAX_ZCR;
+
+        if (!speaking) {
+            double rate = energyDb < noiseFloorDb ? FLOOR_FALL : FLOOR_RISE;
+            noiseFloorDb += (energyDb - noiseFloorDb) * rate;
+        }
+
+        if (voiced) {
+            voicedRun++;
+            unvoicedRun = 0;
+            if (!speaking && voicedRun >= onsetFrames) {
+                speaking = true;
+                return true;
+            }
+        } else {
+            unvoicedRun++;
+            voicedRun = 0;
+            if (speaking && unvoicedRun >= hangoverFrames) {
+                speaking = false;
+            }
+        }
+        return false;
+    }
+
+    public boolean isSpeaking() {
+        return speaking;
+    }
+
+    public double getNoiseFloorDb() {
+        return noiseFloorDb;
+    }
+
+    public double getLastEnergyDb() {
+        return lastEnergyDb;
+    }
+
+    /**
+     * Forgets the current speech state but keeps the learned noise floor
+     */
+    public void reset() {
+        speaking = false;
+        voicedRun = 0;
+        unvoicedRun = 0;
+    }
+}
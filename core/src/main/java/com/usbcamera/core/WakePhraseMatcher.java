@@ -0,0 +1,90 @@
+package com.usbcamera.core;
+
+import java.util.Locale;
+
+/**
+ * Finds a wake phrase at the start of a transcript and returns what followed it.
+ *
+ * Recognizers spell names inconsistently, so each phrase word may be off by one edit (two for
+ * long words) or be the start of a longer word, and the phrase may be preceded by a word of
+ * noise. When the recognizer only started listening after the user began speaking, the first
+ * phrase words may be missing; allowTruncated then accepts the last phrase word on its own.
+ */
+public class WakePhraseMatcher {
+    private static final int MAX_LEADING_WORDS = 1;
+
+    private final String[] phrase;
+
+    public WakePhraseMatcher(String wakePhrase) {
+        phrase = split(wakePhrase);
+    }
+
+    /**
+     * The words after the wake phrase ("" if nothing followed it), or null if the transcript
+     * does not start with the phrase
+     */
+    public String match(String transcript, boolean allowTruncated) {
+        String[] words = split(transcript);
+        if (words.length == 0 || phrase.length == 0) return null;
+        for (int start = 0; start <= MAX_LEADING_WORDS && start < words.length; start++) {
+            int end = matchAt(words, start, 0);
+            if (end < 0 && allowTruncated && phrase.length > 1) {
+                end = matchAt(words, start, phrase.length - 1);
+            }
+            if (end >= 0) return join(words, end);
+        }
+        return null;
+    }
+
+    private int matchAt(String[] words, int start, int fromPhraseWord) {
+        int w = start;
+        for (int p = fromPhraseWord; p < phrase.length; p++, w++) {
+            if (w >= words.length || !close(words[w], phrase[p])) return -1;
+        }
+        return w;
+    }
+
+    private static boolean close(String word, String target) {
+        int allowed = target.length() >= 7 ? 2 : target.length() >= 4 ? 1 : 0;
+        if (allowed > 0 && word.startsWith(target)) return true; // "assist" heard as "assistant"
+        return editDistance(word, target, allowed) <= allowed;
+    }
+
+    /**
+     * Levenshtein distance, giving up early once it exceeds limit
+     */
+    static int editDistance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) return limit + 1;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) return limit + 1;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static String[] split(String text) {
+        String normalized = text == null ? "" : text.toLowerCase(Locale.US).replaceAll("[^\\p{L}\\p{N}']+", " ").trim();
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    private static String join(String[] words, int from) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < words.length; i++) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(words[i]);
+        }
+        return sb.toString();
+    }
+}
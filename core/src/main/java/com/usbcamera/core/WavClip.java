@@ -0,0 +1,74 @@
+package com.usbcamera.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * PCM audio read from a RIFF/WAVE file, such as TextToSpeech.synthesizeToFile() writes
+ */
+public final class WavClip {
+    private static final int FORMAT_PCM = 1;
+
+    public final int sampleRate;
+    public final int channels;
+    public final int bitsPerSample;
+    /** PCM data only, without the header */
+    public final byte[] pcm;
+
+    private WavClip(int sampleRate, int channels, int bitsPerSample, byte[] pcm) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.pcm = pcm;
+    }
+
+    public int frameCount() {
+        return pcm.length / (channels * bitsPerSample / 8);
+    }
+
+    public long durationMs() {
+        return frameCount() * 1000L / sampleRate;
+    }
+
+    /**
+     * Parses 8- or 16-bit integer PCM; anything else is rejected
+     */
+    public static WavClip parse(byte[] file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        if (file.length < 12 || buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) { // "RIFF", "WAVE"
+            throw new IOException("Not a WAVE file");
+        }
+
+        int sampleRate = 0;
+        int channels = 0;
+        int bits = 0;
+        int offset = 12;
+        while (offset + 8 <= file.length) {
+            int chunkId = buffer.getInt(offset);
+            int chunkSize = buffer.getInt(offset + 4);
+            int body = offset + 8;
+            if (chunkId == 0x20746d66) { // "fmt "
+                if (chunkSize < 16 || chunkSize > file.length - body) throw new IOException("Truncated fmt chunk");
+                if (buffer.getShort(body) != FORMAT_PCM) throw new IOException("Not integer PCM");
+                channels = buffer.getShort(body + 2);
+                sampleRate = buffer.getInt(body + 4);
+                bits = buffer.getShort(body + 14);
+            } else if (chunkId == 0x61746164) { // "data"
+                if (sampleRate == 0) throw new IOException("data chunk before fmt chunk");
+                if (bits != 8 && bits != 16) throw new IOException(bits + "-bit PCM not supported");
+                // Streaming writers may leave the size unset; take what is there
+                int length = chunkSize <= 0 || chunkSize > file.length - body ? file.length - body : chunkSize;
+                byte[] pcm = new byte[length];
+                System.arraycopy(file, body, pcm, 0, length);
+                return new WavClip(sampleRate, channels, bits, pcm);
+            }
+            // Only the data chunk may leave its size unset; a negative size elsewhere would never advance
+            if (chunkSize < 0) throw new IOException("Bad chunk size " + chunkSize);
+            long next = (long) body + chunkSize + (chunkSize & 1);
+            if (next > file.length) break;
+            offset = (int) next;
+        }
+        throw new IOException("No data chunk");
+    }
+}
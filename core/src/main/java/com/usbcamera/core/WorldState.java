@@ -0,0 +1,93 @@
+package com.usbcamera.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Obstacles Active Mode already knows about, so each structured answer is reduced to what
+ * changed. An object is announced when it first appears, when it comes closer, or when it
+ * becomes more urgent; the same object at the same distance stays quiet. An object is matched
+ * by label and a direction at most one step away, since things drift across the view as the
+ * person walks, and is forgotten after forgetAfterMs without being seen.
+ */
+public class WorldState {
+
+    private static final class Known {
+        Obstacle obstacle;
+        long lastSeenMs;
+
+        Known(Obstacle obstacle, long lastSeenMs) {
+            this.obstacle = obstacle;
+            this.lastSeenMs = lastSeenMs;
+        }
+    }
+
+    private final long forgetAfterMs;
+    private final List<Known> known = new ArrayList<>();
+
+    private long updates = 0;
+    private long reported = 0;
+    private long announced = 0;
+
+    public WorldState(long forgetAfterMs) {
+        this.forgetAfterMs = forgetAfterMs;
+    }
+
+    /**
+     * Takes the obstacles in a new answer and returns those worth announcing, most urgent first
+     */
+    public synchronized List<Obstacle> update(List<Obstacle> observed, long nowMs) {
+        updates++;
+        reported += observed.size();
+        Iterator<Known> it = known.iterator();
+        while (it.hasNext()) {
+            if (nowMs - it.next().lastSeenMs > forgetAfterMs) it.remove();
+        }
+
+        List<Known> unmatched = new ArrayList<>(known);
+        List<Obstacle> changes = new ArrayList<>();
+        for (Obstacle obstacle : observed) {
+            Known match = findMatch(unmatched, obstacle);
+            if (match == null) {
+                known.add(new Known(obstacle, nowMs));
+                changes.add(obstacle);
+                continue;
+            }
+            unmatched.remove(match);
+            boolean closer = obstacle.distance.compareTo(match.obstacle.distance) < 0;
+            boolean moreUrgent = obstacle.urgency.compareTo(match.obstacle.urgency) > 0;
+            if (closer || moreUrgent) changes.add(obstacle);
+            match.obstacle = obstacle;
+            match.lastSeenMs = nowMs;
+        }
+        Collections.sort(changes, Obstacle.MOST_URGENT_FIRST);
+        announced += changes.size();
+        return changes;
+    }
+
+    private static Known findMatch(List<Known> candidates, Obstacle obstacle) {
+        Known best = null;
+        int bestStep = 2;
+        for (Known candidate : candidates) {
+            if (!candidate.obstacle.label.equals(obstacle.label)) continue;
+            int step = Math.abs(candidate.obstacle.direction.ordinal() - obstacle.direction.ordinal());
+            if (step < bestStep) {
+                best = candidate;
+                bestStep = step;
+            }
+        }
+        return best;
+    }
+
+    public synchronized void reset() {
+        known.clear();
+    }
+
+    public synchronized String stats() {
+        return String.format(Locale.US, "world state: %d answers, %d objects reported, %d announced, %d known",
+                updates, reported, announced, known.size());
+    }
+}
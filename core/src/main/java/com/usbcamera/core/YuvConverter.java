@@ -0,0 +1,61 @@
+package com.usbcamera.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts NV21 preview frames to ARGB, downscaling in the same pass so only
+ * the output pixels are ever computed.
+ */
+public final class YuvConverter {
+
+    private YuvConverter() {
+    }
+
+    /**
+     * Output size for a source frame scaled so its longest side is at most maxDimension
+     */
+    public static int scaledWidth(int width, int height, int maxDimension) {
+        if (width <= maxDimension && height <= maxDimension) return width;
+        return width >= height ? maxDimension : Math.round(width * (float) maxDimension / height);
+    }
+
+    public static int scaledHeight(int width, int height, int maxDimension) {
+        if (width <= maxDimension && height <= maxDimension) return height;
+        return height >= width ? maxDimension : Math.round(height * (float) maxDimension / width);
+    }
+
+    /**
+     * Nearest-neighbour NV21 to ARGB conversion into dst (dstWidth * dstHeight pixels)
+     */
+    public static void nv21ToArgb(ByteBuffer nv21, int width, int height, int[] dst, int dstWidth, int dstHeight) {
+        int frameSize = width * height;
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int sy = dy * height / dstHeight;
+            int yRow = sy * width;
+            int uvRow = frameSize + (sy >> 1) * width;
+            int out = dy * dstWidth;
+            for (int dx = 0; dx < dstWidth; dx++) {
+                int sx = dx * width / dstWidth;
+                int y = (nv21.get(yRow + sx) & 0xFF) - 16;
+                int uvIndex = uvRow + (sx & ~1);
+                int v = (nv21.get(uvIndex) & 0xFF) - 128;
+                int u = (nv21.get(uvIndex + 1) & 0xFF) - 128;
+                if (y < 0) y = 0;
+
+                // BT.601 integer coefficients scaled by 1024
+                int y1192 = 1192 * y;
+                int r = y1192 + 1634 * v;
+                int g = y1192 - 833 * v - 400 * u;
+                int b = y1192 + 2066 * u;
+                r = clamp(r) >> 10;
+                g = clamp(g) >> 10;
+                b = clamp(b) >> 10;
+                dst[out + dx] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 262143 ? 262143 : value);
+    }
+}
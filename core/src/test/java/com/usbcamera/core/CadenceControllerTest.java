@@ -0,0 +1,49 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CadenceControllerTest {
+
+    @Test
+    public void constructorClampsSavedBounds() {
+        CadenceController cadence = new CadenceController(0, 0, 12);
+
+        assertEquals(CadenceController.MIN_INTERVAL_FLOOR_MS, cadence.getMinIntervalMs());
+        assertEquals(CadenceController.MIN_INTERVAL_FLOOR_MS, cadence.getMaxIntervalMs());
+        assertTrue(cadence.nextIntervalMs(-1, -1, 1f, 1f) >= CadenceController.MIN_INTERVAL_FLOOR_MS);
+    }
+
+    @Test
+    public void minNeverExceedsMax() {
+        CadenceController cadence = new CadenceController(8000, 2000, 12);
+
+        assertEquals(2000, cadence.getMinIntervalMs());
+        assertEquals(2000, cadence.getMaxIntervalMs());
+    }
+
+    @Test
+    public void motionMovesBetweenBounds() {
+        CadenceController cadence = new CadenceController(1000, 8000, 60);
+
+        assertEquals(8000, cadence.nextIntervalMs(-1, -1, 0f, 1f));
+        assertEquals(1000, cadence.nextIntervalMs(-1, -1, 1f, 1f));
+    }
+
+    @Test
+    public void medianLatencySetsFloor() {
+        CadenceController cadence = new CadenceController(1000, 8000, 60);
+
+        assertEquals(3000, cadence.nextIntervalMs(3000, 5000, 1f, 1f));
+    }
+
+    @Test
+    public void drainedBudgetStretchesInterval() {
+        CadenceController cadence = new CadenceController(1000, 20000, 12); // 5 s per request
+
+        assertEquals(1000, cadence.nextIntervalMs(-1, -1, 1f, 0.6f));
+        assertEquals(15000, cadence.nextIntervalMs(-1, -1, 1f, 0f));
+    }
+}
@@ -0,0 +1,92 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1000);
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertTrue(breaker.allowRequest(0));
+
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(500));
+        assertEquals(1, breaker.getRejected());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000);
+        breaker.onFailure(0);
+        breaker.onSuccess();
+        breaker.onFailure(0);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenLetsOneProbeThrough() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000);
+        breaker.onFailure(0);
+
+        assertTrue(breaker.allowRequest(1000));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(1001));
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void failedProbeReopens() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000);
+        List<String> changes = new ArrayList<>();
+        breaker.setListener((from, to) -> changes.add(from + ">" + to));
+        breaker.onFailure(0);
+        breaker.allowRequest(1000);
+        breaker.onFailure(1200);
+
+        assertTrue(breaker.isOpen(1500));
+        assertFalse(breaker.isOpen(2200));
+        assertEquals("[CLOSED>OPEN, OPEN>HALF_OPEN, HALF_OPEN>OPEN]", changes.toString());
+    }
+
+    @Test
+    public void neutralOutcomeFreesProbeSlot() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000);
+        breaker.onFailure(0);
+        breaker.allowRequest(1000);
+        breaker.onNeutralOutcome();
+
+        assertTrue(breaker.allowRequest(1001));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void probeRefusedByQuotaIsGivenBack() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000);
+        QuotaManager quota = new QuotaManager(2, 1000, 1, 0, TimeZone.getTimeZone("UTC"), null, 0);
+        quota.tryAcquire(PriorityExecutor.Priority.BACKGROUND, 0);
+        breaker.onFailure(0);
+
+        // What GeminiClient does for an Active Mode tick: breaker first, then quota
+        assertTrue(breaker.allowRequest(1000));
+        assertTrue(quota.tryAcquire(PriorityExecutor.Priority.BACKGROUND, 1000) > 0);
+        breaker.onNeutralOutcome();
+
+        assertFalse(breaker.isOpen(61000));
+        assertEquals(0, quota.tryAcquire(PriorityExecutor.Priority.BACKGROUND, 61000));
+        assertTrue(breaker.allowRequest(61000));
+    }
+}
@@ -0,0 +1,62 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HedgePolicyTest {
+
+    @Test
+    public void noHedgeUntilWarmedUp() {
+        HedgePolicy policy = new HedgePolicy("test", 90, 100, 5000, 1f, 0f);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(HedgePolicy.NO_HEDGE, policy.startRequest());
+            policy.onFirstByte(HedgePolicy.NO_HEDGE, 400, false);
+        }
+        assertEquals(400, policy.startRequest());
+    }
+
+    @Test
+    public void delayIsClampedToBounds() {
+        HedgePolicy policy = new HedgePolicy("test", 90, 500, 1000, 1f, 0f);
+        warmUp(policy, 100);
+        assertEquals(500, policy.startRequest());
+
+        warmUp(policy, 3000);
+        assertEquals(1000, policy.startRequest());
+    }
+
+    @Test
+    public void hedgeWinsStillSampleThePrimary() {
+        HedgePolicy policy = new HedgePolicy("test", 90, 100, 10000, 1f, 0f);
+        warmUp(policy, 400);
+        long delay = policy.startRequest();
+
+        // Slow primaries keep losing to the hedge at delay + 300 ms; their lower bound is recorded
+        for (int i = 0; i < 64; i++) {
+            policy.startRequest();
+            policy.onFirstByte(delay, delay + 300, true);
+        }
+        assertTrue(policy.startRequest() >= delay + 300);
+        assertEquals(64, policy.getHedgeWins());
+    }
+
+    @Test
+    public void hedgeBudgetIsCapped() {
+        HedgePolicy policy = new HedgePolicy("test", 90, 100, 5000, 0.25f, 0f);
+        for (int i = 0; i < 4; i++) policy.startRequest();
+
+        assertTrue(policy.tryStartHedge());
+        assertFalse(policy.tryStartHedge());
+        assertEquals(1, policy.getHedgesSent());
+    }
+
+    private static void warmUp(HedgePolicy policy, long latencyMs) {
+        for (int i = 0; i < 64; i++) {
+            policy.startRequest();
+            policy.onFirstByte(HedgePolicy.NO_HEDGE, latencyMs, false);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LatestFrameSchedulerTest {
+    private final List<String> dispatched = new ArrayList<>();
+    private final List<String> dropped = new ArrayList<>();
+    private final LatestFrameScheduler<String> scheduler = new LatestFrameScheduler<>(1000,
+            (frame, captureTimeMs) -> dispatched.add(frame), dropped::add);
+
+    @Test
+    public void sendsRightAwayWhenIdle() {
+        scheduler.submit("a", 0);
+
+        assertEquals(Arrays.asList("a"), dispatched);
+        assertTrue(scheduler.isInFlight());
+    }
+
+    @Test
+    public void newerFrameReplacesWaitingOne() {
+        scheduler.submit("a", 0);
+        scheduler.submit("b", 100);
+        scheduler.submit("c", 200);
+
+        assertEquals(Arrays.asList("a"), dispatched);
+        assertEquals(Arrays.asList("b"), dropped);
+        assertEquals(1, scheduler.getSuperseded());
+
+        assertTrue(scheduler.complete(0, 500));
+        assertEquals(Arrays.asList("a", "c"), dispatched);
+    }
+
+    @Test
+    public void idleAfterLastCompletion() {
+        scheduler.submit("a", 0);
+        scheduler.complete(0, 300);
+
+        assertFalse(scheduler.isInFlight());
+        scheduler.submit("b", 400);
+        assertEquals(Arrays.asList("a", "b"), dispatched);
+    }
+
+    @Test
+    public void slowResultIsReportedStale() {
+        scheduler.submit("a", 0);
+
+        assertFalse(scheduler.complete(0, 1500));
+        assertEquals(1, scheduler.getStaleResults());
+        assertEquals(1500, scheduler.getLastAgeMs());
+    }
+
+    @Test
+    public void waitingFrameTooOldToSendIsDropped() {
+        scheduler.submit("a", 0);
+        scheduler.submit("b", 100);
+
+        assertFalse(scheduler.complete(0, 1200)); // "b" is now 1100 ms old
+        assertEquals(Arrays.asList("a"), dispatched);
+        assertEquals(Arrays.asList("b"), dropped);
+        assertEquals(1, scheduler.getExpired());
+        assertFalse(scheduler.isInFlight());
+
+        scheduler.submit("c", 1300);
+        assertEquals(Arrays.asList("a", "c"), dispatched);
+    }
+
+    @Test
+    public void clearPendingReleasesWaitingFrame() {
+        scheduler.submit("a", 0);
+        scheduler.submit("b", 100);
+        scheduler.clearPending();
+
+        assertEquals(Arrays.asList("b"), dropped);
+        scheduler.complete(0, 200);
+        assertEquals(Arrays.asList("a"), dispatched);
+        assertFalse(scheduler.isInFlight());
+    }
+}
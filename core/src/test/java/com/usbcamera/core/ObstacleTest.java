@@ -0,0 +1,45 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class ObstacleTest {
+
+    @Test
+    public void describesDirectionAndCloseness() {
+        assertEquals("Chair ahead, on your left",
+                new Obstacle("chair", Obstacle.Direction.LEFT, Obstacle.Distance.MEDIUM, Obstacle.Urgency.CAUTION).describe());
+        assertEquals("Person ahead, close",
+                new Obstacle("person", Obstacle.Direction.AHEAD, Obstacle.Distance.NEAR, Obstacle.Urgency.URGENT).describe());
+    }
+
+    @Test
+    public void knownPhrasesCoverEveryWording() {
+        List<String> phrases = Obstacle.phrasesFor("person");
+        for (Obstacle.Direction direction : Obstacle.Direction.values()) {
+            for (Obstacle.Distance distance : Obstacle.Distance.values()) {
+                for (Obstacle.Urgency urgency : Obstacle.Urgency.values()) {
+                    String said = new Obstacle("person", direction, distance, urgency).describe();
+                    assertTrue(said, phrases.contains(said));
+                }
+            }
+        }
+        assertEquals(6, phrases.size());
+    }
+
+    @Test
+    public void fromFieldsToleratesNearMisses() {
+        Obstacle obstacle = Obstacle.fromFields(" Door ", "to the RIGHT", "very close", "high");
+
+        assertEquals("door", obstacle.label);
+        assertEquals(Obstacle.Direction.RIGHT, obstacle.direction);
+        assertEquals(Obstacle.Distance.NEAR, obstacle.distance);
+        assertEquals(Obstacle.Urgency.URGENT, obstacle.urgency);
+        assertNull(Obstacle.fromFields("  ", "left", "near", "urgent"));
+    }
+}
@@ -0,0 +1,69 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PartialTranscriptTest {
+    private final PartialTranscript transcript = new PartialTranscript(3, 300);
+
+    @Test
+    public void sameWordsMatchIgnoringCaseAndPunctuation() {
+        assertTrue(transcript.matches("what is in front of me", "What is in front of me?"));
+    }
+
+    @Test
+    public void finalThatAddsWordsDoesNotMatch() {
+        // A pause mid-question: the answer to the cut-off question must not be kept
+        assertFalse(transcript.matches("read the sign on the", "read the sign on the right"));
+        assertFalse(transcript.matches("what color is", "what color is this shirt"));
+    }
+
+    @Test
+    public void reorderedOrChangedWordsDoNotMatch() {
+        // The first pair has the same words, but they ask different things
+        assertFalse(transcript.matches("is the door open", "the door is open"));
+        assertFalse(transcript.matches("read the sign on the left", "read the sign on the right"));
+    }
+
+    @Test
+    public void prefixMustEndOnAWord() {
+        assertFalse(transcript.matches("is this a can", "is this a candle"));
+    }
+
+    @Test
+    public void speculatesOnceStable() {
+        assertNull(transcript.update("what is this", 0));
+        assertEquals("what is this", transcript.update("what is this", 300));
+        assertNull(transcript.update("What is this?", 700));
+    }
+
+    @Test
+    public void changedPartialReplacesSpeculation() {
+        transcript.update("is the door open", 0);
+        transcript.update("is the door open", 300);
+
+        transcript.update("is the door locked", 400);
+        assertEquals("is the door locked", transcript.update("is the door locked", 700));
+    }
+
+    @Test
+    public void stablePartialThatAddsWordsReplacesSpeculation() {
+        transcript.update("read the sign on the", 0);
+        assertEquals("read the sign on the", transcript.update("read the sign on the", 300));
+
+        transcript.update("read the sign on the right", 800);
+        assertEquals("read the sign on the right", transcript.update("read the sign on the right", 1100));
+        assertEquals("read the sign on the right", transcript.getSpeculated());
+    }
+
+    @Test
+    public void tooShortPartialIsIgnored() {
+        transcript.update("hello", 0);
+
+        assertNull(transcript.onEndOfSpeech());
+    }
+}
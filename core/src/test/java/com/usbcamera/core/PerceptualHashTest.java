@@ -0,0 +1,90 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PerceptualHashTest {
+    private static final int WIDTH = 90;
+    private static final int HEIGHT = 80;
+
+    @Test
+    public void distanceCountsDifferingBits() {
+        assertEquals(0, PerceptualHash.distance(0x5L, 0x5L));
+        assertEquals(2, PerceptualHash.distance(0b1010L, 0b0110L));
+        assertEquals(64, PerceptualHash.distance(0L, -1L));
+    }
+
+    @Test
+    public void uniformFrameHashesToZero() {
+        assertEquals(0L, PerceptualHash.dHash(fill(0xFF808080), WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void brightnessFallingToTheRightSetsEveryBit() {
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                argb[y * WIDTH + x] = gray(255 - x * 255 / WIDTH);
+            }
+        }
+        assertEquals(-1L, PerceptualHash.dHash(argb, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void smallExposureChangeKeepsHashClose() {
+        int[] scene = gradientScene(0);
+        int[] brighter = gradientScene(12);
+
+        long a = PerceptualHash.dHash(scene, WIDTH, HEIGHT);
+        long b = PerceptualHash.dHash(brighter, WIDTH, HEIGHT);
+        assertTrue(PerceptualHash.distance(a, b) <= 4);
+    }
+
+    @Test
+    public void differentScenesAreFarApart() {
+        long a = PerceptualHash.dHash(gradientScene(0), WIDTH, HEIGHT);
+        long b = PerceptualHash.dHash(mirrored(gradientScene(0)), WIDTH, HEIGHT);
+        assertTrue(PerceptualHash.distance(a, b) > 20);
+    }
+
+    @Test
+    public void tooSmallFrameHashesToZero() {
+        assertEquals(0L, PerceptualHash.dHash(new int[8 * 8], 8, 8));
+    }
+
+    private static int[] gradientScene(int offset) {
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // Bright blob left of centre on a darker, uneven background
+                int dx = x - 30;
+                int dy = y - 40;
+                int value = dx * dx + dy * dy < 400 ? 220 : 40 + (x * 7 + y * 3) % 60;
+                argb[y * WIDTH + x] = gray(Math.min(255, value + offset));
+            }
+        }
+        return argb;
+    }
+
+    private static int[] mirrored(int[] argb) {
+        int[] out = new int[argb.length];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                out[y * WIDTH + x] = argb[y * WIDTH + (WIDTH - 1 - x)];
+            }
+        }
+        return out;
+    }
+
+    private static int[] fill(int color) {
+        int[] argb = new int[WIDTH * HEIGHT];
+        java.util.Arrays.fill(argb, color);
+        return argb;
+    }
+
+    private static int gray(int v) {
+        return 0xFF000000 | (v << 16) | (v << 8) | v;
+    }
+}
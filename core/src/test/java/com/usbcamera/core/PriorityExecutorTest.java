@@ -0,0 +1,106 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PriorityExecutorTest {
+    private final PriorityExecutor executor = new PriorityExecutor("test", 1);
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> discarded = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void interactiveRunsBeforeQueuedBackground() throws Exception {
+        blockWorker();
+        submit(PriorityExecutor.Priority.BACKGROUND, "b1");
+        submit(PriorityExecutor.Priority.BACKGROUND, "b2");
+        submit(PriorityExecutor.Priority.INTERACTIVE, "i1");
+        CountDownLatch done = new CountDownLatch(1);
+        executor.submit(PriorityExecutor.Priority.BACKGROUND, done::countDown, null);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("i1", "b1", "b2"), ran);
+    }
+
+    @Test
+    public void cancelledTaskRunsItsDiscardAction() throws Exception {
+        blockWorker();
+        PriorityExecutor.Task task = submit(PriorityExecutor.Priority.BACKGROUND, "b1");
+
+        assertTrue(executor.cancel(task));
+        assertFalse(executor.cancel(task));
+        assertEquals(Arrays.asList("b1"), discarded);
+    }
+
+    @Test
+    public void shutdownLetsTheRunningTaskFinish() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        executor.submit(PriorityExecutor.Priority.INTERACTIVE, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+        }, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        submit(PriorityExecutor.Priority.BACKGROUND, "b1");
+
+        executor.shutdown();
+        assertEquals(Arrays.asList("b1"), discarded);
+        release.countDown();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+        assertTrue(ran.isEmpty());
+    }
+
+    @Test
+    public void submitAfterShutdownIsDiscarded() {
+        executor.shutdown();
+        submit(PriorityExecutor.Priority.INTERACTIVE, "i1");
+
+        assertEquals(Arrays.asList("i1"), discarded);
+    }
+
+    private PriorityExecutor.Task submit(PriorityExecutor.Priority priority, String name) {
+        return executor.submit(priority, () -> ran.add(name), () -> discarded.add(name));
+    }
+
+    /**
+     * Occupies the only worker until release is counted down
+     */
+    private void blockWorker() throws InterruptedException {
+        executor.submit(PriorityExecutor.Priority.INTERACTIVE, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,136 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class QuotaManagerTest {
+    private static final PriorityExecutor.Priority INTERACTIVE = PriorityExecutor.Priority.INTERACTIVE;
+    private static final PriorityExecutor.Priority BACKGROUND = PriorityExecutor.Priority.BACKGROUND;
+    private static final TimeZone PACIFIC = TimeZone.getTimeZone("America/Los_Angeles");
+    // 2026-03-02 10:00 Pacific
+    private static final long MORNING = at(2026, Calendar.MARCH, 2, 10, 0);
+
+    @Test
+    public void neverAdmitsMoreThanTheLimitInAnyMinute() {
+        QuotaManager quota = new QuotaManager(15, 1000, 0, 0, PACIFIC, null, MORNING);
+        // Try every second for five minutes: a refilling bucket would admit ~2x in the first minute
+        long[] sent = new long[400];
+        int count = 0;
+        for (long t = MORNING; t < MORNING + 5 * 60000; t += 1000) {
+            if (quota.tryAcquire(INTERACTIVE, t) == 0) sent[count++] = t;
+        }
+        for (int i = 15; i < count; i++) {
+            assertTrue("16 requests within a minute", sent[i] - sent[i - 15] >= 60000);
+        }
+        assertEquals(75, count);
+    }
+
+    @Test
+    public void waitsUntilTheOldestRequestAgesOut() {
+        QuotaManager quota = new QuotaManager(3, 1000, 0, 0, PACIFIC, null, MORNING);
+        quota.tryAcquire(INTERACTIVE, MORNING);
+        quota.tryAcquire(INTERACTIVE, MORNING + 10000);
+        quota.tryAcquire(INTERACTIVE, MORNING + 20000);
+
+        assertEquals(30000, quota.tryAcquire(INTERACTIVE, MORNING + 30000));
+        assertEquals(0, quota.tryAcquire(INTERACTIVE, MORNING + 60000));
+    }
+
+    @Test
+    public void backgroundLeavesTheReserveForQuestions() {
+        QuotaManager quota = new QuotaManager(5, 1000, 2, 0, PACIFIC, null, MORNING);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, quota.tryAcquire(BACKGROUND, MORNING));
+        }
+
+        assertTrue(quota.tryAcquire(BACKGROUND, MORNING) > 0);
+        assertEquals(0f, quota.remainingFraction(BACKGROUND, MORNING), 0f);
+        assertEquals(0, quota.tryAcquire(INTERACTIVE, MORNING));
+        assertEquals(0, quota.tryAcquire(INTERACTIVE, MORNING));
+        assertTrue(quota.tryAcquire(INTERACTIVE, MORNING) > 0);
+    }
+
+    @Test
+    public void retriesAndHedgesCountAgainstTheMinute() {
+        QuotaManager quota = new QuotaManager(2, 1000, 0, 0, PACIFIC, null, MORNING);
+        quota.tryAcquire(INTERACTIVE, MORNING);
+        quota.consumeExtra(MORNING + 1000);
+        quota.consumeExtra(MORNING + 2000);
+
+        // Two of the three sends must age out; the second went at +1s
+        assertEquals(59000, quota.tryAcquire(INTERACTIVE, MORNING + 2000));
+    }
+
+    @Test
+    public void serverRejectionBlocksUntilOurOldestRequestAgesOut() {
+        QuotaManager quota = new QuotaManager(15, 1000, 0, 0, PACIFIC, null, MORNING);
+        quota.tryAcquire(INTERACTIVE, MORNING);
+        quota.onQuotaExceeded(MORNING + 20000);
+
+        assertEquals(40000, quota.delayUntilAllowedMs(INTERACTIVE, MORNING + 20000));
+        assertEquals(0, quota.delayUntilAllowedMs(INTERACTIVE, MORNING + 60000));
+    }
+
+    @Test
+    public void dailyCapResetsAtMidnightPacificNotGradually() {
+        QuotaManager quota = new QuotaManager(100, 3, 0, 0, PACIFIC, null, MORNING);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, quota.tryAcquire(INTERACTIVE, MORNING + i * 60000));
+        }
+
+        long midnight = at(2026, Calendar.MARCH, 3, 0, 0);
+        assertEquals(midnight - (MORNING + 3600000), quota.tryAcquire(INTERACTIVE, MORNING + 3600000));
+        assertTrue(quota.tryAcquire(INTERACTIVE, midnight - 1) > 0);
+        assertEquals(0, quota.tryAcquire(INTERACTIVE, midnight));
+    }
+
+    @Test
+    public void dayCountSurvivesRestartOnlyWithinTheSameDay() {
+        MemoryStore store = new MemoryStore();
+        QuotaManager quota = new QuotaManager(100, 3, 0, 0, PACIFIC, store, MORNING);
+        quota.tryAcquire(INTERACTIVE, MORNING);
+        quota.tryAcquire(INTERACTIVE, MORNING);
+        quota.tryAcquire(INTERACTIVE, MORNING);
+
+        QuotaManager sameDay = new QuotaManager(100, 3, 0, 0, PACIFIC, store, MORNING + 3600000);
+        assertTrue(sameDay.tryAcquire(INTERACTIVE, MORNING + 3600000) > 0);
+
+        long nextDay = at(2026, Calendar.MARCH, 3, 9, 0);
+        QuotaManager tomorrow = new QuotaManager(100, 3, 0, 0, PACIFIC, store, nextDay);
+        assertEquals(0, tomorrow.tryAcquire(INTERACTIVE, nextDay));
+    }
+
+    private static long at(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(PACIFIC, Locale.US);
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    private static final class MemoryStore implements QuotaManager.Store {
+        int used;
+        long resetAtMs;
+
+        @Override
+        public int loadDayUsed() {
+            return used;
+        }
+
+        @Override
+        public long loadDayResetAtMs() {
+            return resetAtMs;
+        }
+
+        @Override
+        public void save(int dayUsed, long dayResetAtMs) {
+            used = dayUsed;
+            resetAtMs = dayResetAtMs;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ResponseCacheTest {
+
+    @Test
+    public void nearDuplicateSceneHitsWithinDistance() {
+        ResponseCache cache = new ResponseCache(4, 2, 10000);
+        cache.put(0b1111L, "describe", "A hallway", 0);
+
+        assertEquals("A hallway", cache.get(0b1100L, "describe", 100)); // 2 bits away
+        assertNull(cache.get(0b0000L, "describe", 100)); // 4 bits away
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void differentPromptMisses() {
+        ResponseCache cache = new ResponseCache(4, 2, 10000);
+        cache.put(42L, "describe", "A hallway", 0);
+
+        assertNull(cache.get(42L, "what colour is the door?", 100));
+    }
+
+    @Test
+    public void closestEntryWins() {
+        ResponseCache cache = new ResponseCache(4, 3, 10000);
+        cache.put(0b0111L, "p", "three bits", 0);
+        cache.put(0b0001L, "p", "one bit", 0);
+
+        assertEquals("one bit", cache.get(0b0000L, "p", 100));
+    }
+
+    @Test
+    public void expiredEntriesAreDropped() {
+        ResponseCache cache = new ResponseCache(4, 2, 1000);
+        cache.put(7L, "p", "old", 0);
+
+        assertNull(cache.get(7L, "p", 1001));
+        assertNull(cache.get(6L, "p", 1001));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ResponseCache cache = new ResponseCache(2, 0, 10000);
+        cache.put(1L, "p", "one", 0);
+        cache.put(2L, "p", "two", 0);
+        cache.get(1L, "p", 10); // touch, so 2 is now eldest
+        cache.put(3L, "p", "three", 20);
+
+        assertEquals(2, cache.size());
+        assertEquals("one", cache.get(1L, "p", 30));
+        assertNull(cache.get(2L, "p", 30));
+        assertEquals("three", cache.get(3L, "p", 30));
+    }
+
+    @Test
+    public void nearMatchHitCountsAsUse() {
+        ResponseCache cache = new ResponseCache(2, 1, 10000);
+        cache.put(0b10L, "p", "first", 0);
+        cache.put(0b1000L, "p", "second", 0);
+        cache.get(0b11L, "p", 10); // near hit on the first entry
+        cache.put(0b100000L, "p", "third", 20);
+
+        assertEquals("first", cache.get(0b10L, "p", 30));
+        assertNull(cache.get(0b1000L, "p", 30));
+    }
+}
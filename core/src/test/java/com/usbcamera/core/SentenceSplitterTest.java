@@ -0,0 +1,50 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SentenceSplitterTest {
+
+    @Test
+    public void splitsAcrossChunks() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        List<String> sentences = new ArrayList<>(splitter.feed("There is a door ahe"));
+        sentences.addAll(splitter.feed("ad of you. The handle is"));
+        sentences.addAll(splitter.feed(" on the right."));
+
+        assertEquals(Arrays.asList("There is a door ahead of you."), sentences);
+        assertEquals("The handle is on the right.", splitter.flush());
+        assertNull(splitter.flush());
+    }
+
+    @Test
+    public void shortCommonWordsEndSentences() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        List<String> sentences = splitter.feed("Nothing is in the way, go. The cup is beside it. No. Look up. ");
+
+        assertEquals(Arrays.asList("Nothing is in the way, go.", "The cup is beside it.", "No. Look up."),
+                sentences);
+    }
+
+    @Test
+    public void keepsAbbreviationsAndInitialsTogether() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        List<String> sentences = splitter.feed("The sign says Dr. J. Smith, e.g. a clinic on Main St. next door. ");
+
+        assertEquals(Arrays.asList("The sign says Dr. J. Smith, e.g. a clinic on Main St. next door."), sentences);
+    }
+
+    @Test
+    public void keepsDecimalsTogether() {
+        SentenceSplitter splitter = new SentenceSplitter();
+        List<String> sentences = splitter.feed("The step is about 3.5 meters away. ");
+
+        assertEquals(Arrays.asList("The step is about 3.5 meters away."), sentences);
+    }
+}
@@ -0,0 +1,83 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SpeechSchedulerTest {
+    private final List<Integer> droppedTraces = new ArrayList<>();
+    private final SpeechScheduler scheduler = new SpeechScheduler(5000, 0.6f,
+            utterance -> droppedTraces.add(utterance.traceId));
+
+    @Test
+    public void replacedAmbientDescriptionIsReported() {
+        scheduler.offer("a door ahead", SpeechScheduler.Priority.AMBIENT, 1, 0);
+        scheduler.next();
+        scheduler.offer("a chair on the left", SpeechScheduler.Priority.AMBIENT, 2, 10);
+        scheduler.offer("stairs going down", SpeechScheduler.Priority.AMBIENT, 3, 20);
+
+        assertEquals(Arrays.asList(2), droppedTraces);
+    }
+
+    @Test
+    public void clearedAnswerSentencesAreReported() {
+        scheduler.offer("First sentence.", SpeechScheduler.Priority.ANSWER, 1, 0);
+        scheduler.offer("Second sentence.", SpeechScheduler.Priority.ANSWER, 1, 0);
+        scheduler.offer("Another answer.", SpeechScheduler.Priority.ANSWER, 2, 0);
+
+        scheduler.clear(SpeechScheduler.Priority.ANSWER);
+
+        assertEquals(Arrays.asList(1, 1, 2), droppedTraces);
+        assertTrue(scheduler.isIdle());
+    }
+
+    @Test
+    public void traceStillPlayingIsNotReported() {
+        scheduler.offer("First sentence.", SpeechScheduler.Priority.ANSWER, 1, 0);
+        scheduler.offer("Second sentence.", SpeechScheduler.Priority.ANSWER, 1, 0);
+        SpeechScheduler.Utterance playing = scheduler.next();
+        scheduler.onStarted(playing.id, 10);
+
+        scheduler.clear(SpeechScheduler.Priority.ANSWER);
+
+        assertTrue(droppedTraces.isEmpty());
+    }
+
+    @Test
+    public void preemptedAmbientThatNeverStartedIsReported() {
+        scheduler.offer("a door ahead", SpeechScheduler.Priority.AMBIENT, 1, 0);
+        scheduler.next();
+
+        assertEquals(SpeechScheduler.Outcome.PREEMPT,
+                scheduler.offer("car approaching", SpeechScheduler.Priority.URGENT, 2, 10));
+        assertEquals(Arrays.asList(1), droppedTraces);
+    }
+
+    @Test
+    public void preemptedAnswerIsResumedNotReported() {
+        scheduler.offer("The answer.", SpeechScheduler.Priority.ANSWER, 1, 0);
+        scheduler.next();
+
+        scheduler.offer("car approaching", SpeechScheduler.Priority.URGENT, 2, 10);
+
+        assertTrue(droppedTraces.isEmpty());
+        assertEquals(2, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void obstaclesInTheSameTemplateAreNotRepeats() {
+        scheduler.offer("Person ahead, on your left, close", SpeechScheduler.Priority.URGENT, false, 1, 0);
+        scheduler.onStarted(scheduler.next().id, 10);
+
+        // Five of seven words shared: the word-overlap check would take it for the person again
+        assertEquals(SpeechScheduler.Outcome.SUPPRESSED,
+                scheduler.offer("Pole ahead, on your left, close", SpeechScheduler.Priority.URGENT, 2, 1000));
+        assertEquals(SpeechScheduler.Outcome.QUEUED,
+                scheduler.offer("Pole ahead, on your left, close", SpeechScheduler.Priority.URGENT, false, 3, 1000));
+    }
+}
@@ -0,0 +1,88 @@
+package com.usbcamera.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class WavClipTest {
+
+    @Test
+    public void parsesPcm16() throws IOException {
+        WavClip clip = WavClip.parse(wav(0, 400));
+
+        assertEquals(16000, clip.sampleRate);
+        assertEquals(1, clip.channels);
+        assertEquals(16, clip.bitsPerSample);
+        assertEquals(200, clip.frameCount());
+    }
+
+    @Test
+    public void skipsUnknownChunks() throws IOException {
+        WavClip clip = WavClip.parse(wav(5, 400));
+
+        assertEquals(200, clip.frameCount());
+    }
+
+    @Test
+    public void unsetDataSizeTakesTheRestOfTheFile() throws IOException {
+        byte[] file = wav(0, 400);
+        ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN).putInt(40, -1);
+
+        assertEquals(200, WavClip.parse(file).frameCount());
+    }
+
+    @Test
+    public void negativeChunkSizeIsRejected() {
+        byte[] file = wav(4, 400);
+        ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN).putInt(40, -8); // would step back onto itself
+
+        assertRejected(file);
+    }
+
+    @Test
+    public void oversizedChunkIsRejected() {
+        byte[] file = wav(4, 400);
+        ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN).putInt(40, Integer.MAX_VALUE);
+
+        assertRejected(file);
+    }
+
+    @Test
+    public void truncatedFmtChunkIsRejected() {
+        byte[] file = wav(0, 400);
+        ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN).putInt(16, 4);
+
+        assertRejected(file);
+    }
+
+    private static void assertRejected(byte[] file) {
+        try {
+            WavClip.parse(file);
+            fail("parsed a malformed file");
+        } catch (IOException expected) {
+        }
+    }
+
+    /**
+     * Mono 16 kHz 16-bit WAVE with an optional "LIST" chunk of extraBytes between fmt and data
+     */
+    private static byte[] wav(int extraBytes, int dataBytes) {
+        int extraChunk = extraBytes > 0 ? 8 + extraBytes + (extraBytes & 1) : 0;
+        ByteBuffer buffer = ByteBuffer.allocate(12 + 24 + extraChunk + 8 + dataBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x46464952).putInt(buffer.capacity() - 8).putInt(0x45564157);
+        buffer.putInt(0x20746d66).putInt(16)
+                .putShort((short) 1).putShort((short) 1).putInt(16000).putInt(32000)
+                .putShort((short) 2).putShort((short) 16);
+        if (extraChunk > 0) {
+            buffer.putInt(0x5453494c).putInt(extraBytes);
+            buffer.position(buffer.position() + extraChunk - 8);
+        }
+        buffer.putInt(0x61746164).putInt(dataBytes);
+        return buffer.array();
+    }
+}